@@ -0,0 +1,106 @@
+package edu.aitu.oop3.bench;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Minimal time-boxed measurement loop: run the operation on N threads for a warmup period, then for a
+ * measurement period, and report throughput. Every operation returns a long that is folded into a sink
+ * so the JIT cannot drop the work.
+ */
+final class Bench {
+
+    record Result(String benchmark, Map<String, Object> params, int threads, long ops, double seconds) {
+
+        double opsPerSec() {
+            return ops / seconds;
+        }
+
+        double nsPerOp() {
+            return ops == 0 ? Double.NaN : seconds * 1e9 * threads / ops;
+        }
+
+        String toJson(String label) {
+            StringBuilder sb = new StringBuilder("{");
+            sb.append("\"label\":\"").append(label).append('"');
+            sb.append(",\"benchmark\":\"").append(benchmark).append('"');
+            for (Map.Entry<String, Object> p : params.entrySet()) {
+                sb.append(",\"").append(p.getKey()).append("\":");
+                if (p.getValue() instanceof Number) sb.append(p.getValue());
+                else sb.append('"').append(p.getValue()).append('"');
+            }
+            sb.append(",\"threads\":").append(threads);
+            sb.append(",\"ops\":").append(ops);
+            sb.append(String.format(",\"opsPerSec\":%.1f,\"nsPerOp\":%.1f}", opsPerSec(), nsPerOp()));
+            return sb.toString();
+        }
+    }
+
+    private static volatile long sink;
+
+    private Bench() {
+    }
+
+    static Map<String, Object> params(Object... keyValues) {
+        Map<String, Object> params = new LinkedHashMap<>();
+        for (int i = 0; i + 1 < keyValues.length; i += 2) params.put((String) keyValues[i], keyValues[i + 1]);
+        return params;
+    }
+
+    static Result run(String name, Map<String, Object> params, int threads, long warmupMs, long measureMs, LongSupplier op)
+            throws InterruptedException {
+        loop(threads, warmupMs, op);
+        long start = System.nanoTime();
+        long ops = loop(threads, measureMs, op);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        return new Result(name, params, threads, ops, seconds);
+    }
+
+    private static long loop(int threads, long millis, LongSupplier op) throws InterruptedException {
+        LongAdder ops = new LongAdder();
+        AtomicBoolean stop = new AtomicBoolean();
+        CountDownLatch ready = new CountDownLatch(threads);
+        CountDownLatch go = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                long local = 0, acc = 0;
+                ready.countDown();
+                try {
+                    go.await();
+                    while (!stop.get()) {
+                        acc += op.getAsLong();
+                        local++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (Throwable e) {
+                    failure.compareAndSet(null, e);
+                    stop.set(true); // the run is void, end the other workers too
+                } finally {
+                    sink += acc;
+                    ops.add(local);
+                    done.countDown();
+                }
+            }, "bench-" + t);
+            worker.setDaemon(true);
+            worker.start();
+        }
+        ready.await();
+        go.countDown();
+        Thread.sleep(millis);
+        stop.set(true);
+        done.await();
+        Throwable e = failure.get();
+        if (e instanceof RuntimeException r) throw r;
+        if (e instanceof Error err) throw err;
+        if (e != null) throw new IllegalStateException("Benchmark operation failed", e);
+        return ops.sum();
+    }
+}
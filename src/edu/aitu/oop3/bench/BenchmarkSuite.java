@@ -0,0 +1,391 @@
+package edu.aitu.oop3.bench;
+
+import edu.aitu.oop3.db.AsyncCallbackDispatcher;
+import edu.aitu.oop3.db.CampusDao;
+import edu.aitu.oop3.db.Course;
+import edu.aitu.oop3.db.CourseFactory;
+import edu.aitu.oop3.db.DemoUsersExample.Student;
+import edu.aitu.oop3.db.EnrollmentGraph;
+import edu.aitu.oop3.db.EnrollmentJournal;
+import edu.aitu.oop3.db.EnrollmentService;
+import edu.aitu.oop3.db.InMemoryRepository;
+import edu.aitu.oop3.db.Query;
+import edu.aitu.oop3.db.RegistrationCallback;
+import edu.aitu.oop3.db.RegistrationService;
+import edu.aitu.oop3.db.RowMapper;
+import edu.aitu.oop3.db.StudentFields;
+import edu.aitu.oop3.db.TimetableRegistry;
+import edu.aitu.oop3.db.TrigramIndex;
+import edu.aitu.oop3.db.WeeklySchedule;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+/**
+ * Benchmarks for the hot paths: repository lookups, batch registration, ResultSet row mapping, the enrollment journal,
+ * timetable clash checks, enrollment graph queries, course flyweight lookups and trigram name search.
+ * Results are printed as a table and appended as JSON lines (one object per measurement) so two runs can be diffed.
+ *
+ * Options:
+ *   --sizes 1000,10000,100000,1000000   student counts
+ *   --threads 1,4                      concurrent callers (contention)
+ *   --warmup-ms 500 --measure-ms 1000  time per phase
+ *   --only repo,register,mapping,journal,timetable,graph,course,search benchmark groups
+ *   --label dev                        version label written into every result
+ *   --out bench-results.jsonl          machine-readable output
+ */
+public class BenchmarkSuite {
+
+    // a RegistrationService without console output, so I/O does not drown the measurement
+    private static final RegistrationService SILENT = new RegistrationService() {
+        @Override
+        public void register(Student student, Course course) {
+        }
+    };
+
+    private final int[] sizes;
+    private final int[] threads;
+    private final long warmupMs;
+    private final long measureMs;
+    private final Set<String> groups;
+    private final String label;
+    private final List<Bench.Result> results = new ArrayList<>();
+
+    BenchmarkSuite(Map<String, String> options) {
+        this.sizes = ints(options.getOrDefault("sizes", "1000,10000,100000,1000000"));
+        this.threads = ints(options.getOrDefault("threads", "1," + Runtime.getRuntime().availableProcessors()));
+        this.warmupMs = Long.parseLong(options.getOrDefault("warmup-ms", "500"));
+        this.measureMs = Long.parseLong(options.getOrDefault("measure-ms", "1000"));
+        this.groups = Set.of(options.getOrDefault("only", "repo,register,mapping,journal,timetable,graph,course,search").split(","));
+        this.label = options.getOrDefault("label", "dev");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        BenchmarkSuite suite = new BenchmarkSuite(options);
+        suite.runAll();
+        suite.write(Path.of(options.getOrDefault("out", "bench-results.jsonl")));
+    }
+
+    void runAll() throws Exception {
+        System.out.printf("%-34s %-28s %7s %14s %12s%n", "benchmark", "params", "threads", "ops/s", "ns/op");
+        for (int size : sizes) {
+            if (groups.contains("repo")) repositoryBenchmarks(size);
+            if (groups.contains("register")) registrationBenchmarks(size);
+            if (groups.contains("search")) searchBenchmarks(size);
+        }
+        if (groups.contains("mapping")) mappingBenchmarks();
+        if (groups.contains("journal")) journalBenchmarks();
+        if (groups.contains("timetable")) timetableBenchmarks();
+        if (groups.contains("graph")) graphBenchmarks();
+        if (groups.contains("course")) courseBenchmarks();
+    }
+
+    private void repositoryBenchmarks(int size) throws InterruptedException {
+        InMemoryRepository<Student> repo = SyntheticStudents.repository(size);
+        Map<String, Predicate<Student>> selectivity = new LinkedHashMap<>();
+        String someEmail = SyntheticStudents.email(size / 2);
+        selectivity.put("point", s -> someEmail.equals(s.email));
+        selectivity.put("1%", s -> s.studentNumber.endsWith("00"));
+        selectivity.put("33%", s -> s.studentNumber.startsWith("CS"));
+        selectivity.put("100%", s -> true);
+
+        for (int t : threads) {
+            for (Map.Entry<String, Predicate<Student>> e : selectivity.entrySet()) {
+                Predicate<Student> p = e.getValue();
+                record("repo.find", Bench.params("size", size, "selectivity", e.getKey()), t,
+                        () -> repo.find(p).size());
+            }
+            record("repo.findFirst.scan", Bench.params("size", size, "selectivity", "point"), t, () -> {
+                String email = SyntheticStudents.email(ThreadLocalRandom.current().nextInt(size));
+                return repo.findFirst(s -> email.equals(s.email)).isPresent() ? 1 : 0;
+            });
+            record("repo.findFirst.indexed", Bench.params("size", size, "selectivity", "point"), t, () -> {
+                String email = SyntheticStudents.email(ThreadLocalRandom.current().nextInt(size));
+                return repo.findFirstBy("email", email).isPresent() ? 1 : 0;
+            });
+            record("repo.findAll", Bench.params("size", size), t, () -> repo.findAll().size());
+        }
+
+        // prefix queries answered by a scan, then by a sorted index on the same data
+        InMemoryRepository<Student> sorted = SyntheticStudents.repository(size);
+        sorted.addSortedIndex(StudentFields.STUDENT_NUMBER);
+        int last = 100_000 + size - 1;
+        Map<String, Query<Student>> prefixes = new LinkedHashMap<>();
+        prefixes.put("33%", Query.prefix(StudentFields.STUDENT_NUMBER, "CS"));
+        prefixes.put("narrow", Query.prefix(StudentFields.STUDENT_NUMBER, "CS-" + (last / 1000)));
+        prefixes.put("range-100", Query.range(StudentFields.STUDENT_NUMBER, "CS-" + (last - 300), true, "CS-" + last, true));
+        for (int t : threads) {
+            for (Map.Entry<String, Query<Student>> e : prefixes.entrySet()) {
+                Query<Student> q = e.getValue();
+                record("repo.prefix.scan", Bench.params("size", size, "selectivity", e.getKey()), t, () -> repo.find(q).size());
+                record("repo.prefix.sorted", Bench.params("size", size, "selectivity", e.getKey()), t, () -> sorted.find(q).size());
+            }
+            Query<Student> first10 = Query.prefix(StudentFields.STUDENT_NUMBER, "CS").limit(10);
+            record("repo.prefix.sorted.stream", Bench.params("size", size, "limit", 10), t, () -> (int) sorted.stream(first10).count());
+        }
+    }
+
+    private void registrationBenchmarks(int size) throws InterruptedException {
+        InMemoryRepository<Student> repo = SyntheticStudents.repository(size);
+        EnrollmentService service = new EnrollmentService(repo, SILENT);
+        Course course = CourseFactory.createCourse("LECTURE");
+        Predicate<Student> cs = s -> s.studentNumber.startsWith("CS");
+        LongAdder callbacks = new LongAdder();
+        RegistrationCallback callback = (s, c) -> callbacks.increment();
+        int matched = repo.find(cs).size();
+
+        record("register.sequential", Bench.params("size", size, "callback", "none", "studentsPerOp", matched), 1, () -> {
+            service.registerAll(cs, course, null);
+            return 1;
+        });
+        record("register.sequential", Bench.params("size", size, "callback", "counter", "studentsPerOp", matched), 1, () -> {
+            service.registerAll(cs, course, callback);
+            return 1;
+        });
+        // a subscriber that takes ~20us per event (think audit log write), inline vs. through the async dispatcher
+        RegistrationCallback slow = (s, c) -> LockSupport.parkNanos(20_000);
+        if (matched <= 10_000) {
+            record("register.sequential", Bench.params("size", size, "callback", "slow", "studentsPerOp", matched), 1, () -> {
+                service.registerAll(cs, course, slow);
+                return 1;
+            });
+            try (AsyncCallbackDispatcher async = AsyncCallbackDispatcher.builder().addSubscriber(slow).setConsumers(4).build()) {
+                record("register.sequential", Bench.params("size", size, "callback", "async-slow", "studentsPerOp", matched), 1, () -> {
+                    service.registerAll(cs, course, async);
+                    return awaitIdle(async);
+                });
+            }
+        }
+        for (int concurrency : new int[]{4, 64}) {
+            record("register.parallel", Bench.params("size", size, "callback", "none", "concurrency", concurrency, "studentsPerOp", matched), 1,
+                    () -> service.registerAllParallel(cs, course, null, concurrency).getRegistered().size());
+            record("register.parallel", Bench.params("size", size, "callback", "counter", "concurrency", concurrency, "studentsPerOp", matched), 1,
+                    () -> service.registerAllParallel(cs, course, callback, concurrency).getRegistered().size());
+        }
+    }
+
+    private void mappingBenchmarks() throws InterruptedException {
+        int rows = 1000;
+        Object[][] students = new Object[rows][];
+        Object[][] enrollments = new Object[rows][];
+        Timestamp now = new Timestamp(System.currentTimeMillis());
+        for (int i = 0; i < rows; i++) {
+            Student s = SyntheticStudents.student(i);
+            students[i] = new Object[]{i + 1, s.firstName, s.lastName, s.email, s.studentNumber};
+            enrollments[i] = new Object[]{i + 1, s.firstName, s.lastName, s.studentNumber, "CS101", "Intro to Computer Science", now};
+        }
+        String[] studentCols = {"id", "first_name", "last_name", "email", "student_number"};
+        String[] enrollmentCols = {"id", "first_name", "last_name", "student_number", "course_col", "title", "enrolled_at"};
+
+        for (int t : threads) {
+            record("mapping.student", Bench.params("rowsPerOp", rows), t, () -> mapAll(StandInResultSet.of(studentCols, students), CampusDao::mapStudent));
+            record("mapping.enrollment", Bench.params("rowsPerOp", rows), t, () -> mapAll(StandInResultSet.of(enrollmentCols, enrollments), CampusDao::mapEnrollment));
+        }
+    }
+
+    // register() audit output: a synchronized console-style PrintStream vs. the mapped journal per fsync policy
+    private void journalBenchmarks() throws IOException, InterruptedException {
+        Student student = SyntheticStudents.student(42);
+        Course course = CourseFactory.createCourse("LECTURE");
+        PrintStream console = new PrintStream(OutputStream.nullOutputStream(), true, StandardCharsets.UTF_8);
+        for (int t : threads) {
+            record("register.audit", Bench.params("sink", "println"), t, () -> {
+                console.println("Student " + student + " registered for " + course.getType() + " course.");
+                return 1;
+            });
+            for (EnrollmentJournal.FsyncPolicy fsync : EnrollmentJournal.FsyncPolicy.values()) {
+                Path dir = Files.createTempDirectory("journal-bench");
+                try (EnrollmentJournal journal = new EnrollmentJournal(dir, 16 * 1024 * 1024, fsync, 1000, 2)) {
+                    RegistrationService service = new RegistrationService(journal);
+                    record("register.audit", Bench.params("sink", "journal", "fsync", fsync), t, () -> {
+                        service.register(student, course);
+                        return 1;
+                    });
+                } finally {
+                    deleteDirectory(dir);
+                }
+            }
+        }
+    }
+
+    // one course checked against a cohort of students with four courses each: the registry's parallel check vs. a loop
+    private void timetableBenchmarks() throws InterruptedException {
+        int cohort = 100_000;
+        Random random = new Random(7);
+        TimetableRegistry timetables = new TimetableRegistry();
+        String[] days = {"MON", "TUE", "WED", "THU", "FRI"};
+        for (int c = 0; c < 40; c++) {
+            int hour = 8 + random.nextInt(10);
+            String times = String.format(" %02d:00-%02d:30", hour, hour + 1);
+            timetables.defineCourse("C" + c, WeeklySchedule.parse(days[random.nextInt(5)] + times + "; " + days[random.nextInt(5)] + times));
+        }
+        List<Integer> ids = new ArrayList<>(cohort);
+        for (int id = 1; id <= cohort; id++) {
+            ids.add(id);
+            for (int k = 0; k < 4; k++) timetables.tryAdd(id, "C" + random.nextInt(40));
+        }
+        WeeklySchedule course = timetables.courseSchedule("C0");
+        for (int t : threads) {
+            record("timetable.cohort", Bench.params("students", cohort, "mode", "parallel"), t,
+                    () -> timetables.findClashes(ids, "C0").size());
+            record("timetable.cohort", Bench.params("students", cohort, "mode", "sequential"), t, () -> {
+                long n = 0;
+                for (Integer id : ids) if (timetables.studentSchedule(id).conflictsWith(course)) n++;
+                return n;
+            });
+        }
+    }
+
+    // 100k students with four of 200 courses each; shared students of two courses also via boxed sets for comparison
+    private void graphBenchmarks() throws InterruptedException {
+        int students = 100_000;
+        int courses = 200;
+        Random random = new Random(11);
+        EnrollmentGraph graph = new EnrollmentGraph();
+        Map<Integer, Set<Integer>> boxed = new HashMap<>();
+        for (int c = 1; c <= courses; c++) {
+            graph.defineCourse(c, "C" + c, 1 + c % 5);
+            boxed.put(c, new HashSet<>());
+        }
+        for (int id = 1; id <= students; id++) {
+            for (int k = 0; k < 4; k++) {
+                int course = 1 + random.nextInt(courses);
+                graph.add(id, course);
+                boxed.get(course).add(id);
+            }
+        }
+        int rosterSize = graph.rosterSize(1);
+        for (int t : threads) {
+            record("graph.roster", Bench.params("students", rosterSize), t, () -> graph.roster(1 + ThreadLocalRandom.current().nextInt(courses)).length);
+            record("graph.shared", Bench.params("students", rosterSize, "mode", "int[]"), t, () -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                return graph.sharedCount(1 + r.nextInt(courses), 1 + r.nextInt(courses));
+            });
+            record("graph.shared", Bench.params("students", rosterSize, "mode", "HashSet"), t, () -> {
+                ThreadLocalRandom r = ThreadLocalRandom.current();
+                Set<Integer> shared = new HashSet<>(boxed.get(1 + r.nextInt(courses)));
+                shared.retainAll(boxed.get(1 + r.nextInt(courses)));
+                return shared.size();
+            });
+            record("graph.credits", Bench.params("coursesPerStudent", 4), t,
+                    () -> graph.credits(1 + ThreadLocalRandom.current().nextInt(students)));
+        }
+    }
+
+    // top-10 trigram search against a case-insensitive substring scan, the in-process equivalent of ILIKE '%text%'
+    private void searchBenchmarks(int size) throws InterruptedException {
+        TrigramIndex index = new TrigramIndex();
+        Student[] students = new Student[size + 1];
+        for (int id = 1; id <= size; id++) {
+            Student s = SyntheticStudents.withRealisticNames(id);
+            students[id] = s;
+            index.put(id, s.firstName, s.lastName, s.email, s.studentNumber);
+        }
+        Student target = students[size / 2 + 1];
+        String last = target.lastName;
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("full-name", target.firstName + " " + last);
+        queries.put("typo", last.substring(0, 2) + last.substring(3));
+        queries.put("first-name", target.firstName);
+        queries.put("number", target.studentNumber);
+        queries.put("email", target.email);
+        for (int t : threads) {
+            for (Map.Entry<String, String> e : queries.entrySet()) {
+                String text = e.getValue();
+                record("search.trigram", Bench.params("size", size, "query", e.getKey()), t, () -> index.search(text, 10).size());
+            }
+            String needle = last.toLowerCase();
+            record("search.scan", Bench.params("size", size, "query", "last-name"), t, () -> {
+                int found = 0;
+                for (int id = 1; id <= size && found < 10; id++) {
+                    if (students[id].lastName.toLowerCase().contains(needle)) found++;
+                }
+                return found;
+            });
+        }
+    }
+
+    // the factory's interned lookup, and the course as a map key (identity hash and equals)
+    private void courseBenchmarks() throws InterruptedException {
+        String[] types = {"LECTURE", "LAB"};
+        Map<Course, Integer> counts = new HashMap<>();
+        for (String type : types) counts.put(CourseFactory.createCourse(type), 0);
+        for (int t : threads) {
+            record("course.create", Bench.params(), t,
+                    () -> CourseFactory.createCourse(types[ThreadLocalRandom.current().nextInt(2)]).hashCode() & 1);
+            record("course.mapKey", Bench.params(), t,
+                    () -> counts.get(CourseFactory.createCourse(types[ThreadLocalRandom.current().nextInt(2)])));
+        }
+    }
+
+    private static void deleteDirectory(Path dir) throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : files.toList()) Files.deleteIfExists(p);
+        }
+        Files.deleteIfExists(dir);
+    }
+
+    private static long awaitIdle(AsyncCallbackDispatcher dispatcher) {
+        try {
+            return dispatcher.awaitIdle(1, TimeUnit.MINUTES) ? 1 : 0;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return 0;
+        }
+    }
+
+    private static long mapAll(ResultSet rs, RowMapper<?> mapper) {
+        long n = 0;
+        try (rs) {
+            while (rs.next()) n += mapper.map(rs).hashCode() & 1;
+        } catch (SQLException e) {
+            throw new IllegalStateException(e);
+        }
+        return n;
+    }
+
+    private void record(String name, Map<String, Object> params, int threads, LongSupplier op) throws InterruptedException {
+        Bench.Result r = Bench.run(name, params, threads, warmupMs, measureMs, op);
+        results.add(r);
+        System.out.printf("%-34s %-28s %7d %14.1f %12.1f%n", name, params.values(), threads, r.opsPerSec(), r.nsPerOp());
+    }
+
+    void write(Path out) throws IOException {
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            for (Bench.Result r : results) w.println(r.toJson(label));
+        }
+        System.out.println("Wrote " + results.size() + " results to " + out.toAbsolutePath());
+    }
+
+    private static int[] ints(String csv) {
+        return Arrays.stream(csv.split(",")).map(String::trim).mapToInt(Integer::parseInt).toArray();
+    }
+}
@@ -0,0 +1,476 @@
+package edu.aitu.oop3.bench;
+
+import edu.aitu.oop3.db.CampusDao;
+import edu.aitu.oop3.db.ConnectionPool;
+import edu.aitu.oop3.db.Course;
+import edu.aitu.oop3.db.CourseFactory;
+import edu.aitu.oop3.db.DatabaseConnection;
+import edu.aitu.oop3.db.DemoUsersExample.Student;
+import edu.aitu.oop3.db.EnrollmentService;
+import edu.aitu.oop3.db.InMemoryRepository;
+import edu.aitu.oop3.db.LatencyHistogram;
+import edu.aitu.oop3.db.Metrics;
+import edu.aitu.oop3.db.OperationStats;
+import edu.aitu.oop3.db.RegistrationResult;
+import edu.aitu.oop3.db.RegistrationService;
+import edu.aitu.oop3.db.SchemaMigrator;
+import edu.aitu.oop3.db.SeatReservationEngine;
+import edu.aitu.oop3.db.SeatedEnrollmentService;
+import edu.aitu.oop3.db.SeatedEnrollmentService.Outcome;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Registration-storm load generator. Simulates students hammering the enrollment path when registration opens:
+ * <ol>
+ *   <li>opening wave: every student submits a first choice at once through {@link EnrollmentService#registerAllParallel};</li>
+ *   <li>sustained phase: one session per student enrolls, double-submits and drops courses with think time between requests.</li>
+ * </ol>
+ * Course choice follows a Zipf distribution, so a few hot courses take most of the traffic. Requests go through
+ * {@link SeatedEnrollmentService} (seat limits and waitlists) or straight to {@link CampusDao} ({@code --mode direct}),
+ * over a real {@link ConnectionPool} backed by {@link StandInDatabase} or, with {@code --target jdbc}, the configured database.
+ * <p>
+ * Reports throughput, latency percentiles per request type, outcome counts (duplicates, waitlisted, errors) and
+ * connection wait time. {@code --record trace.csv} saves the generated requests; {@code --replay trace.csv} plays
+ * them back with the original timing against any target.
+ *
+ * Options:
+ *   --students 2000 --courses 200 --capacity 40     population and seat limit per course (0: no limit)
+ *   --skew 1.1                                       Zipf exponent for course popularity (0: uniform)
+ *   --duration-s 10 --think-ms 200                   sustained phase length and mean think time
+ *   --max-courses 5 --drop-rate 0.05 --double-submit 0.05
+ *   --mode seated|direct --target standin|jdbc
+ *   --pool-size 10 --borrow-timeout-ms 30000 --db-latency-us 300   (stand-in only: pool and round-trip latency)
+ *   --opening-concurrency 256 --seed 42 --label dev --out storm-results.jsonl
+ *   --record trace.csv | --replay trace.csv
+ *
+ * The jdbc target uses the students already in the database (seed them with BulkImporter) and creates STORM-nnnn courses.
+ */
+public class RegistrationStorm {
+
+    private interface Target {
+        Outcome enroll(int studentId, String courseCode) throws SQLException;
+
+        boolean drop(int studentId, String courseCode) throws SQLException;
+    }
+
+    private enum Action {ENROLL, DROP}
+
+    private record Request(long offsetMicros, int student, Action action, String course) {
+    }
+
+    private final Map<String, String> options;
+    private final int courseCount;
+    private final int capacity;
+    private final long thinkMicros;
+    private final int maxCourses;
+    private final double dropRate;
+    private final double doubleSubmit;
+    private final long seed;
+    private final double[] cumulative;
+
+    private int[] studentIds;
+    private String[] courseCodes;
+    private ConnectionPool pool;
+    private StandInDatabase standIn;
+    private Target target;
+    private SeatReservationEngine engine;
+
+    private final LatencyHistogram enrollLatency = new LatencyHistogram();
+    private final LatencyHistogram dropLatency = new LatencyHistogram();
+    private final Map<Outcome, LongAdder> outcomes = new EnumMap<>(Outcome.class);
+    private final LongAdder drops = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicInteger peakActive = new AtomicInteger();
+    private final ConcurrentLinkedQueue<Request> recorded = new ConcurrentLinkedQueue<>();
+    private volatile boolean recording;
+    private long startNanos;
+
+    RegistrationStorm(Map<String, String> options) {
+        this.options = options;
+        this.courseCount = intOption("courses", 200);
+        this.capacity = intOption("capacity", 40);
+        this.thinkMicros = intOption("think-ms", 200) * 1000L;
+        this.maxCourses = intOption("max-courses", 5);
+        this.dropRate = Double.parseDouble(options.getOrDefault("drop-rate", "0.05"));
+        this.doubleSubmit = Double.parseDouble(options.getOrDefault("double-submit", "0.05"));
+        this.seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        this.cumulative = zipf(courseCount, Double.parseDouble(options.getOrDefault("skew", "1.1")));
+        for (Outcome o : Outcome.values()) outcomes.put(o, new LongAdder());
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        RegistrationStorm storm = new RegistrationStorm(options);
+        storm.setUp();
+        try {
+            String replay = options.get("replay");
+            if (replay != null) {
+                storm.replay(Path.of(replay));
+            } else {
+                storm.recording = options.containsKey("record");
+                storm.openingWave();
+                storm.sustained();
+                if (storm.recording) storm.writeTrace(Path.of(options.get("record")));
+            }
+            storm.report();
+        } finally {
+            storm.tearDown();
+        }
+    }
+
+    // ==================== SETUP ====================
+
+    void setUp() throws SQLException {
+        Metrics.setJmxEnabled(false);
+        Metrics.setEnabled(true);
+        courseCodes = new String[courseCount];
+        Integer limit = capacity > 0 ? capacity : null;
+
+        if ("jdbc".equals(options.get("target"))) {
+            pool = DatabaseConnection.getPool();
+            try (Connection connection = pool.borrow(); CampusDao dao = new CampusDao(connection)) {
+                SchemaMigrator.campus().migrate(connection);
+                List<Integer> ids = new ArrayList<>();
+                dao.findAllStudents().forEach(s -> ids.add(s.id()));
+                int wanted = intOption("students", 2000);
+                if (ids.size() < wanted) System.out.println("Warning: only " + ids.size() + " students in the database");
+                studentIds = ids.stream().limit(wanted).mapToInt(Integer::intValue).toArray();
+                for (int c = 0; c < courseCount; c++) {
+                    courseCodes[c] = String.format("STORM-%04d", c);
+                    dao.insertCourse(courseCodes[c], "Storm course " + c, 3);
+                    dao.updateCourseCapacity(courseCodes[c], limit);
+                }
+            }
+        } else {
+            standIn = new StandInDatabase(intOption("db-latency-us", 300));
+            pool = new ConnectionPool(standIn::connect, 1, intOption("pool-size", 10), 600_000,
+                    intOption("borrow-timeout-ms", 30_000), 5, 0);
+            studentIds = new int[intOption("students", 2000)];
+            for (int i = 0; i < studentIds.length; i++) studentIds[i] = i + 1;
+            for (int c = 0; c < courseCount; c++) {
+                courseCodes[c] = String.format("STORM-%04d", c);
+                standIn.addCourse(courseCodes[c], limit);
+            }
+        }
+
+        if ("direct".equals(options.get("mode"))) {
+            target = new Target() {
+                @Override
+                public Outcome enroll(int studentId, String courseCode) throws SQLException {
+                    try (Connection connection = pool.borrow(); CampusDao dao = new CampusDao(connection)) {
+                        int rows = dao.insertEnrollment(studentId, courseCode);
+                        return rows == 1 ? Outcome.ENROLLED : rows == 0 ? Outcome.ALREADY_ENROLLED : Outcome.COURSE_NOT_FOUND;
+                    }
+                }
+
+                @Override
+                public boolean drop(int studentId, String courseCode) throws SQLException {
+                    try (Connection connection = pool.borrow(); CampusDao dao = new CampusDao(connection)) {
+                        return dao.deleteEnrollment(studentId, courseCode) > 0;
+                    }
+                }
+            };
+        } else {
+            engine = new SeatReservationEngine();
+            SeatedEnrollmentService seats = new SeatedEnrollmentService(engine, pool::borrow);
+            seats.reload();
+            target = new Target() {
+                @Override
+                public Outcome enroll(int studentId, String courseCode) throws SQLException {
+                    return seats.enroll(studentId, courseCode);
+                }
+
+                @Override
+                public boolean drop(int studentId, String courseCode) throws SQLException {
+                    return seats.drop(studentId, courseCode);
+                }
+            };
+        }
+        Metrics.reset();
+        startNanos = System.nanoTime();
+        System.out.printf("Storm: %d students, %d courses, capacity %s, mode %s, target %s%n", studentIds.length, courseCount,
+                capacity > 0 ? capacity : "none", options.getOrDefault("mode", "seated"), options.getOrDefault("target", "standin"));
+    }
+
+    void tearDown() {
+        if (standIn != null) pool.close();
+        else DatabaseConnection.shutdown();
+    }
+
+    // ==================== PHASES ====================
+
+    /**
+     * Everyone submits their first choice the moment registration opens.
+     */
+    void openingWave() {
+        InMemoryRepository<Student> students = new InMemoryRepository<>();
+        Map<Student, Integer> ids = new IdentityHashMap<>();
+        for (int i = 0; i < studentIds.length; i++) {
+            Student s = SyntheticStudents.student(i);
+            students.save(s);
+            ids.put(s, i);
+        }
+        RegistrationService wave = new RegistrationService() {
+            @Override
+            public void register(Student student, Course course) {
+                int index = ids.get(student);
+                String code = courseCodes[pickCourse(new Random(seed ^ index).nextDouble())];
+                if (!submit(index, Action.ENROLL, code)) throw new IllegalStateException("enroll failed");
+            }
+        };
+        EnrollmentService service = new EnrollmentService(students, wave);
+        int concurrency = intOption("opening-concurrency", 256);
+        RegistrationResult result = service.registerAllParallel(s -> true, CourseFactory.createCourse("LECTURE"), null, concurrency);
+        System.out.printf("Opening wave: %d requests in %d ms (%d failed), concurrency %d%n",
+                result.getTotal(), result.getElapsed().toMillis(), result.getFailures().size(), concurrency);
+    }
+
+    /**
+     * One session per student until the deadline: think, then enroll, double-submit or drop.
+     */
+    void sustained() throws InterruptedException {
+        long deadline = System.nanoTime() + intOption("duration-s", 10) * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(studentIds.length);
+        Thread monitor = startMonitor();
+        for (int i = 0; i < studentIds.length; i++) {
+            int index = i;
+            startSession(() -> {
+                try {
+                    session(index, deadline);
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        monitor.interrupt();
+    }
+
+    private void session(int index, long deadline) {
+        Random rnd = new Random(seed * 31 + index);
+        List<String> mine = new ArrayList<>();
+        while (System.nanoTime() < deadline) {
+            think(rnd);
+            if (!mine.isEmpty() && (mine.size() >= maxCourses || rnd.nextDouble() < dropRate)) {
+                String code = mine.remove(rnd.nextInt(mine.size()));
+                submit(index, Action.DROP, code);
+                continue;
+            }
+            String code = courseCodes[pickCourse(rnd.nextDouble())];
+            submit(index, Action.ENROLL, code);
+            // registration and waitlist both hold a place we may drop later
+            if (!mine.contains(code)) mine.add(code);
+            if (rnd.nextDouble() < doubleSubmit) submit(index, Action.ENROLL, code);
+        }
+    }
+
+    void replay(Path trace) throws IOException, InterruptedException {
+        Map<Integer, List<Request>> byStudent = new TreeMap<>();
+        try (BufferedReader in = Files.newBufferedReader(trace, StandardCharsets.UTF_8)) {
+            String line = in.readLine(); // header
+            while ((line = in.readLine()) != null) {
+                String[] f = line.split(",");
+                Request r = new Request(Long.parseLong(f[0]), Integer.parseInt(f[1]), Action.valueOf(f[2]), f[3]);
+                if (r.student() < studentIds.length) byStudent.computeIfAbsent(r.student(), k -> new ArrayList<>()).add(r);
+            }
+        }
+        System.out.println("Replaying " + byStudent.values().stream().mapToInt(List::size).sum() + " requests from " + trace);
+        CountDownLatch done = new CountDownLatch(byStudent.size());
+        Thread monitor = startMonitor();
+        long base = System.nanoTime();
+        for (List<Request> requests : byStudent.values()) {
+            startSession(() -> {
+                try {
+                    for (Request r : requests) {
+                        long wait = base + r.offsetMicros() * 1000 - System.nanoTime();
+                        if (wait > 0) LockSupport.parkNanos(wait);
+                        submit(r.student(), r.action(), r.course());
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        monitor.interrupt();
+    }
+
+    // ==================== REQUESTS ====================
+
+    private boolean submit(int index, Action action, String course) {
+        if (recording) recorded.add(new Request((System.nanoTime() - startNanos) / 1000, index, action, course));
+        long t = System.nanoTime();
+        try {
+            if (action == Action.ENROLL) {
+                Outcome outcome = target.enroll(studentIds[index], course);
+                enrollLatency.record(System.nanoTime() - t);
+                outcomes.get(outcome).increment();
+            } else {
+                target.drop(studentIds[index], course);
+                dropLatency.record(System.nanoTime() - t);
+                drops.increment();
+            }
+            return true;
+        } catch (SQLException | RuntimeException e) {
+            errors.increment();
+            return false;
+        }
+    }
+
+    private void think(Random rnd) {
+        if (thinkMicros <= 0) return;
+        // exponential think time: most requests come quickly, a few after a long pause
+        long micros = (long) (-Math.log(1 - rnd.nextDouble()) * thinkMicros);
+        LockSupport.parkNanos(micros * 1000);
+    }
+
+    private int pickCourse(double u) {
+        int i = Arrays.binarySearch(cumulative, u);
+        return Math.min(courseCount - 1, i >= 0 ? i : -i - 1);
+    }
+
+    private static double[] zipf(int n, double exponent) {
+        double[] cumulative = new double[n];
+        double sum = 0;
+        for (int k = 0; k < n; k++) {
+            sum += 1.0 / Math.pow(k + 1, exponent);
+            cumulative[k] = sum;
+        }
+        for (int k = 0; k < n; k++) cumulative[k] /= sum;
+        return cumulative;
+    }
+
+    // sessions mostly sleep, so thousands of them are cheap on virtual threads (Java 21+); platform threads otherwise
+    private static void startSession(Runnable body) {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder.getClass().getMethod("start", Runnable.class).invoke(builder, body);
+        } catch (ReflectiveOperationException e) {
+            Thread t = new Thread(body, "storm-session");
+            t.setDaemon(true);
+            t.start();
+        }
+    }
+
+    private Thread startMonitor() {
+        Thread monitor = new Thread(() -> {
+            while (!Thread.currentThread().isInterrupted()) {
+                peakActive.accumulateAndGet(pool.getActiveCount(), Math::max);
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "storm-monitor");
+        monitor.setDaemon(true);
+        monitor.start();
+        return monitor;
+    }
+
+    // ==================== REPORT ====================
+
+    void report() throws IOException {
+        double seconds = (System.nanoTime() - startNanos) / 1e9;
+        long enrolls = enrollLatency.count();
+        long requests = enrolls + dropLatency.count() + errors.sum();
+        long duplicates = outcomes.get(Outcome.ALREADY_ENROLLED).sum() + outcomes.get(Outcome.ALREADY_WAITLISTED).sum();
+        OperationStats wait = Metrics.get("pool.wait").orElse(null);
+
+        System.out.printf("%nRequests: %d in %.1f s = %.1f req/s%n", requests, seconds, requests / seconds);
+        System.out.printf("%-10s %9s %10s %10s %10s %10s%n", "request", "count", "p50(ms)", "p99(ms)", "p999(ms)", "max(ms)");
+        printLatency("enroll", enrollLatency);
+        printLatency("drop", dropLatency);
+        System.out.println("Outcomes: " + outcomes + ", drops=" + drops.sum() + ", errors=" + errors.sum());
+        System.out.printf("Duplicate rate: %.2f%%, waitlisted: %.2f%%, error rate: %.2f%%%n",
+                pct(duplicates, enrolls), pct(outcomes.get(Outcome.WAITLISTED).sum(), enrolls), pct(errors.sum(), requests));
+        if (wait != null) {
+            System.out.printf("Connection wait: p50 %.3f ms, p99 %.3f ms, max %.3f ms; peak active %d / %d%n",
+                    wait.getP50Micros() / 1000, wait.getP99Micros() / 1000, wait.getMaxMicros() / 1000, peakActive.get(), pool.getMaxSize());
+        }
+        if (standIn != null) {
+            System.out.println("Stand-in: " + standIn.enrollmentCount() + " enrollments, " + standIn.statementCount() + " statements");
+            checkSeats();
+        }
+
+        String out = options.get("out");
+        if (out == null) return;
+        String json = String.format("{\"label\":\"%s\",\"benchmark\":\"registration.storm\",\"mode\":\"%s\",\"target\":\"%s\","
+                        + "\"students\":%d,\"courses\":%d,\"capacity\":%d,\"skew\":%s,\"poolSize\":%d,"
+                        + "\"requests\":%d,\"reqPerSec\":%.1f,\"enrollP50Ms\":%.3f,\"enrollP99Ms\":%.3f,\"enrollP999Ms\":%.3f,"
+                        + "\"duplicateRate\":%.4f,\"errorRate\":%.4f,\"poolWaitP99Ms\":%.3f}",
+                options.getOrDefault("label", "dev"), options.getOrDefault("mode", "seated"), options.getOrDefault("target", "standin"),
+                studentIds.length, courseCount, capacity, options.getOrDefault("skew", "1.1"), pool.getMaxSize(),
+                requests, requests / seconds, enrollLatency.percentile(50) / 1e6, enrollLatency.percentile(99) / 1e6,
+                enrollLatency.percentile(99.9) / 1e6, ratio(duplicates, enrolls), ratio(errors.sum(), requests),
+                wait == null ? 0 : wait.getP99Micros() / 1000);
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(Path.of(out), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND))) {
+            w.println(json);
+        }
+        System.out.println("Appended result to " + Path.of(out).toAbsolutePath());
+    }
+
+    // with seat limits on, no course may end up over capacity and the engine must agree with the table
+    private void checkSeats() {
+        if (engine == null) return;
+        int over = 0, drift = 0;
+        for (String code : courseCodes) {
+            int enrolled = standIn.enrolledIn(code);
+            if (capacity > 0 && enrolled > capacity) over++;
+            if (engine.seatsTaken(code) != enrolled) drift++;
+        }
+        System.out.println("Seat check: " + over + " courses over capacity, " + drift + " courses where engine and table disagree");
+    }
+
+    private static void printLatency(String name, LatencyHistogram h) {
+        System.out.printf("%-10s %9d %10.3f %10.3f %10.3f %10.3f%n", name, h.count(),
+                h.percentile(50) / 1e6, h.percentile(99) / 1e6, h.percentile(99.9) / 1e6, h.percentile(100) / 1e6);
+    }
+
+    private void writeTrace(Path out) throws IOException {
+        List<Request> requests = new ArrayList<>(recorded);
+        requests.sort((a, b) -> Long.compare(a.offsetMicros(), b.offsetMicros()));
+        try (PrintWriter w = new PrintWriter(Files.newBufferedWriter(out, StandardCharsets.UTF_8))) {
+            w.println("offset_us,student,action,course");
+            for (Request r : requests) w.println(r.offsetMicros() + "," + r.student() + "," + r.action() + "," + r.course());
+        }
+        System.out.println("Recorded " + requests.size() + " requests to " + out.toAbsolutePath());
+    }
+
+    private int intOption(String name, int defaultValue) {
+        return Integer.parseInt(options.getOrDefault(name, String.valueOf(defaultValue)));
+    }
+
+    private static double pct(long part, long whole) {
+        return 100.0 * ratio(part, whole);
+    }
+
+    private static double ratio(long part, long whole) {
+        return whole == 0 ? 0 : part / (double) whole;
+    }
+}
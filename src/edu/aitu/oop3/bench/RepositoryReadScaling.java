@@ -0,0 +1,74 @@
+package edu.aitu.oop3.bench;
+
+import edu.aitu.oop3.db.DemoUsersExample.Student;
+import edu.aitu.oop3.db.InMemoryRepository;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stress check for InMemoryRepository: runs reader threads (1, 2, 4 ... up to the core count)
+ * against one repository while a writer keeps saving and deleting, and prints reads per second.
+ * Reads should scale roughly with the number of threads.
+ *
+ * Usage: RepositoryReadScaling [students] [secondsPerStep]
+ */
+public class RepositoryReadScaling {
+
+    public static void main(String[] args) throws InterruptedException {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+        int cores = Runtime.getRuntime().availableProcessors();
+
+        InMemoryRepository<Student> repo = SyntheticStudents.repository(size);
+
+        System.out.println("threads,reads_per_sec,speedup");
+        double base = 0;
+        for (int threads = 1; threads <= cores; threads *= 2) {
+            double rate = run(repo, size, threads, seconds);
+            if (base == 0) base = rate;
+            System.out.printf("%d,%.0f,%.2f%n", threads, rate, rate / base);
+        }
+    }
+
+    private static double run(InMemoryRepository<Student> repo, int size, int threads, int seconds) throws InterruptedException {
+        LongAdder reads = new LongAdder();
+        long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+        CountDownLatch done = new CountDownLatch(threads);
+
+        Thread writer = new Thread(() -> {
+            int next = size;
+            while (System.nanoTime() < deadline) {
+                Student s = SyntheticStudents.student(next++);
+                repo.save(s);
+                repo.delete(s);
+            }
+        });
+        writer.start();
+
+        for (int t = 0; t < threads; t++) {
+            new Thread(() -> {
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                long local = 0;
+                while (System.nanoTime() < deadline) {
+                    int op = rnd.nextInt(100);
+                    if (op < 80) {
+                        repo.findFirstBy("email", SyntheticStudents.email(rnd.nextInt(size)));
+                    } else if (op < 95) {
+                        String prefix = "CS-10" + rnd.nextInt(10);
+                        repo.findFirst(s -> s.studentNumber.startsWith(prefix));
+                    } else {
+                        repo.findAll();
+                    }
+                    local++;
+                }
+                reads.add(local);
+                done.countDown();
+            }).start();
+        }
+        done.await();
+        writer.join();
+        return reads.sum() / (double) seconds;
+    }
+}
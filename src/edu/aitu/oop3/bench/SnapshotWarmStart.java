@@ -0,0 +1,48 @@
+package edu.aitu.oop3.bench;
+
+import edu.aitu.oop3.db.DemoUsersExample.Student;
+import edu.aitu.oop3.db.InMemoryRepository;
+import edu.aitu.oop3.db.RepositorySnapshot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measures the warm-start path of {@link RepositorySnapshot}: time to dump a repository of synthetic students,
+ * snapshot size, and time until a fresh repository (with its email index) is loaded, for 1 and N decoder threads.
+ * <p>
+ * Options: --sizes 100000,1000000  --threads 8  --dir /tmp
+ */
+public class SnapshotWarmStart {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        int threads = Integer.parseInt(options.getOrDefault("threads", String.valueOf(Runtime.getRuntime().availableProcessors())));
+        Path dir = Path.of(options.getOrDefault("dir", System.getProperty("java.io.tmpdir")));
+
+        System.out.printf("%10s %8s %8s %10s %10s %12s %12s%n", "students", "deflate", "threads", "write ms", "size MB", "load ms", "items/s");
+        for (String size : options.getOrDefault("sizes", "100000,1000000").split(",")) {
+            int n = Integer.parseInt(size.trim());
+            InMemoryRepository<Student> source = SyntheticStudents.repository(n);
+            for (boolean compress : new boolean[]{false, true}) {
+                Path file = dir.resolve("warmstart-" + n + (compress ? ".z" : "") + ".snapshot");
+                try {
+                    RepositorySnapshot.Info written = new RepositorySnapshot<>(RepositorySnapshot.STUDENT_CODEC, compress, threads).write(source, file, n);
+                    for (int t : new int[]{1, threads}) {
+                        InMemoryRepository<Student> target = new InMemoryRepository<>();
+                        target.addUniqueIndex("email", s -> s.email);
+                        RepositorySnapshot.Info loaded = new RepositorySnapshot<>(RepositorySnapshot.STUDENT_CODEC, compress, t).load(file, target);
+                        if (target.size() != n) throw new IllegalStateException("Loaded " + target.size() + " of " + n);
+                        System.out.printf("%10d %8s %8d %10d %10.1f %12d %12.0f%n", n, compress, t, written.millis(),
+                                written.bytes() / 1e6, loaded.millis(), n * 1000.0 / Math.max(1, loaded.millis()));
+                    }
+                } finally {
+                    Files.deleteIfExists(file);
+                }
+            }
+        }
+    }
+}
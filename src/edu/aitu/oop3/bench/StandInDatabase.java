@@ -0,0 +1,213 @@
+package edu.aitu.oop3.bench;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process stand-in for the enrollment tables, reachable through plain JDBC interfaces so the real pool, DAO and
+ * seat engine run unchanged on top of it. It understands exactly the enrollment statements CampusDao issues for the
+ * 'course' column layout and adds a fixed per-statement latency to imitate a network round trip.
+ */
+final class StandInDatabase {
+
+    private record Enrollment(int studentId, String course) {
+    }
+
+    private final Map<String, Integer> capacities = new ConcurrentHashMap<>(); // -1: no limit
+    private final Map<String, Integer> courseIds = new ConcurrentHashMap<>();
+    private final Map<Integer, Enrollment> enrollments = new ConcurrentHashMap<>();
+    private final Map<Enrollment, Integer> unique = new ConcurrentHashMap<>(); // UNIQUE(student_id, course)
+    private final AtomicInteger ids = new AtomicInteger();
+    private final long latencyNanos;
+    private final LongAdder statements = new LongAdder();
+
+    StandInDatabase(long latencyMicros) {
+        this.latencyNanos = latencyMicros * 1000;
+    }
+
+    void addCourse(String code, Integer capacity) {
+        capacities.put(code, capacity == null ? -1 : capacity);
+        courseIds.putIfAbsent(code, courseIds.size() + 1);
+    }
+
+    int enrolledIn(String course) {
+        int n = 0;
+        for (Enrollment e : enrollments.values()) if (e.course().equals(course)) n++;
+        return n;
+    }
+
+    int enrollmentCount() {
+        return enrollments.size();
+    }
+
+    long statementCount() {
+        return statements.sum();
+    }
+
+    Connection connect() {
+        boolean[] closed = {false};
+        return (Connection) Proxy.newProxyInstance(StandInDatabase.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            return statement((String) args[0]);
+                        case "getMetaData":
+                            return metaData();
+                        case "isValid":
+                            return !closed[0];
+                        case "isClosed":
+                            return closed[0];
+                        case "close":
+                            closed[0] = true;
+                            return null;
+                        case "getAutoCommit":
+                            return true;
+                        case "setAutoCommit":
+                        case "commit":
+                        case "rollback":
+                            return null;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "StandInConnection";
+                        default:
+                            throw new SQLException("Not supported by stand-in: Connection." + method.getName());
+                    }
+                });
+    }
+
+    private DatabaseMetaData metaData() {
+        return (DatabaseMetaData) Proxy.newProxyInstance(StandInDatabase.class.getClassLoader(), new Class<?>[]{DatabaseMetaData.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("getColumns")) throw new SQLException("Not supported by stand-in: " + method.getName());
+                    // only enrollments.course exists, so EnrollmentSchema resolves the COURSE layout
+                    boolean match = "enrollments".equalsIgnoreCase((String) args[2]) && "course".equalsIgnoreCase((String) args[3]);
+                    return StandInResultSet.of(new String[]{"column_name"}, match ? new Object[][]{{"course"}} : new Object[0][]);
+                });
+    }
+
+    private PreparedStatement statement(String sql) {
+        Map<Integer, Object> params = new HashMap<>();
+        boolean[] closed = {false};
+        return (PreparedStatement) Proxy.newProxyInstance(StandInDatabase.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    switch (name) {
+                        case "setInt":
+                        case "setString":
+                            params.put((Integer) args[0], args[1]);
+                            return null;
+                        case "setNull":
+                            params.put((Integer) args[0], null);
+                            return null;
+                        case "clearParameters":
+                            params.clear();
+                            return null;
+                        case "setFetchSize":
+                            return null;
+                        case "close":
+                            closed[0] = true;
+                            return null;
+                        case "isClosed":
+                            return closed[0];
+                        case "executeUpdate":
+                            roundTrip();
+                            return update(sql, params);
+                        case "executeQuery":
+                            roundTrip();
+                            return query(sql, params);
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return sql;
+                        default:
+                            throw new SQLException("Not supported by stand-in: PreparedStatement." + name);
+                    }
+                });
+    }
+
+    private void roundTrip() {
+        statements.increment();
+        if (latencyNanos > 0) LockSupport.parkNanos(latencyNanos);
+    }
+
+    private int update(String sql, Map<Integer, Object> params) throws SQLException {
+        if (sql.startsWith("INSERT INTO enrollments")) {
+            Enrollment e = new Enrollment((Integer) params.get(1), (String) params.get(2));
+            if (!capacities.containsKey(e.course())) {
+                throw new SQLIntegrityConstraintViolationException("course " + e.course() + " does not exist", "23503");
+            }
+            int id = ids.incrementAndGet();
+            enrollments.put(id, e);
+            if (unique.putIfAbsent(e, id) == null) return 1;
+            enrollments.remove(id); // ON CONFLICT DO NOTHING
+            return 0;
+        }
+        if (sql.startsWith("DELETE FROM enrollments WHERE student_id = ?")) {
+            Integer id = unique.remove(new Enrollment((Integer) params.get(1), (String) params.get(2)));
+            if (id == null) return 0;
+            enrollments.remove(id);
+            return 1;
+        }
+        throw new SQLException("Not supported by stand-in: " + sql);
+    }
+
+    private ResultSet query(String sql, Map<Integer, Object> params) throws SQLException {
+        if (sql.startsWith("SELECT c.course_code, c.capacity")) {
+            String only = sql.contains("WHERE c.course_code = ?") ? (String) params.get(1) : null;
+            Map<String, Integer> counts = new HashMap<>();
+            for (Enrollment e : enrollments.values()) counts.merge(e.course(), 1, Integer::sum);
+            List<Object[]> rows = new ArrayList<>();
+            capacities.forEach((code, capacity) -> {
+                if (only == null || only.equals(code)) {
+                    rows.add(new Object[]{code, capacity < 0 ? null : capacity, null, counts.getOrDefault(code, 0)});
+                }
+            });
+            return StandInResultSet.of(new String[]{"course_code", "capacity", "meeting_slots", "enrolled"}, rows.toArray(new Object[0][]));
+        }
+        if (sql.startsWith("SELECT c.id, c.course_code, c.title")) {
+            List<Object[]> rows = new ArrayList<>();
+            courseIds.forEach((code, id) -> rows.add(new Object[]{id, code, "Stand-in " + code, 3, null}));
+            return StandInResultSet.of(new String[]{"id", "course_code", "title", "credits", "meeting_slots"}, rows.toArray(new Object[0][]));
+        }
+        if (sql.startsWith("SELECT * FROM courses WHERE course_code = ?")) {
+            String code = (String) params.get(1);
+            Integer id = courseIds.get(code);
+            Object[][] rows = id == null ? new Object[0][] : new Object[][]{{id, code, "Stand-in " + code, 3, null}};
+            return StandInResultSet.of(new String[]{"id", "course_code", "title", "credits", "meeting_slots"}, rows);
+        }
+        if (sql.startsWith("SELECT e.id, e.student_id")) {
+            List<Object[]> rows = new ArrayList<>();
+            enrollments.forEach((id, e) -> rows.add(new Object[]{id, e.studentId(), courseIds.get(e.course()), e.course()}));
+            return StandInResultSet.of(new String[]{"id", "student_id", "course_id", "course_code"}, rows.toArray(new Object[0][]));
+        }
+        if (sql.startsWith("SELECT 1 FROM enrollments")) {
+            boolean exists = unique.containsKey(new Enrollment((Integer) params.get(1), (String) params.get(2)));
+            return StandInResultSet.of(new String[]{"one"}, exists ? new Object[][]{{1}} : new Object[0][]);
+        }
+        if (sql.startsWith("WITH d AS (DELETE FROM enrollments WHERE id = ?")) {
+            Enrollment e = enrollments.remove((Integer) params.get(1));
+            if (e != null) unique.remove(e);
+            return StandInResultSet.of(new String[]{"student_id", "id", "course"},
+                    e == null ? new Object[0][] : new Object[][]{{e.studentId(), courseIds.get(e.course()), e.course()}});
+        }
+        throw new SQLException("Not supported by stand-in: " + sql);
+    }
+}
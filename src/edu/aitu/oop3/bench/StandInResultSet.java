@@ -0,0 +1,68 @@
+package edu.aitu.oop3.bench;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * In-process stand-in for a database result: a ResultSet over prebuilt rows, so row mapping can be measured
+ * without a server. It supports the calls the DAO mappers make (next, get* by label or index, close).
+ * The proxy adds a small constant cost per call, identical across versions being compared.
+ */
+final class StandInResultSet {
+
+    private StandInResultSet() {
+    }
+
+    static ResultSet of(String[] labels, Object[][] rows) {
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < labels.length; i++) columns.put(labels[i].toLowerCase(), i);
+        int[] cursor = {-1};
+        boolean[] lastNull = {false};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    switch (name) {
+                        case "next":
+                            return ++cursor[0] < rows.length;
+                        case "beforeFirst":
+                            cursor[0] = -1;
+                            return null;
+                        case "close":
+                            cursor[0] = rows.length;
+                            return null;
+                        case "isClosed":
+                            return cursor[0] >= rows.length;
+                        case "wasNull":
+                            return lastNull[0];
+                        case "findColumn":
+                            return column(columns, args[0]) + 1;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "StandInResultSet[" + rows.length + " rows]";
+                        default:
+                            break;
+                    }
+                    if (name.startsWith("get") && args != null && args.length == 1) {
+                        Object value = rows[cursor[0]][column(columns, args[0])];
+                        lastNull[0] = value == null;
+                        if (name.equals("getInt")) return value == null ? 0 : ((Number) value).intValue();
+                        if (name.equals("getLong")) return value == null ? 0L : ((Number) value).longValue();
+                        return value;
+                    }
+                    throw new SQLException("Not supported by stand-in: " + name);
+                });
+    }
+
+    private static int column(Map<String, Integer> columns, Object key) throws SQLException {
+        if (key instanceof Integer index) return index - 1;
+        Integer col = columns.get(((String) key).toLowerCase());
+        if (col == null) throw new SQLException("Unknown column: " + key);
+        return col;
+    }
+}
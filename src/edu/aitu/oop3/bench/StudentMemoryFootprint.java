@@ -0,0 +1,90 @@
+package edu.aitu.oop3.bench;
+
+import edu.aitu.oop3.db.ColumnarStudentRepository;
+import edu.aitu.oop3.db.DemoUsersExample.Student;
+import edu.aitu.oop3.db.InMemoryRepository;
+import edu.aitu.oop3.db.Query;
+import edu.aitu.oop3.db.Repository;
+import edu.aitu.oop3.db.StudentFields;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Memory per student of {@link InMemoryRepository} (with its email index) against {@link ColumnarStudentRepository}
+ * on and off the heap, measured as the growth of used heap plus direct buffers after a full GC. Students get names
+ * from realistic pools so the name dictionary sees repeats. Also times a prefix query on each store.
+ * <p>
+ * Options: --sizes 1000000,10000000  --stores objects,columnar,offheap
+ * Run with a large -Xmx (and -XX:MaxDirectMemorySize) for 10M; a store that does not fit is reported as such.
+ */
+public class StudentMemoryFootprint {
+
+    public static void main(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (int i = 0; i + 1 < args.length; i += 2) options.put(args[i].replaceFirst("^--", ""), args[i + 1]);
+        String[] stores = options.getOrDefault("stores", "objects,columnar,offheap").split(",");
+
+        System.out.printf("max heap %d MB%n", Runtime.getRuntime().maxMemory() >> 20);
+        System.out.printf("%10s %10s %12s %12s %10s %12s%n", "students", "store", "heap MB", "direct MB", "B/student", "prefix ms");
+        for (String size : options.getOrDefault("sizes", "1000000,10000000").split(",")) {
+            int n = Integer.parseInt(size.trim());
+            for (String store : stores) measure(n, store.trim());
+        }
+    }
+
+    private static void measure(int n, String store) {
+        Supplier<Repository<Student>> factory = switch (store) {
+            case "objects" -> () -> {
+                InMemoryRepository<Student> repo = new InMemoryRepository<>();
+                repo.addUniqueIndex(StudentFields.EMAIL);
+                return repo;
+            };
+            case "columnar" -> () -> new ColumnarStudentRepository(false);
+            case "offheap" -> () -> new ColumnarStudentRepository(true);
+            default -> throw new IllegalArgumentException("Unknown store: " + store);
+        };
+        long heapBefore = usedHeap();
+        long directBefore = usedDirect();
+        Repository<Student> repo = null;
+        try {
+            repo = factory.get();
+            for (int i = 0; i < n; i++) repo.save(SyntheticStudents.withCommonNames(i));
+            long heap = usedHeap() - heapBefore;
+            long direct = usedDirect() - directBefore;
+            long t = System.nanoTime();
+            repo.find(Query.prefix(StudentFields.STUDENT_NUMBER, "CS-1000"));
+            long queryMs = (System.nanoTime() - t) / 1_000_000;
+            System.out.printf("%10d %10s %12.1f %12.1f %10.1f %12d%n", n, store, heap / 1e6, direct / 1e6,
+                    (heap + direct) / (double) n, queryMs);
+        } catch (OutOfMemoryError e) {
+            repo = null;
+            System.out.printf("%10d %10s  does not fit (%s)%n", n, store, e.getMessage());
+        }
+        repo = null;
+        usedHeap(); // let the next measurement start from a collected heap
+    }
+
+    private static long usedHeap() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    private static long usedDirect() {
+        for (BufferPoolMXBean pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class)) {
+            if (pool.getName().equals("direct")) return pool.getMemoryUsed();
+        }
+        return 0;
+    }
+}
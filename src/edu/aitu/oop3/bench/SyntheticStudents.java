@@ -0,0 +1,65 @@
+package edu.aitu.oop3.bench;
+
+import edu.aitu.oop3.db.DemoUsersExample.Student;
+import edu.aitu.oop3.db.InMemoryRepository;
+
+/**
+ * Deterministic student data for benchmarks: student i has email "student{i}@uni.kz" and a number like "CS-100042".
+ * Programs rotate CS, IT, SE, so "CS" prefixes match a third of the students and numbers ending in "00" match 1%.
+ */
+final class SyntheticStudents {
+
+    private static final String[] PROGRAMS = {"CS", "IT", "SE"};
+
+    private SyntheticStudents() {
+    }
+
+    static Student student(int i) {
+        return new Student("First" + i, "Last" + i, email(i), PROGRAMS[i % PROGRAMS.length] + "-" + (100_000 + i));
+    }
+
+    /**
+     * Like {@link #student} but with names drawn from 300 first and 2000 last names, as a real roll would repeat them.
+     */
+    static Student withCommonNames(int i) {
+        return new Student("First" + (i * 7919 % 300), "Last" + (i * 104_729 % 2000), email(i),
+                PROGRAMS[i % PROGRAMS.length] + "-" + (100_000 + i));
+    }
+
+    private static final String[] FIRST_NAMES = {
+            "Ayan", "Dana", "Timur", "Aruzhan", "Nursultan", "Aigerim", "Daniyar", "Madina", "Yerlan", "Kamila",
+            "Arman", "Zarina", "Alikhan", "Saule", "Bekzat", "Amina", "Ruslan", "Togzhan", "Askar", "Dinara",
+            "Maxim", "Anna", "Ivan", "Elena", "Dmitry", "Olga", "Sergey", "Maria", "John", "Emily",
+            "Adil", "Aliya", "Miras", "Asel", "Nurlan", "Gulnara", "Serik", "Ainur", "Bauyrzhan", "Zhanna"};
+    private static final String[] SYLLABLES = {
+            "sa", "dy", "ku", "bek", "nur", "pei", "zhan", "tal", "ser", "mar", "ka", "li", "mo", "ras", "tem",
+            "bay", "al", "ib", "ra", "gim", "tok", "su", "len", "ash", "dau", "ke", "no", "vich", "ol", "er"};
+    private static final String[] SUFFIXES = {"ov", "ova", "enko", "uly", "kyzy", "in", "ina", "bayev"};
+
+    /**
+     * Students with realistic, varied names (40 first names, about 200k surnames) and name-based emails, for text
+     * search where every "First123" sharing the same trigrams would be unrepresentative.
+     */
+    static Student withRealisticNames(int i) {
+        int h = i * 0x9E3779B1;
+        String first = FIRST_NAMES[Math.floorMod(h, FIRST_NAMES.length)];
+        int s = Math.floorMod(h >>> 7, SYLLABLES.length * SYLLABLES.length * SYLLABLES.length * SUFFIXES.length);
+        String last = SYLLABLES[s % SYLLABLES.length] + SYLLABLES[s / SYLLABLES.length % SYLLABLES.length]
+                + SYLLABLES[s / (SYLLABLES.length * SYLLABLES.length) % SYLLABLES.length]
+                + SUFFIXES[s / (SYLLABLES.length * SYLLABLES.length * SYLLABLES.length)];
+        last = Character.toUpperCase(last.charAt(0)) + last.substring(1);
+        String email = first.toLowerCase() + "." + last.toLowerCase() + i + "@uni.kz";
+        return new Student(first, last, email, PROGRAMS[i % PROGRAMS.length] + "-" + (100_000 + i));
+    }
+
+    static String email(int i) {
+        return "student" + i + "@uni.kz";
+    }
+
+    static InMemoryRepository<Student> repository(int size) {
+        InMemoryRepository<Student> repo = new InMemoryRepository<>();
+        repo.addUniqueIndex("email", s -> s.email);
+        for (int i = 0; i < size; i++) repo.save(student(i));
+        return repo;
+    }
+}
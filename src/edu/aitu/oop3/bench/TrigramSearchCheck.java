@@ -0,0 +1,83 @@
+package edu.aitu.oop3.bench;
+
+import edu.aitu.oop3.db.DemoUsersExample.Student;
+import edu.aitu.oop3.db.TrigramIndex;
+
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Check for TrigramIndex on queries the index has never seen: trigrams no record has, a mix of known and unknown
+ * ones, and misspellings of real names. Every search must return at most the limit, best first, with scores in (0, 1];
+ * a query made only of unknown trigrams must come back empty, and a record's own email must find it with score 1.
+ * Fails with an IllegalStateException on the first violation.
+ *
+ * Usage: TrigramSearchCheck [students] [queries]
+ */
+public class TrigramSearchCheck {
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int queries = args.length > 1 ? Integer.parseInt(args[1]) : 10_000;
+
+        // the smallest case: most trigrams of a query are unknown, so the rarest lists are all empty
+        TrigramIndex tiny = new TrigramIndex();
+        tiny.put(1, "Ayan", "Sadykov", "ayan.sadykov@uni.kz", "IT-2513");
+        tiny.put(2, "Dana", "Nurpeisova", "dana.nurpeisova@uni.kz", "SE-2302");
+        expectEmpty(tiny, "qxz");
+        check(tiny, "Zhuldyzbek", 5);
+        check(tiny, "Nurpeisva", 5);
+        if (tiny.search("Nurpeisva", 5).get(0).id() != 2) throw new IllegalStateException("Nurpeisva should find Dana");
+
+        TrigramIndex index = new TrigramIndex();
+        Student[] students = new Student[size + 1];
+        for (int id = 1; id <= size; id++) {
+            Student s = SyntheticStudents.withRealisticNames(id);
+            students[id] = s;
+            index.put(id, s.firstName, s.lastName, s.email, s.studentNumber);
+        }
+        expectEmpty(index, "qxzjw");
+        Random random = new Random(25);
+        for (int q = 0; q < queries; q++) {
+            Student s = students[1 + random.nextInt(size)];
+            String text = switch (q % 4) {
+                case 0 -> misspell(random, s.lastName);
+                case 1 -> s.firstName + " " + misspell(random, s.lastName);
+                case 2 -> misspell(random, s.lastName) + " qxzjw"; // partly unknown
+                default -> s.email;
+            };
+            List<TrigramIndex.Hit> hits = check(index, text, 1 + random.nextInt(20));
+            if (q % 4 == 3 && (hits.isEmpty() || hits.get(0).score() != 1.0)) {
+                throw new IllegalStateException("Own email not found with score 1: " + text + " -> " + hits);
+            }
+        }
+        System.out.printf("%d queries over %d students: ok%n", queries, size);
+    }
+
+    private static List<TrigramIndex.Hit> check(TrigramIndex index, String text, int limit) {
+        List<TrigramIndex.Hit> hits = index.search(text, limit);
+        if (hits.size() > limit) throw new IllegalStateException(text + ": " + hits.size() + " hits for limit " + limit);
+        for (int i = 0; i < hits.size(); i++) {
+            TrigramIndex.Hit hit = hits.get(i);
+            if (hit.score() <= 0 || hit.score() > 1) throw new IllegalStateException(text + ": score out of range " + hit);
+            if (i > 0 && hit.score() > hits.get(i - 1).score()) throw new IllegalStateException(text + ": not ranked " + hits);
+        }
+        return hits;
+    }
+
+    private static void expectEmpty(TrigramIndex index, String text) {
+        List<TrigramIndex.Hit> hits = check(index, text, 5);
+        if (!hits.isEmpty()) throw new IllegalStateException(text + ": expected no hits, got " + hits);
+    }
+
+    private static String misspell(Random random, String word) {
+        StringBuilder b = new StringBuilder(word);
+        int at = random.nextInt(b.length());
+        switch (random.nextInt(3)) {
+            case 0 -> b.deleteCharAt(at);
+            case 1 -> b.setCharAt(at, 'x');
+            default -> b.insert(at, 'q');
+        }
+        return b.toString();
+    }
+}
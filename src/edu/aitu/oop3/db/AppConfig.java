@@ -7,12 +7,71 @@ public class AppConfig {
     private final String user;
     private final String password;
 
+    // Connection pool settings (see ConnectionPool)
+    private final int poolMinIdle;
+    private final int poolMaxSize;
+    private final long poolIdleTimeoutMs;
+    private final long poolBorrowTimeoutMs;
+    private final int poolValidationTimeoutSec;
+    private final long poolLeakThresholdMs;
+
+    private final int importBatchSize;
+    private final int fetchSize;
+    private final int pageSize;
+
+    private final int courseCacheSize;
+    private final long courseCacheTtlMs;
+
+    private final boolean journalEnabled;
+    private final String journalDir;
+    private final int journalSegmentBytes;
+    private final EnrollmentJournal.FsyncPolicy journalFsync;
+    private final long journalFsyncIntervalMs;
+    private final int journalRetainSegments;
+
+    private final String snapshotFile;
+    private final boolean snapshotCompress;
+    private final long snapshotIntervalMs;
+
+    private final boolean metricsEnabled;
+    private final boolean metricsJmx;
+    private final long metricsDumpIntervalMs;
+
     private AppConfig() {
         // Load from environment or defaults
         this.url = System.getenv().getOrDefault("DB_URL",
                 "jdbc:postgresql://aws-1-ap-south-1.pooler.supabase.com:5432/postgres?sslmode=require");
         this.user = System.getenv().getOrDefault("DB_USER", "postgres.wvkdnfzggynvqbuszecy");
         this.password = System.getenv().getOrDefault("DB_PASSWORD", "");
+
+        this.poolMinIdle = intEnv("DB_POOL_MIN_IDLE", 1);
+        this.poolMaxSize = intEnv("DB_POOL_MAX_SIZE", 10);
+        this.poolIdleTimeoutMs = longEnv("DB_POOL_IDLE_TIMEOUT_MS", 600_000);
+        this.poolBorrowTimeoutMs = longEnv("DB_POOL_BORROW_TIMEOUT_MS", 30_000);
+        this.poolValidationTimeoutSec = intEnv("DB_POOL_VALIDATION_TIMEOUT_SEC", 5);
+        this.poolLeakThresholdMs = longEnv("DB_POOL_LEAK_THRESHOLD_MS", 0); // 0 = leak detection off
+
+        this.importBatchSize = intEnv("DB_IMPORT_BATCH_SIZE", 1000);
+        this.fetchSize = intEnv("DB_FETCH_SIZE", 500);
+        this.pageSize = intEnv("DB_PAGE_SIZE", 50);
+
+        this.courseCacheSize = intEnv("COURSE_CACHE_SIZE", 1024); // 0 = no caching
+        this.courseCacheTtlMs = longEnv("COURSE_CACHE_TTL_MS", 300_000);
+
+        this.journalEnabled = boolEnv("JOURNAL_ENABLED", false);
+        this.journalDir = System.getenv().getOrDefault("JOURNAL_DIR", "journal");
+        this.journalSegmentBytes = intEnv("JOURNAL_SEGMENT_BYTES", 64 * 1024 * 1024);
+        this.journalFsync = fsyncEnv("JOURNAL_FSYNC", EnrollmentJournal.FsyncPolicy.INTERVAL);
+        this.journalFsyncIntervalMs = longEnv("JOURNAL_FSYNC_INTERVAL_MS", 1000);
+        this.journalRetainSegments = intEnv("JOURNAL_RETAIN_SEGMENTS", 8); // 0 = keep all
+
+        this.snapshotFile = System.getenv().getOrDefault("SNAPSHOT_FILE", "students.snapshot");
+        this.snapshotCompress = boolEnv("SNAPSHOT_COMPRESS", true);
+        this.snapshotIntervalMs = longEnv("SNAPSHOT_INTERVAL_MS", 60_000); // 0 = only on close
+
+        this.metricsEnabled = boolEnv("METRICS_ENABLED", false);
+        this.metricsJmx = boolEnv("METRICS_JMX", true);
+        this.metricsDumpIntervalMs = longEnv("METRICS_DUMP_INTERVAL_MS", 0); // 0 = no periodic dump
     }
 
     public static AppConfig getInstance() {
@@ -22,4 +81,65 @@ public class AppConfig {
     public String getUrl() { return url; }
     public String getUser() { return user; }
     public String getPassword() { return password; }
+
+    public int getPoolMinIdle() { return poolMinIdle; }
+    public int getPoolMaxSize() { return poolMaxSize; }
+    public long getPoolIdleTimeoutMs() { return poolIdleTimeoutMs; }
+    public long getPoolBorrowTimeoutMs() { return poolBorrowTimeoutMs; }
+    public int getPoolValidationTimeoutSec() { return poolValidationTimeoutSec; }
+    public long getPoolLeakThresholdMs() { return poolLeakThresholdMs; }
+
+    public int getImportBatchSize() { return importBatchSize; }
+    public int getFetchSize() { return fetchSize; }
+    public int getPageSize() { return pageSize; }
+
+    public int getCourseCacheSize() { return courseCacheSize; }
+    public long getCourseCacheTtlMs() { return courseCacheTtlMs; }
+
+    public boolean isJournalEnabled() { return journalEnabled; }
+    public String getJournalDir() { return journalDir; }
+    public int getJournalSegmentBytes() { return journalSegmentBytes; }
+    public EnrollmentJournal.FsyncPolicy getJournalFsync() { return journalFsync; }
+    public long getJournalFsyncIntervalMs() { return journalFsyncIntervalMs; }
+    public int getJournalRetainSegments() { return journalRetainSegments; }
+
+    public String getSnapshotFile() { return snapshotFile; }
+    public boolean isSnapshotCompress() { return snapshotCompress; }
+    public long getSnapshotIntervalMs() { return snapshotIntervalMs; }
+
+    public boolean isMetricsEnabled() { return metricsEnabled; }
+    public boolean isMetricsJmx() { return metricsJmx; }
+    public long getMetricsDumpIntervalMs() { return metricsDumpIntervalMs; }
+
+    private static boolean boolEnv(String name, boolean def) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) return def;
+        return value.trim().equalsIgnoreCase("true") || value.trim().equals("1");
+    }
+
+    private static EnrollmentJournal.FsyncPolicy fsyncEnv(String name, EnrollmentJournal.FsyncPolicy def) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) return def;
+        try {
+            return EnrollmentJournal.FsyncPolicy.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            System.out.println("Warning: ignoring invalid " + name + "=" + value);
+            return def;
+        }
+    }
+
+    private static int intEnv(String name, int def) {
+        return (int) longEnv(name, def);
+    }
+
+    private static long longEnv(String name, long def) {
+        String value = System.getenv(name);
+        if (value == null || value.isBlank()) return def;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            System.out.println("Warning: ignoring invalid " + name + "=" + value);
+            return def;
+        }
+    }
 }
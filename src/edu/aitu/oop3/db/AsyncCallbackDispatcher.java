@@ -0,0 +1,383 @@
+package edu.aitu.oop3.db;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * RegistrationCallback that hands events to background consumer threads, so a slow subscriber (email, audit)
+ * no longer stalls {@link EnrollmentService#registerAll}. Each consumer owns a preallocated ring of fixed capacity;
+ * events are partitioned by student, so one student's events are always delivered in order by the same thread.
+ * Consumers drain up to {@code batchSize} events at a time; subscribers implementing {@link BatchCallback} get the
+ * whole batch in one call.
+ * <p>
+ * When a ring is full, {@link Backpressure} decides: wait for space, overwrite the oldest event, or throw
+ * {@link RejectedExecutionException} back to the registering thread.
+ */
+public class AsyncCallbackDispatcher implements RegistrationCallback, AutoCloseable {
+
+    public enum Backpressure {
+        BLOCK, DROP_OLDEST, FAIL_FAST
+    }
+
+    public record Event(DemoUsersExample.Student student, Course course, long publishedAt) {
+    }
+
+    /**
+     * Subscriber that prefers events in batches; called once per drained batch instead of once per event.
+     */
+    public interface BatchCallback extends RegistrationCallback {
+        void onRegisteredBatch(List<Event> events);
+
+        @Override
+        default void onRegistered(DemoUsersExample.Student student, Course course) {
+            onRegisteredBatch(List.of(new Event(student, course, System.nanoTime())));
+        }
+    }
+
+    public static class Builder {
+        private final List<RegistrationCallback> subscribers = new ArrayList<>();
+        private int consumers = 1;
+        private int capacity = 1024;
+        private int batchSize = 64;
+        private Backpressure backpressure = Backpressure.BLOCK;
+
+        public Builder addSubscriber(RegistrationCallback subscriber) {
+            subscribers.add(subscriber);
+            return this;
+        }
+
+        public Builder setConsumers(int consumers) {
+            this.consumers = consumers;
+            return this;
+        }
+
+        /** Ring capacity per consumer, rounded up to a power of two. */
+        public Builder setCapacity(int capacity) {
+            this.capacity = capacity;
+            return this;
+        }
+
+        public Builder setBatchSize(int batchSize) {
+            this.batchSize = batchSize;
+            return this;
+        }
+
+        public Builder setBackpressure(Backpressure backpressure) {
+            this.backpressure = backpressure;
+            return this;
+        }
+
+        public AsyncCallbackDispatcher build() {
+            if (subscribers.isEmpty()) throw new IllegalStateException("at least one subscriber is required");
+            if (consumers < 1 || capacity < 1 || batchSize < 1) throw new IllegalArgumentException("consumers, capacity and batchSize must be >= 1");
+            return new AsyncCallbackDispatcher(this);
+        }
+    }
+
+    private final List<RegistrationCallback> subscribers;
+    private final Backpressure backpressure;
+    private final int batchSize;
+    private final Ring[] rings;
+    private final Thread[] threads;
+    private final LatencyHistogram lag = new LatencyHistogram();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder subscriberErrors = new LongAdder();
+    private volatile boolean closed;
+
+    private AsyncCallbackDispatcher(Builder b) {
+        this.subscribers = List.copyOf(b.subscribers);
+        this.backpressure = b.backpressure;
+        this.batchSize = b.batchSize;
+        this.rings = new Ring[b.consumers];
+        this.threads = new Thread[b.consumers];
+        int capacity = Integer.highestOneBit(Math.max(1, b.capacity - 1)) << 1;
+        for (int i = 0; i < b.consumers; i++) {
+            rings[i] = new Ring(capacity);
+            Ring ring = rings[i];
+            threads[i] = new Thread(() -> consume(ring), "callback-dispatch-" + i);
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    @Override
+    public void onRegistered(DemoUsersExample.Student student, Course course) {
+        if (closed) throw new RejectedExecutionException("Callback dispatcher is closed");
+        rings[partition(student)].publish(student, course);
+    }
+
+    /**
+     * Waits until every event published so far has been delivered, or the timeout passes.
+     */
+    public boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        for (Ring ring : rings) {
+            if (!ring.awaitEmpty(deadline)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Stops accepting events, delivers what is queued and stops the consumer threads.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (Ring ring : rings) ring.wakeConsumer();
+        for (Thread t : threads) {
+            try {
+                t.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Ring ring : rings) depth += ring.depth();
+        return depth;
+    }
+
+    /**
+     * Age of the oldest event not yet delivered, in milliseconds; 0 when all rings are empty.
+     */
+    public double getCurrentLagMillis() {
+        long oldest = 0;
+        long now = System.nanoTime();
+        for (Ring ring : rings) oldest = Math.max(oldest, ring.headAge(now));
+        return oldest / 1e6;
+    }
+
+    /** Publish-to-delivery lag of delivered events at the given percentile, in milliseconds. */
+    public double getLagMillis(double percentile) {
+        return lag.percentile(percentile) / 1e6;
+    }
+
+    public long getPublished() { return published.sum(); }
+    public long getDelivered() { return delivered.sum(); }
+    public long getDropped() { return dropped.sum(); }
+    public long getRejected() { return rejected.sum(); }
+    public long getSubscriberErrors() { return subscriberErrors.sum(); }
+
+    // same student -> same ring -> same consumer thread, which is what keeps their events ordered
+    private int partition(DemoUsersExample.Student student) {
+        Object key = student.studentNumber != null ? student.studentNumber : student.email;
+        int h = key != null ? key.hashCode() : System.identityHashCode(student);
+        h ^= h >>> 16;
+        return Math.floorMod(h, rings.length);
+    }
+
+    private void consume(Ring ring) {
+        DemoUsersExample.Student[] students = new DemoUsersExample.Student[batchSize];
+        Course[] courses = new Course[batchSize];
+        long[] times = new long[batchSize];
+        while (true) {
+            int n;
+            try {
+                n = ring.drain(students, courses, times);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (n == 0) return; // closed and empty
+            deliver(students, courses, times, n);
+            for (int i = 0; i < n; i++) {
+                students[i] = null;
+                courses[i] = null;
+            }
+            ring.delivered();
+        }
+    }
+
+    private void deliver(DemoUsersExample.Student[] students, Course[] courses, long[] times, int n) {
+        List<Event> batch = null;
+        for (RegistrationCallback subscriber : subscribers) {
+            if (subscriber instanceof BatchCallback batchSubscriber) {
+                if (batch == null) {
+                    List<Event> events = new ArrayList<>(n);
+                    for (int i = 0; i < n; i++) events.add(new Event(students[i], courses[i], times[i]));
+                    batch = Collections.unmodifiableList(events);
+                }
+                try {
+                    batchSubscriber.onRegisteredBatch(batch);
+                } catch (RuntimeException e) {
+                    subscriberError(subscriber, e);
+                }
+                continue;
+            }
+            for (int i = 0; i < n; i++) {
+                try {
+                    subscriber.onRegistered(students[i], courses[i]);
+                } catch (RuntimeException e) {
+                    subscriberError(subscriber, e);
+                }
+            }
+        }
+        long now = System.nanoTime();
+        for (int i = 0; i < n; i++) lag.record(now - times[i]);
+        delivered.add(n);
+    }
+
+    private void subscriberError(RegistrationCallback subscriber, RuntimeException e) {
+        subscriberErrors.increment();
+        System.out.println("Warning: registration callback " + subscriber + " failed: " + e.getMessage());
+    }
+
+    /**
+     * Bounded ring of parallel slot arrays, allocated once. Producers and the single consumer share one lock;
+     * the consumer copies a whole batch out per acquisition, so the lock is taken once per batch, not per event.
+     */
+    private final class Ring {
+        private final DemoUsersExample.Student[] students;
+        private final Course[] courses;
+        private final long[] times;
+        private final int mask;
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private final Condition idle = lock.newCondition();
+        private long head; // next slot to consume
+        private long tail; // next slot to fill
+        private int inFlight; // drained but not yet delivered
+        private long inFlightSince;
+
+        Ring(int capacity) {
+            students = new DemoUsersExample.Student[capacity];
+            courses = new Course[capacity];
+            times = new long[capacity];
+            mask = capacity - 1;
+        }
+
+        void publish(DemoUsersExample.Student student, Course course) {
+            lock.lock();
+            try {
+                // checked again under the lock: close() sets the flag before waking the consumer under this lock, so
+                // nothing can be queued after the consumer has seen the ring closed and empty
+                if (closed) throw new RejectedExecutionException("Callback dispatcher is closed");
+                while (tail - head == students.length) {
+                    if (backpressure == Backpressure.FAIL_FAST) {
+                        rejected.increment();
+                        throw new RejectedExecutionException("Callback queue is full (" + students.length + " events)");
+                    }
+                    if (backpressure == Backpressure.DROP_OLDEST) {
+                        int slot = (int) (head++ & mask);
+                        students[slot] = null;
+                        courses[slot] = null;
+                        dropped.increment();
+                        break;
+                    }
+                    notFull.awaitUninterruptibly();
+                    if (closed) throw new RejectedExecutionException("Callback dispatcher is closed");
+                }
+                int slot = (int) (tail++ & mask);
+                students[slot] = student;
+                courses[slot] = course;
+                times[slot] = System.nanoTime();
+                published.increment();
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        // blocks until at least one event is available; returns 0 only when closed and empty
+        int drain(DemoUsersExample.Student[] outStudents, Course[] outCourses, long[] outTimes) throws InterruptedException {
+            lock.lock();
+            try {
+                while (tail == head) {
+                    if (closed) return 0;
+                    notEmpty.await();
+                }
+                int n = (int) Math.min(tail - head, outStudents.length);
+                for (int i = 0; i < n; i++) {
+                    int slot = (int) (head++ & mask);
+                    outStudents[i] = students[slot];
+                    outCourses[i] = courses[slot];
+                    outTimes[i] = times[slot];
+                    students[slot] = null;
+                    courses[slot] = null;
+                }
+                inFlight = n;
+                inFlightSince = outTimes[0];
+                notFull.signalAll();
+                return n;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void delivered() {
+            lock.lock();
+            try {
+                inFlight = 0;
+                if (tail == head) idle.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        boolean awaitEmpty(long deadline) throws InterruptedException {
+            lock.lock();
+            try {
+                while (tail != head || inFlight > 0) {
+                    long left = deadline - System.nanoTime();
+                    if (left <= 0) return false;
+                    idle.awaitNanos(left);
+                }
+                return true;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void wakeConsumer() {
+            lock.lock();
+            try {
+                notEmpty.signalAll();
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int depth() {
+            lock.lock();
+            try {
+                return (int) (tail - head) + inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        long headAge(long now) {
+            lock.lock();
+            try {
+                // the batch being delivered is older than anything still queued
+                if (inFlight > 0) return now - inFlightSince;
+                return tail == head ? 0 : now - times[(int) (head & mask)];
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "AsyncCallbackDispatcher[consumers=" + rings.length + ", depth=" + getQueueDepth() + ", published=" + getPublished()
+                + ", delivered=" + getDelivered() + ", dropped=" + getDropped() + ", rejected=" + getRejected() + "]";
+    }
+}
@@ -0,0 +1,353 @@
+package edu.aitu.oop3.db;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streams CSV files into the students, courses and enrollments tables.
+ * Rows are written in batches, one transaction per batch, and duplicates are skipped with ON CONFLICT DO NOTHING.
+ * On PostgreSQL each batch is sent with COPY into a temporary staging table and merged from there;
+ * other databases get one multi-row INSERT per batch.
+ *
+ * File layouts (an optional header line is skipped):
+ * students: first_name,last_name,email,student_number
+ * courses: course_code,title,credits
+ * enrollments: student_email,course_code
+ */
+public class BulkImporter {
+
+    public enum Target {
+        STUDENTS("students", new String[]{"first_name", "last_name", "email", "student_number"}, new boolean[]{true, false, true, false}),
+        COURSES("courses", new String[]{"course_code", "title", "credits"}, new boolean[]{true, true, false}),
+        ENROLLMENTS("enrollments", new String[]{"student_email", "course_code"}, new boolean[]{true, true});
+
+        final String table;
+        final String[] columns;
+        final boolean[] required;
+
+        Target(String table, String[] columns, boolean[] required) {
+            this.table = table;
+            this.columns = columns;
+            this.required = required;
+        }
+    }
+
+    // PostgreSQL accepts at most 32767 bind parameters per statement
+    private static final int MAX_PARAMETERS = 32767;
+    private static final int MAX_REPORTED_MALFORMED = 10;
+
+    private final int batchSize;
+    private final boolean allowCopy;
+
+    public BulkImporter() {
+        this(AppConfig.getInstance().getImportBatchSize(), true);
+    }
+
+    public BulkImporter(int batchSize, boolean allowCopy) {
+        if (batchSize < 1) throw new IllegalArgumentException("batchSize must be >= 1");
+        this.batchSize = batchSize;
+        this.allowCopy = allowCopy;
+    }
+
+    public ImportReport importStudents(Connection connection, Path file) throws IOException, SQLException {
+        return importFile(connection, file, Target.STUDENTS);
+    }
+
+    public ImportReport importCourses(Connection connection, Path file) throws IOException, SQLException {
+        return importFile(connection, file, Target.COURSES);
+    }
+
+    public ImportReport importEnrollments(Connection connection, Path file) throws IOException, SQLException {
+        return importFile(connection, file, Target.ENROLLMENTS);
+    }
+
+    public ImportReport importFile(Connection connection, Path file, Target target) throws IOException, SQLException {
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return importLines(connection, reader, target);
+        }
+    }
+
+    public ImportReport importLines(Connection connection, BufferedReader reader, Target target) throws IOException, SQLException {
+        long start = System.nanoTime();
+        boolean copy = allowCopy && CopyBatchWriter.isSupported(connection);
+        int rowsPerBatch = copy ? batchSize : Math.min(batchSize, MAX_PARAMETERS / target.columns.length);
+        String insertSelect = insertSelect(connection, target);
+
+        long read = 0, accepted = 0, malformed = 0;
+        int batches = 0;
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (BatchWriter writer = copy ? new CopyBatchWriter(connection, target, insertSelect)
+                : new MultiRowBatchWriter(connection, target, insertSelect, rowsPerBatch)) {
+            List<String[]> batch = new ArrayList<>(rowsPerBatch);
+            String line;
+            long lineNo = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+                String[] row = parseCsvLine(line);
+                if (lineNo == 1 && row[0].trim().equalsIgnoreCase(target.columns[0])) continue; // header
+                read++;
+                String problem = validate(row, target);
+                if (problem != null) {
+                    if (++malformed <= MAX_REPORTED_MALFORMED) {
+                        System.out.println("Skipping line " + lineNo + " (" + problem + "): " + line);
+                    }
+                    continue;
+                }
+                batch.add(row);
+                if (batch.size() == rowsPerBatch) {
+                    accepted += flush(connection, writer, batch, lineNo);
+                    batches++;
+                }
+            }
+            if (!batch.isEmpty()) {
+                accepted += flush(connection, writer, batch, lineNo);
+                batches++;
+            }
+        } finally {
+            connection.setAutoCommit(autoCommit);
+        }
+        return new ImportReport(target.table, copy, read, accepted, malformed, batches,
+                Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static long flush(Connection connection, BatchWriter writer, List<String[]> batch, long lineNo) throws SQLException {
+        try {
+            long inserted = writer.write(batch);
+            connection.commit();
+            return inserted;
+        } catch (SQLException e) {
+            connection.rollback();
+            throw new SQLException("Import failed in the batch ending at line " + lineNo
+                    + " (earlier batches are committed): " + e.getMessage(), e.getSQLState(), e);
+        } finally {
+            batch.clear();
+        }
+    }
+
+    // INSERT ... SELECT over a row source named v, which is either a VALUES list or the COPY staging table
+    private static String insertSelect(Connection connection, Target target) throws SQLException {
+        return switch (target) {
+            case STUDENTS -> "INSERT INTO students (first_name, last_name, email, student_number) "
+                    + "SELECT v.first_name, v.last_name, v.email, v.student_number FROM %s ON CONFLICT DO NOTHING";
+            case COURSES -> "INSERT INTO courses (course_code, title, credits) "
+                    + "SELECT v.course_code, v.title, COALESCE(v.credits, 0) FROM %s ON CONFLICT DO NOTHING";
+            case ENROLLMENTS -> {
+                EnrollmentSchema.Layout layout = EnrollmentSchema.layout(connection);
+                String value = layout.byId() ? "c.id" : "c.course_code";
+                yield "INSERT INTO enrollments (student_id, " + layout.column() + ") SELECT s.id, " + value + " FROM %s "
+                        + "JOIN students s ON s.email = v.student_email "
+                        + "JOIN courses c ON c.course_code = v.course_code ON CONFLICT DO NOTHING";
+            }
+        };
+    }
+
+    private static String validate(String[] row, Target target) {
+        if (row.length != target.columns.length) {
+            return "expected " + target.columns.length + " columns, got " + row.length;
+        }
+        for (int i = 0; i < row.length; i++) {
+            if (target.required[i] && row[i].isEmpty()) return target.columns[i] + " is required";
+        }
+        if (target == Target.COURSES && !row[2].isEmpty()) {
+            try {
+                Integer.parseInt(row[2]);
+            } catch (NumberFormatException e) {
+                return "credits is not an integer";
+            }
+        }
+        return null;
+    }
+
+    // Minimal RFC 4180 field splitting: commas, double-quoted fields, "" as an escaped quote.
+    static String[] parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char ch = line.charAt(i);
+            if (quoted) {
+                if (ch == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (ch == '"') {
+                    quoted = false;
+                } else {
+                    field.append(ch);
+                }
+            } else if (ch == '"') {
+                quoted = true;
+            } else if (ch == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(ch);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields.toArray(new String[0]);
+    }
+
+    private interface BatchWriter extends AutoCloseable {
+        long write(List<String[]> rows) throws SQLException;
+
+        @Override
+        void close() throws SQLException;
+    }
+
+    private static final class MultiRowBatchWriter implements BatchWriter {
+        private final Connection connection;
+        private final Target target;
+        private final String insertSelect;
+        private final int fullBatch;
+        private PreparedStatement fullStatement; // reused for every full-size batch
+
+        MultiRowBatchWriter(Connection connection, Target target, String insertSelect, int fullBatch) {
+            this.connection = connection;
+            this.target = target;
+            this.insertSelect = insertSelect;
+            this.fullBatch = fullBatch;
+        }
+
+        @Override
+        public long write(List<String[]> rows) throws SQLException {
+            if (rows.size() == fullBatch) {
+                if (fullStatement == null) fullStatement = connection.prepareStatement(sql(fullBatch));
+                return bindAndRun(fullStatement, rows);
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(sql(rows.size()))) {
+                return bindAndRun(stmt, rows);
+            }
+        }
+
+        private String sql(int rowCount) {
+            int cols = target.columns.length;
+            StringBuilder values = new StringBuilder("(VALUES ");
+            for (int r = 0; r < rowCount; r++) {
+                if (r > 0) values.append(", ");
+                values.append('(');
+                for (int c = 0; c < cols; c++) values.append(c == 0 ? "?" : ", ?");
+                values.append(')');
+            }
+            values.append(") AS v(").append(String.join(", ", target.columns)).append(')');
+            return String.format(insertSelect, values);
+        }
+
+        private long bindAndRun(PreparedStatement stmt, List<String[]> rows) throws SQLException {
+            int p = 1;
+            for (String[] row : rows) {
+                for (int c = 0; c < row.length; c++) {
+                    boolean intColumn = target == Target.COURSES && c == 2;
+                    if (row[c].isEmpty()) stmt.setNull(p++, intColumn ? Types.INTEGER : Types.VARCHAR);
+                    else if (intColumn) stmt.setInt(p++, Integer.parseInt(row[c]));
+                    else stmt.setString(p++, row[c]);
+                }
+            }
+            return stmt.executeUpdate();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (fullStatement != null) fullStatement.close();
+        }
+    }
+
+    // PostgreSQL COPY through the driver's CopyManager, looked up reflectively so the driver stays a runtime-only dependency.
+    private static final class CopyBatchWriter implements BatchWriter {
+        private final Object copyManager;
+        private final java.lang.reflect.Method copyIn;
+        private final String stagingTable;
+        private final String copySql;
+        private final PreparedStatement merge;
+
+        CopyBatchWriter(Connection connection, Target target, String insertSelect) throws SQLException {
+            try {
+                Class<?> pgConnection = Class.forName("org.postgresql.PGConnection");
+                Object pg = connection.unwrap(pgConnection);
+                this.copyManager = pgConnection.getMethod("getCopyAPI").invoke(pg);
+                this.copyIn = Class.forName("org.postgresql.copy.CopyManager").getMethod("copyIn", String.class, Reader.class);
+            } catch (ReflectiveOperationException e) {
+                throw new SQLException("PostgreSQL COPY API not available", e);
+            }
+            this.stagingTable = "import_staging_" + target.table;
+            StringBuilder ddl = new StringBuilder("CREATE TEMP TABLE IF NOT EXISTS " + stagingTable + " (");
+            for (int c = 0; c < target.columns.length; c++) {
+                if (c > 0) ddl.append(", ");
+                ddl.append(target.columns[c]).append(target == Target.COURSES && c == 2 ? " INTEGER" : " TEXT");
+            }
+            ddl.append(") ON COMMIT DELETE ROWS");
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(ddl.toString());
+            }
+            this.copySql = "COPY " + stagingTable + " FROM STDIN WITH (FORMAT csv)";
+            this.merge = connection.prepareStatement(String.format(insertSelect, stagingTable + " v"));
+        }
+
+        static boolean isSupported(Connection connection) {
+            try {
+                return connection.isWrapperFor(Class.forName("org.postgresql.PGConnection"));
+            } catch (ClassNotFoundException | SQLException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public long write(List<String[]> rows) throws SQLException {
+            StringBuilder csv = new StringBuilder(rows.size() * 64);
+            for (String[] row : rows) {
+                for (int c = 0; c < row.length; c++) {
+                    if (c > 0) csv.append(',');
+                    // unquoted empty field is NULL in COPY csv format
+                    if (!row[c].isEmpty()) csv.append('"').append(row[c].replace("\"", "\"\"")).append('"');
+                }
+                csv.append('\n');
+            }
+            try {
+                copyIn.invoke(copyManager, copySql, new StringReader(csv.toString()));
+            } catch (java.lang.reflect.InvocationTargetException e) {
+                if (e.getCause() instanceof SQLException sql) throw sql;
+                throw new SQLException("COPY into " + stagingTable + " failed", e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new SQLException("COPY into " + stagingTable + " failed", e);
+            }
+            return merge.executeUpdate();
+        }
+
+        @Override
+        public void close() throws SQLException {
+            merge.close();
+        }
+    }
+
+    /**
+     * Usage: BulkImporter students|courses|enrollments file.csv [batchSize]
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.out.println("Usage: BulkImporter students|courses|enrollments <file.csv> [batchSize]");
+            return;
+        }
+        Target target = Target.valueOf(args[0].toUpperCase());
+        int batch = args.length > 2 ? Integer.parseInt(args[2]) : AppConfig.getInstance().getImportBatchSize();
+        try (Connection connection = DatabaseConnection.getConnection()) {
+            ImportReport report = new BulkImporter(batch, true).importFile(connection, Path.of(args[1]), target);
+            System.out.println(report);
+        } catch (IOException | SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
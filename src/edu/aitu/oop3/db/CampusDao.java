@@ -0,0 +1,639 @@
+package edu.aitu.oop3.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * Data access for students, instructors, courses and enrollments.
+ * All SQL lives here; statements are prepared once per connection through {@link StatementCache}.
+ * One instance is bound to one connection and, like the connection, is not meant to be shared between threads.
+ */
+public class CampusDao implements AutoCloseable {
+
+    public record StudentRow(int id, String firstName, String lastName, String email, String studentNumber) {
+    }
+
+    public record InstructorRow(int id, String firstName, String lastName, String email) {
+    }
+
+    public record CourseRow(int id, String courseCode, String title, int credits, WeeklySchedule meetings) {
+    }
+
+    /** Seat usage and meeting times of one course; capacity is null when the course has no limit. */
+    public record CourseSeatsRow(String courseCode, Integer capacity, int enrolled, WeeklySchedule meetings) {
+    }
+
+    /** Who is enrolled in which course, without the joined details. */
+    public record EnrollmentKeyRow(int id, int studentId, int courseId, String courseCode) {
+    }
+
+    public record EnrollmentRow(int id, String firstName, String lastName, String studentNumber,
+                                String course, String title, Timestamp enrolledAt) {
+    }
+
+    /** Returned by {@link #insertEnrollment} when the course code does not exist. */
+    public static final int COURSE_NOT_FOUND = -1;
+
+    // ---- students
+    static final String INSERT_STUDENT = """
+            INSERT INTO students (first_name, last_name, email, student_number)
+            VALUES (?, ?, ?, ?)
+            ON CONFLICT (email) DO NOTHING;
+            """;
+    static final String SELECT_STUDENT = "SELECT * FROM students WHERE id = ?";
+    static final String SELECT_ALL_STUDENTS = "SELECT * FROM students ORDER BY id";
+    static final String SELECT_STUDENTS_AFTER = "SELECT * FROM students WHERE id > ? ORDER BY id";
+    static final String SELECT_STUDENTS_PAGE = "SELECT * FROM students WHERE id > ? ORDER BY id LIMIT ?";
+    static final String SELECT_STUDENT_ID_BY_EMAIL = "SELECT id FROM students WHERE email = ?";
+    static final String UPDATE_STUDENT_EMAIL = "UPDATE students SET email = ? WHERE id = ?";
+    static final String DELETE_STUDENT = "DELETE FROM students WHERE id = ?";
+
+    // ---- instructors
+    static final String INSERT_INSTRUCTOR = """
+            INSERT INTO instructors (first_name, last_name, email)
+            VALUES (?, ?, ?)
+            ON CONFLICT (email) DO NOTHING;
+            """;
+    static final String SELECT_INSTRUCTOR = "SELECT * FROM instructors WHERE id = ?";
+    static final String SELECT_ALL_INSTRUCTORS = "SELECT * FROM instructors ORDER BY id";
+    static final String SELECT_INSTRUCTORS_PAGE = "SELECT * FROM instructors WHERE id > ? ORDER BY id LIMIT ?";
+    static final String SELECT_INSTRUCTOR_ID_BY_EMAIL = "SELECT id FROM instructors WHERE email = ?";
+    static final String UPDATE_INSTRUCTOR_EMAIL = "UPDATE instructors SET email = ? WHERE id = ?";
+    static final String DELETE_INSTRUCTOR = "DELETE FROM instructors WHERE id = ?";
+
+    // ---- courses
+    static final String INSERT_COURSE = """
+            INSERT INTO courses (course_code, title, credits)
+            VALUES (?, ?, ?)
+            ON CONFLICT (course_code) DO NOTHING;
+            """;
+    static final String SELECT_COURSE = "SELECT * FROM courses WHERE id = ?";
+    static final String SELECT_ALL_COURSES = "SELECT c.id, c.course_code, c.title, c.credits, c.meeting_slots FROM courses c ORDER BY c.id";
+    static final String SELECT_COURSES_PAGE = "SELECT c.id, c.course_code, c.title, c.credits, c.meeting_slots FROM courses c WHERE c.id > ? ORDER BY c.id LIMIT ?";
+    static final String SELECT_COURSE_BY_CODE = "SELECT * FROM courses WHERE course_code = ?";
+    static final String UPDATE_COURSE = "UPDATE courses SET title = COALESCE(NULLIF(?, ''), title), credits = COALESCE(?, credits) WHERE id = ?";
+    static final String UPDATE_COURSE_CAPACITY = "UPDATE courses SET capacity = ? WHERE course_code = ?";
+    static final String UPDATE_COURSE_MEETING_SLOTS = "UPDATE courses SET meeting_slots = ? WHERE course_code = ?";
+    static final String DELETE_COURSE = "DELETE FROM courses WHERE id = ?";
+
+    // ---- enrollments
+    static final String DELETE_ENROLLMENT = "DELETE FROM enrollments WHERE id = ?";
+
+    private final Connection connection;
+    private final StatementCache statements;
+    private final CourseCatalogCache courses;
+    private final boolean ownsStatements;
+    private final int fetchSize;
+
+    public CampusDao(Connection connection) {
+        this.connection = connection;
+        this.statements = StatementCache.forConnection(connection);
+        this.courses = CourseCatalogCache.getInstance();
+        this.ownsStatements = !StatementCache.isShared(connection);
+        this.fetchSize = AppConfig.getInstance().getFetchSize();
+    }
+
+    public Connection getConnection() { return connection; }
+    public StatementCache getStatementCache() { return statements; }
+
+    // ==================== STUDENTS ====================
+
+    public int insertStudent(String firstName, String lastName, String email, String studentNumber) throws SQLException {
+        return timed("insertStudent", () -> {
+            PreparedStatement stmt = statements.prepare(INSERT_STUDENT);
+            stmt.setString(1, firstName);
+            stmt.setString(2, lastName);
+            stmt.setString(3, email);
+            stmt.setString(4, studentNumber);
+            return stmt.executeUpdate();
+        });
+    }
+
+    public Optional<StudentRow> findStudentById(int id) throws SQLException {
+        return timed("findStudentById", () -> {
+            PreparedStatement stmt = statements.prepare(SELECT_STUDENT);
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? Optional.of(mapStudent(rs)) : Optional.empty();
+            }
+        });
+    }
+
+    public List<StudentRow> findAllStudents() throws SQLException {
+        return timed("findAllStudents", () -> {
+            List<StudentRow> rows = new ArrayList<>();
+            try (ResultSet rs = statements.prepare(SELECT_ALL_STUDENTS).executeQuery()) {
+                while (rs.next()) rows.add(mapStudent(rs));
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Streams all students in id order. Close the cursor before reusing this DAO for another listing.
+     */
+    public RowCursor<StudentRow> openStudentCursor() throws SQLException {
+        return timed("openStudentCursor", () -> openCursor(SELECT_ALL_STUDENTS, CampusDao::mapStudent));
+    }
+
+    /**
+     * Streams students with id &gt; {@code afterId} in id order, e.g. rows added since a snapshot was taken.
+     */
+    public RowCursor<StudentRow> openStudentCursor(int afterId) throws SQLException {
+        return timed("openStudentCursorAfter", () -> openCursor(SELECT_STUDENTS_AFTER, CampusDao::mapStudent, afterId));
+    }
+
+    public Page<StudentRow> findStudentsPage(String pageToken, int limit) throws SQLException {
+        return timed("findStudentsPage", () -> page(SELECT_STUDENTS_PAGE, CampusDao::mapStudent, StudentRow::id, pageToken, limit));
+    }
+
+    public Integer findStudentIdByEmail(String email) throws SQLException {
+        return timed("findStudentIdByEmail", () -> findId(SELECT_STUDENT_ID_BY_EMAIL, email), CampusDao::found);
+    }
+
+    public int updateStudentEmail(int id, String email) throws SQLException {
+        return timed("updateStudentEmail", () -> {
+            PreparedStatement stmt = statements.prepare(UPDATE_STUDENT_EMAIL);
+            stmt.setString(1, email);
+            stmt.setInt(2, id);
+            return stmt.executeUpdate();
+        });
+    }
+
+    public int deleteStudent(int id) throws SQLException {
+        return timed("deleteStudent", () -> updateById(DELETE_STUDENT, id));
+    }
+
+    public static StudentRow mapStudent(ResultSet rs) throws SQLException {
+        return new StudentRow(rs.getInt("id"), rs.getString("first_name"), rs.getString("last_name"),
+                rs.getString("email"), rs.getString("student_number"));
+    }
+
+    // ==================== INSTRUCTORS ====================
+
+    public int insertInstructor(String firstName, String lastName, String email) throws SQLException {
+        return timed("insertInstructor", () -> {
+            PreparedStatement stmt = statements.prepare(INSERT_INSTRUCTOR);
+            stmt.setString(1, firstName);
+            stmt.setString(2, lastName);
+            stmt.setString(3, email);
+            return stmt.executeUpdate();
+        });
+    }
+
+    public Optional<InstructorRow> findInstructorById(int id) throws SQLException {
+        return timed("findInstructorById", () -> {
+            PreparedStatement stmt = statements.prepare(SELECT_INSTRUCTOR);
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? Optional.of(mapInstructor(rs)) : Optional.empty();
+            }
+        });
+    }
+
+    public List<InstructorRow> findAllInstructors() throws SQLException {
+        return timed("findAllInstructors", () -> {
+            List<InstructorRow> rows = new ArrayList<>();
+            try (ResultSet rs = statements.prepare(SELECT_ALL_INSTRUCTORS).executeQuery()) {
+                while (rs.next()) rows.add(mapInstructor(rs));
+            }
+            return rows;
+        });
+    }
+
+    public RowCursor<InstructorRow> openInstructorCursor() throws SQLException {
+        return timed("openInstructorCursor", () -> openCursor(SELECT_ALL_INSTRUCTORS, CampusDao::mapInstructor));
+    }
+
+    public Page<InstructorRow> findInstructorsPage(String pageToken, int limit) throws SQLException {
+        return timed("findInstructorsPage", () -> page(SELECT_INSTRUCTORS_PAGE, CampusDao::mapInstructor, InstructorRow::id, pageToken, limit));
+    }
+
+    public Integer findInstructorIdByEmail(String email) throws SQLException {
+        return timed("findInstructorIdByEmail", () -> findId(SELECT_INSTRUCTOR_ID_BY_EMAIL, email), CampusDao::found);
+    }
+
+    public int updateInstructorEmail(int id, String email) throws SQLException {
+        return timed("updateInstructorEmail", () -> {
+            PreparedStatement stmt = statements.prepare(UPDATE_INSTRUCTOR_EMAIL);
+            stmt.setString(1, email);
+            stmt.setInt(2, id);
+            return stmt.executeUpdate();
+        });
+    }
+
+    public int deleteInstructor(int id) throws SQLException {
+        return timed("deleteInstructor", () -> updateById(DELETE_INSTRUCTOR, id));
+    }
+
+    public static InstructorRow mapInstructor(ResultSet rs) throws SQLException {
+        return new InstructorRow(rs.getInt("id"), rs.getString("first_name"), rs.getString("last_name"), rs.getString("email"));
+    }
+
+    // ==================== COURSES ====================
+
+    public int insertCourse(String courseCode, String title, int credits) throws SQLException {
+        return timed("insertCourse", () -> {
+            PreparedStatement stmt = statements.prepare(INSERT_COURSE);
+            stmt.setString(1, courseCode);
+            stmt.setString(2, title);
+            stmt.setInt(3, credits);
+            int rows = stmt.executeUpdate();
+            courses.invalidate(courseCode);
+            return rows;
+        });
+    }
+
+    /**
+     * Served from {@link CourseCatalogCache} when possible.
+     */
+    public Optional<CourseRow> findCourseById(int id) throws SQLException {
+        return timed("findCourseById", () -> Optional.ofNullable(courses.getById(id, () -> {
+            PreparedStatement stmt = statements.prepare(SELECT_COURSE);
+            stmt.setInt(1, id);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapCourse(rs) : null;
+            }
+        })));
+    }
+
+    public Optional<CourseRow> findCourseByCode(String courseCode) throws SQLException {
+        return timed("findCourseByCode", () -> Optional.ofNullable(courses.getByCode(courseCode, () -> {
+            PreparedStatement stmt = statements.prepare(SELECT_COURSE_BY_CODE);
+            stmt.setString(1, courseCode);
+            try (ResultSet rs = stmt.executeQuery()) {
+                return rs.next() ? mapCourse(rs) : null;
+            }
+        })));
+    }
+
+    public List<CourseRow> findAllCourses() throws SQLException {
+        return timed("findAllCourses", () -> {
+            List<CourseRow> rows = new ArrayList<>();
+            try (ResultSet rs = statements.prepare(SELECT_ALL_COURSES).executeQuery()) {
+                while (rs.next()) rows.add(mapCourse(rs));
+            }
+            return rows;
+        });
+    }
+
+    public RowCursor<CourseRow> openCourseCursor() throws SQLException {
+        return timed("openCourseCursor", () -> openCursor(SELECT_ALL_COURSES, CampusDao::mapCourse));
+    }
+
+    public Page<CourseRow> findCoursesPage(String pageToken, int limit) throws SQLException {
+        return timed("findCoursesPage", () -> page(SELECT_COURSES_PAGE, CampusDao::mapCourse, CourseRow::id, pageToken, limit));
+    }
+
+    public Integer findCourseIdByCode(String courseCode) throws SQLException {
+        return findCourseByCode(courseCode).map(CourseRow::id).orElse(null);
+    }
+
+    public int updateCourse(int id, String title, Integer credits) throws SQLException {
+        return timed("updateCourse", () -> {
+            PreparedStatement stmt = statements.prepare(UPDATE_COURSE);
+            stmt.setString(1, title);
+            if (credits == null) stmt.setNull(2, Types.INTEGER); else stmt.setInt(2, credits);
+            stmt.setInt(3, id);
+            int rows = stmt.executeUpdate();
+            courses.invalidate(id);
+            return rows;
+        });
+    }
+
+    /**
+     * Sets the seat limit of a course; null removes the limit.
+     */
+    public int updateCourseCapacity(String courseCode, Integer capacity) throws SQLException {
+        return timed("updateCourseCapacity", () -> {
+            PreparedStatement stmt = statements.prepare(UPDATE_COURSE_CAPACITY);
+            if (capacity == null) stmt.setNull(1, Types.INTEGER); else stmt.setInt(1, capacity);
+            stmt.setString(2, courseCode);
+            int rows = stmt.executeUpdate();
+            courses.invalidate(courseCode);
+            return rows;
+        });
+    }
+
+    /**
+     * Sets the weekly meeting times of a course; an empty schedule clears them.
+     */
+    public int updateCourseMeetings(String courseCode, WeeklySchedule meetings) throws SQLException {
+        return timed("updateCourseMeetings", () -> {
+            PreparedStatement stmt = statements.prepare(UPDATE_COURSE_MEETING_SLOTS);
+            if (meetings.isEmpty()) stmt.setNull(1, Types.VARCHAR); else stmt.setString(1, meetings.toString());
+            stmt.setString(2, courseCode);
+            int rows = stmt.executeUpdate();
+            courses.invalidate(courseCode);
+            return rows;
+        });
+    }
+
+    /**
+     * Capacity, current enrollment count and meeting times of every course, used to seed {@link SeatReservationEngine}
+     * and {@link TimetableRegistry}.
+     */
+    public List<CourseSeatsRow> findCourseSeats() throws SQLException {
+        return timed("findCourseSeats", () -> {
+            return EnrollmentSchema.withLayout(connection, layout -> {
+                List<CourseSeatsRow> rows = new ArrayList<>();
+                try (ResultSet rs = statements.prepare(courseSeatsSql(layout, false)).executeQuery()) {
+                    while (rs.next()) rows.add(mapCourseSeats(rs));
+                }
+                return rows;
+            });
+        });
+    }
+
+    public Optional<CourseSeatsRow> findCourseSeats(String courseCode) throws SQLException {
+        return timed("findCourseSeatsByCode", () -> {
+            return EnrollmentSchema.withLayout(connection, layout -> {
+                PreparedStatement stmt = statements.prepare(courseSeatsSql(layout, true));
+                stmt.setString(1, courseCode);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? Optional.of(mapCourseSeats(rs)) : Optional.empty();
+                }
+            });
+        });
+    }
+
+    public int deleteCourse(int id) throws SQLException {
+        return timed("deleteCourse", () -> {
+            int rows = updateById(DELETE_COURSE, id);
+            courses.invalidate(id);
+            return rows;
+        });
+    }
+
+    public static CourseRow mapCourse(ResultSet rs) throws SQLException {
+        return new CourseRow(rs.getInt("id"), rs.getString("course_code"), rs.getString("title"), rs.getInt("credits"),
+                WeeklySchedule.parse(rs.getString("meeting_slots")));
+    }
+
+    // ==================== ENROLLMENTS ====================
+
+    /**
+     * Returns the number of rows inserted (0 if the enrollment already exists), or {@link #COURSE_NOT_FOUND}.
+     * The course is validated through {@link CourseCatalogCache}, so a known course costs no extra round trip.
+     */
+    public int insertEnrollment(int studentId, String courseCode) throws SQLException {
+        return timed("insertEnrollment", () -> {
+            Optional<CourseRow> course = findCourseByCode(courseCode);
+            if (course.isEmpty()) return COURSE_NOT_FOUND;
+            return EnrollmentSchema.withLayout(connection, layout -> {
+                if (layout.byId()) {
+                    PreparedStatement stmt = statements.prepare(insertEnrollmentSql(layout));
+                    stmt.setInt(1, studentId);
+                    stmt.setInt(2, course.get().id());
+                    return stmt.executeUpdate();
+                }
+                PreparedStatement stmt = statements.prepare(insertEnrollmentSql(layout));
+                stmt.setInt(1, studentId);
+                stmt.setString(2, courseCode);
+                return stmt.executeUpdate();
+            });
+        });
+    }
+
+    public List<EnrollmentRow> findAllEnrollments() throws SQLException {
+        return timed("findAllEnrollments", () -> {
+            return EnrollmentSchema.withLayout(connection, layout -> {
+                List<EnrollmentRow> rows = new ArrayList<>();
+                try (ResultSet rs = statements.prepare(selectEnrollmentsSql(layout, false)).executeQuery()) {
+                    while (rs.next()) rows.add(mapEnrollment(rs));
+                }
+                return rows;
+            });
+        });
+    }
+
+    public RowCursor<EnrollmentRow> openEnrollmentCursor() throws SQLException {
+        return timed("openEnrollmentCursor", () -> {
+            return EnrollmentSchema.withLayout(connection,
+                    layout -> openCursor(selectEnrollmentsSql(layout, false), CampusDao::mapEnrollment));
+        });
+    }
+
+    public Page<EnrollmentRow> findEnrollmentsPage(String pageToken, int limit) throws SQLException {
+        return timed("findEnrollmentsPage", () -> {
+            return EnrollmentSchema.withLayout(connection,
+                    layout -> page(selectEnrollmentsSql(layout, true), CampusDao::mapEnrollment, EnrollmentRow::id, pageToken, limit));
+        });
+    }
+
+    /**
+     * Student and course of every enrollment, streamed; used to rebuild {@link TimetableRegistry} and {@link EnrollmentGraph}.
+     */
+    public RowCursor<EnrollmentKeyRow> openEnrollmentKeyCursor() throws SQLException {
+        return timed("openEnrollmentKeyCursor", () -> {
+            return EnrollmentSchema.withLayout(connection,
+                    layout -> openCursor(selectEnrollmentKeysSql(layout), CampusDao::mapEnrollmentKey));
+        });
+    }
+
+    public int deleteEnrollment(int id) throws SQLException {
+        return timed("deleteEnrollment", () -> updateById(DELETE_ENROLLMENT, id));
+    }
+
+    /**
+     * Deletes an enrollment and returns who was enrolled in which course, or null if it did not exist. If the course
+     * row is gone, the side of the key the enrollment did not store is 0 or null.
+     */
+    public EnrollmentKeyRow deleteEnrollmentReturning(int id) throws SQLException {
+        return timed("deleteEnrollmentReturning", () -> {
+            return EnrollmentSchema.withLayout(connection, layout -> {
+                PreparedStatement stmt = statements.prepare(deleteEnrollmentReturningSql(layout));
+                stmt.setInt(1, id);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next() ? new EnrollmentKeyRow(id, rs.getInt(1), rs.getInt(2), rs.getString(3)) : null;
+                }
+            });
+        }, row -> row == null ? 0 : 1);
+    }
+
+    /**
+     * Removes a student from a course; returns the number of rows deleted.
+     */
+    public int deleteEnrollment(int studentId, String courseCode) throws SQLException {
+        return timed("deleteEnrollmentByStudent", () -> {
+            return EnrollmentSchema.withLayout(connection, layout -> {
+                PreparedStatement stmt = statements.prepare(deleteEnrollmentByStudentSql(layout));
+                stmt.setInt(1, studentId);
+                stmt.setString(2, courseCode);
+                return stmt.executeUpdate();
+            });
+        });
+    }
+
+    public boolean isEnrolled(int studentId, String courseCode) throws SQLException {
+        return timed("isEnrolled", () -> {
+            return EnrollmentSchema.withLayout(connection, layout -> {
+                PreparedStatement stmt = statements.prepare(enrollmentExistsSql(layout));
+                stmt.setInt(1, studentId);
+                stmt.setString(2, courseCode);
+                try (ResultSet rs = stmt.executeQuery()) {
+                    return rs.next();
+                }
+            });
+        }, found -> found ? 1 : 0);
+    }
+
+    static String insertEnrollmentSql(EnrollmentSchema.Layout layout) {
+        String col = layout.column(); // 'course', 'course_code' or 'course_id'
+        return "INSERT INTO enrollments (student_id, " + col + ") VALUES (?, ?) ON CONFLICT (student_id, " + col + ") DO NOTHING";
+    }
+
+    static String selectEnrollmentsSql(EnrollmentSchema.Layout layout, boolean keyset) {
+        String courseColumn = layout.column();
+        String joinExpr = layout.byId()
+                ? "JOIN courses c ON e.course_id = c.id"
+                : "JOIN courses c ON e." + courseColumn + " = c.course_code";
+        String sql = "SELECT e.id, s.first_name, s.last_name, s.student_number, e." + courseColumn + " as course_col, c.title, e.enrolled_at FROM enrollments e JOIN students s ON e.student_id = s.id " + joinExpr;
+        return keyset ? sql + " WHERE e.id > ? ORDER BY e.id LIMIT ?" : sql + " ORDER BY e.id";
+    }
+
+    static String courseSeatsSql(EnrollmentSchema.Layout layout, boolean byCode) {
+        String joinExpr = layout.byId() ? "e.course_id = c.id" : "e." + layout.column() + " = c.course_code";
+        return "SELECT c.course_code, c.capacity, c.meeting_slots, COUNT(e.id) AS enrolled FROM courses c LEFT JOIN enrollments e ON "
+                + joinExpr + (byCode ? " WHERE c.course_code = ?" : "") + " GROUP BY c.id, c.course_code, c.capacity, c.meeting_slots";
+    }
+
+    static String selectEnrollmentKeysSql(EnrollmentSchema.Layout layout) {
+        String joinExpr = layout.byId() ? "e.course_id = c.id" : "e." + layout.column() + " = c.course_code";
+        return "SELECT e.id, e.student_id, c.id AS course_id, c.course_code FROM enrollments e JOIN courses c ON " + joinExpr + " ORDER BY e.id";
+    }
+
+    static String deleteEnrollmentReturningSql(EnrollmentSchema.Layout layout) {
+        // deletes by id alone, so an enrollment whose course row is gone is deleted too
+        String delete = "WITH d AS (DELETE FROM enrollments WHERE id = ? RETURNING student_id, " + layout.column() + ") ";
+        return layout.byId()
+                ? delete + "SELECT d.student_id, d.course_id, c.course_code FROM d LEFT JOIN courses c ON d.course_id = c.id"
+                : delete + "SELECT d.student_id, c.id, d." + layout.column() + " FROM d LEFT JOIN courses c ON d." + layout.column() + " = c.course_code";
+    }
+
+    static String deleteEnrollmentByStudentSql(EnrollmentSchema.Layout layout) {
+        return layout.byId()
+                ? "DELETE FROM enrollments e USING courses c WHERE e.student_id = ? AND e.course_id = c.id AND c.course_code = ?"
+                : "DELETE FROM enrollments WHERE student_id = ? AND " + layout.column() + " = ?";
+    }
+
+    static String enrollmentExistsSql(EnrollmentSchema.Layout layout) {
+        return layout.byId()
+                ? "SELECT 1 FROM enrollments e JOIN courses c ON e.course_id = c.id WHERE e.student_id = ? AND c.course_code = ?"
+                : "SELECT 1 FROM enrollments WHERE student_id = ? AND " + layout.column() + " = ?";
+    }
+
+    public static CourseSeatsRow mapCourseSeats(ResultSet rs) throws SQLException {
+        int capacity = rs.getInt("capacity");
+        Integer limit = rs.wasNull() ? null : capacity;
+        return new CourseSeatsRow(rs.getString("course_code"), limit, rs.getInt("enrolled"),
+                WeeklySchedule.parse(rs.getString("meeting_slots")));
+    }
+
+    public static EnrollmentKeyRow mapEnrollmentKey(ResultSet rs) throws SQLException {
+        return new EnrollmentKeyRow(rs.getInt("id"), rs.getInt("student_id"), rs.getInt("course_id"), rs.getString("course_code"));
+    }
+
+    public static EnrollmentRow mapEnrollment(ResultSet rs) throws SQLException {
+        return new EnrollmentRow(rs.getInt("id"), rs.getString("first_name"), rs.getString("last_name"),
+                rs.getString("student_number"), rs.getString("course_col"), rs.getString("title"), rs.getTimestamp("enrolled_at"));
+    }
+
+    // ==================== HELPERS ====================
+
+    @FunctionalInterface
+    private interface SqlCall<R> {
+        R run() throws SQLException;
+    }
+
+    // times one logical operation for Metrics; a plain call when metrics are off
+    private static <R> R timed(String operation, SqlCall<R> call) throws SQLException {
+        return timed(operation, call, CampusDao::rowsOf);
+    }
+
+    private static <R> R timed(String operation, SqlCall<R> call, ToLongFunction<R> rows) throws SQLException {
+        long t = Metrics.start();
+        if (t == 0L) return call.run();
+        try {
+            R result = call.run();
+            Metrics.record(operation, t, rows.applyAsLong(result));
+            return result;
+        } catch (SQLException | RuntimeException e) {
+            Metrics.recordError(operation, t);
+            throw e;
+        }
+    }
+
+    private static long rowsOf(Object result) {
+        if (result instanceof Integer n) return Math.max(0, n);
+        if (result instanceof Optional<?> o) return o.isPresent() ? 1 : 0;
+        if (result instanceof List<?> l) return l.size();
+        if (result instanceof Page<?> p) return p.getItems().size();
+        return 0;
+    }
+
+    private static long found(Integer id) {
+        return id == null ? 0 : 1;
+    }
+
+    private <T> RowCursor<T> openCursor(String sql, RowMapper<T> mapper, Object... params) throws SQLException {
+        boolean switchAutoCommit = connection.getAutoCommit();
+        if (switchAutoCommit) connection.setAutoCommit(false);
+        try {
+            PreparedStatement stmt = statements.prepare(sql);
+            for (int i = 0; i < params.length; i++) stmt.setObject(i + 1, params[i]);
+            stmt.setFetchSize(fetchSize);
+            return new RowCursor<>(connection, stmt.executeQuery(), mapper, switchAutoCommit);
+        } catch (SQLException e) {
+            if (switchAutoCommit) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+            throw e;
+        }
+    }
+
+    // keyset pagination: "id > last seen id ORDER BY id LIMIT n", one extra row tells us whether another page exists
+    private <T> Page<T> page(String sql, RowMapper<T> mapper, ToIntFunction<T> idOf, String pageToken, int limit) throws SQLException {
+        if (limit < 1) throw new IllegalArgumentException("limit must be >= 1");
+        PreparedStatement stmt = statements.prepare(sql);
+        stmt.setInt(1, Page.decodeToken(pageToken));
+        stmt.setInt(2, limit + 1);
+        List<T> items = new ArrayList<>(Math.min(limit + 1, 1024));
+        try (ResultSet rs = stmt.executeQuery()) {
+            while (rs.next()) items.add(mapper.map(rs));
+        }
+        if (items.size() <= limit) return new Page<>(items, null);
+        items.remove(limit);
+        return new Page<>(items, Page.encodeToken(idOf.applyAsInt(items.get(limit - 1))));
+    }
+
+    private Integer findId(String sql, String key) throws SQLException {
+        PreparedStatement stmt = statements.prepare(sql);
+        stmt.setString(1, key);
+        try (ResultSet rs = stmt.executeQuery()) {
+            if (rs.next()) return rs.getInt("id");
+        }
+        return null;
+    }
+
+    private int updateById(String sql, int id) throws SQLException {
+        PreparedStatement stmt = statements.prepare(sql);
+        stmt.setInt(1, id);
+        return stmt.executeUpdate();
+    }
+
+    @Override
+    public void close() {
+        if (ownsStatements) statements.close();
+    }
+}
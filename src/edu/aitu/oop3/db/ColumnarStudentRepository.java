@@ -0,0 +1,553 @@
+package edu.aitu.oop3.db;
+
+import edu.aitu.oop3.db.DemoUsersExample.Student;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntUnaryOperator;
+import java.util.function.Predicate;
+
+/**
+ * Compact student store for caches of millions of rows. Instead of one object and four strings per student, each
+ * field is a column of ints: first and last names point into a dictionary that holds every distinct name once,
+ * emails and student numbers into a packed UTF-8 heap. Strings live in 1 MB chunks that can be allocated off-heap,
+ * so a large cache adds little to GC work.
+ * <p>
+ * {@link Student} objects are only built for results. A {@link Query} over {@link StudentFields} is evaluated on
+ * the encoded columns (names compare as dictionary ids, emails as bytes), and equality on email is answered from a
+ * primitive hash index. Plain predicates see each row as a reused probe object and must not keep it.
+ * <p>
+ * The email is the key: it may not be null, saving a second student with the same email fails as a unique index
+ * would, and {@link #delete} removes the student with the given email. Strings of deleted students stay in the heap
+ * until the repository is rebuilt. Reads share a read lock; writes are exclusive.
+ */
+public class ColumnarStudentRepository implements Repository<Student> {
+
+    private static final int CHUNK_BITS = 20;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int NULL = -1;
+    private static final int FIRST_NAME = 0, LAST_NAME = 1, EMAIL = 2, STUDENT_NUMBER = 3;
+
+    private final ByteHeap dictionary;
+    private final ByteHeap values;
+    private final IntColumn[] columns = new IntColumn[4];
+    private final StringSet names;
+    private final StringSet emails;
+    private long[] live = new long[16];
+    private int rows;
+    private int size;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ColumnarStudentRepository() {
+        this(false);
+    }
+
+    /**
+     * @param offHeap keep strings and columns in direct buffers outside the Java heap
+     */
+    public ColumnarStudentRepository(boolean offHeap) {
+        dictionary = new ByteHeap(offHeap);
+        values = new ByteHeap(offHeap);
+        for (int i = 0; i < columns.length; i++) columns[i] = new IntColumn(offHeap);
+        names = new StringSet(dictionary, pos -> pos);
+        emails = new StringSet(values, row -> columns[EMAIL].get(row));
+    }
+
+    @Override
+    public void save(Student item) {
+        lock.writeLock().lock();
+        try {
+            insert(item);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Saves students in order under one lock acquisition; students before a duplicate email stay saved.
+     */
+    public void saveAll(Collection<? extends Student> items) {
+        lock.writeLock().lock();
+        try {
+            for (Student s : items) insert(s);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Student item) {
+        if (item.email == null) return;
+        byte[] key = utf8(item.email);
+        lock.writeLock().lock();
+        try {
+            int row = emails.remove(key, hash(key));
+            if (row < 0) return;
+            live[row >>> 6] &= ~(1L << row);
+            size--;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Student> findAll() {
+        return find(Query.all());
+    }
+
+    @Override
+    public List<Student> find(Predicate<Student> predicate) {
+        if (predicate instanceof Query<Student> query) return find(query);
+        List<Student> result = new ArrayList<>();
+        scan(predicate, Integer.MAX_VALUE, result);
+        return result;
+    }
+
+    @Override
+    public Optional<Student> findFirst(Predicate<Student> predicate) {
+        List<Student> first;
+        if (predicate instanceof Query<Student> query) {
+            first = find(query.limit(1));
+        } else {
+            first = new ArrayList<>(1);
+            scan(predicate, 1, first);
+        }
+        return first.isEmpty() ? Optional.empty() : Optional.of(first.get(0));
+    }
+
+    /**
+     * Evaluates the query on the columns and builds students only for matches. Conditions on fields that are not
+     * columns fall back to testing each row as a probe student.
+     */
+    public List<Student> find(Query<Student> query) {
+        int stopAt = query.isOrdered() ? Integer.MAX_VALUE : query.getLimit();
+        List<Student> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            RowTest test = compile(query.where());
+            if (test == null) {
+                scan(query, stopAt, result);
+                return query.order(result);
+            }
+            int[] candidates = candidates(query.where());
+            int n = candidates != null ? candidates.length : rows;
+            for (int i = 0; i < n && result.size() < stopAt; i++) {
+                int row = candidates != null ? candidates[i] : i;
+                if (isLive(row) && test.test(row)) result.add(materialize(row));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return query.order(result);
+    }
+
+    /**
+     * Bytes held for strings, columns, liveness bits and the two hash tables, on and off the heap.
+     */
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            long bytes = dictionary.capacity() + values.capacity() + names.memoryBytes() + emails.memoryBytes() + live.length * 8L;
+            for (IntColumn c : columns) bytes += c.capacity();
+            return bytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /** Distinct first and last names in the dictionary. */
+    public int dictionarySize() {
+        lock.readLock().lock();
+        try {
+            return names.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void insert(Student s) {
+        Objects.requireNonNull(s, "item");
+        if (s.email == null) throw new IllegalArgumentException("Students need an email to be stored");
+        byte[] email = utf8(s.email);
+        int emailHash = hash(email);
+        if (emails.find(email, emailHash) >= 0) {
+            throw new IllegalStateException("Duplicate key '" + s.email + "' for unique index email");
+        }
+        // encode everything first so a bad value cannot leave the columns half written
+        byte[] firstName = s.firstName == null ? null : utf8(s.firstName);
+        byte[] lastName = s.lastName == null ? null : utf8(s.lastName);
+        byte[] number = s.studentNumber == null ? null : utf8(s.studentNumber);
+        int row = rows;
+        columns[FIRST_NAME].add(intern(firstName));
+        columns[LAST_NAME].add(intern(lastName));
+        columns[EMAIL].add(values.append(email));
+        columns[STUDENT_NUMBER].add(number == null ? NULL : values.append(number));
+        if (row >>> 6 >= live.length) live = Arrays.copyOf(live, live.length * 2);
+        live[row >>> 6] |= 1L << row;
+        rows++;
+        size++;
+        emails.add(row, emailHash);
+    }
+
+    private int intern(byte[] bytes) {
+        if (bytes == null) return NULL;
+        int hash = hash(bytes);
+        int pos = names.find(bytes, hash);
+        if (pos >= 0) return pos;
+        pos = dictionary.append(bytes);
+        names.add(pos, hash);
+        return pos;
+    }
+
+    // predicates see a reused probe; only matches are copied into new students
+    private void scan(Predicate<Student> predicate, int stopAt, List<Student> result) {
+        Student probe = new Student(null, null, null, null);
+        lock.readLock().lock();
+        try {
+            for (int row = 0; row < rows && result.size() < stopAt; row++) {
+                if (!isLive(row)) continue;
+                for (int c = 0; c < columns.length; c++) set(probe, c, string(c, row));
+                if (predicate.test(probe)) result.add(new Student(probe.firstName, probe.lastName, probe.email, probe.studentNumber));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Student materialize(int row) {
+        return new Student(string(FIRST_NAME, row), string(LAST_NAME, row), string(EMAIL, row), string(STUDENT_NUMBER, row));
+    }
+
+    private boolean isLive(int row) {
+        return (live[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private String string(int column, int row) {
+        int pos = columns[column].get(row);
+        return pos == NULL ? null : heap(column).string(pos);
+    }
+
+    private ByteHeap heap(int column) {
+        return column == FIRST_NAME || column == LAST_NAME ? dictionary : values;
+    }
+
+    // ---- queries on encoded columns
+
+    private interface RowTest {
+        boolean test(int row);
+    }
+
+    private static int column(Field<Student, ?> field) {
+        return switch (field.name()) {
+            case "first_name" -> FIRST_NAME;
+            case "last_name" -> LAST_NAME;
+            case "email" -> EMAIL;
+            case "student_number" -> STUDENT_NUMBER;
+            default -> NULL;
+        };
+    }
+
+    // null when some field is not one of the columns
+    private RowTest compile(Query.Condition<Student> condition) {
+        if (condition instanceof Query.All<Student>) {
+            return row -> true;
+        } else if (condition instanceof Query.Eq<Student> eq) {
+            int col = column(eq.field());
+            if (col == NULL) return null;
+            return equalsTest(col, eq.value());
+        } else if (condition instanceof Query.In<Student> in) {
+            int col = column(in.field());
+            if (col == NULL) return null;
+            List<RowTest> parts = new ArrayList<>();
+            for (Object v : in.values()) if (v != null) parts.add(equalsTest(col, v));
+            return row -> {
+                for (RowTest p : parts) if (p.test(row)) return true;
+                return false;
+            };
+        } else if (condition instanceof Query.Prefix<Student> prefix) {
+            int col = column(prefix.field());
+            if (col == NULL) return null;
+            byte[] bytes = utf8(prefix.prefix());
+            ByteHeap heap = heap(col);
+            IntColumn column = columns[col];
+            return row -> {
+                int pos = column.get(row);
+                return pos != NULL && heap.startsWith(pos, bytes);
+            };
+        } else if (condition instanceof Query.Range<Student, ?> range) {
+            int col = column(range.field());
+            if (col == NULL) return null;
+            // decode just this field into a probe and let the condition compare
+            Student probe = new Student(null, null, null, null);
+            return row -> {
+                set(probe, col, string(col, row));
+                return range.test(probe);
+            };
+        } else if (condition instanceof Query.And<Student> and) {
+            List<RowTest> parts = compileAll(and.parts());
+            return parts == null ? null : row -> {
+                for (RowTest p : parts) if (!p.test(row)) return false;
+                return true;
+            };
+        } else if (condition instanceof Query.Or<Student> or) {
+            List<RowTest> parts = compileAll(or.parts());
+            return parts == null ? null : row -> {
+                for (RowTest p : parts) if (p.test(row)) return true;
+                return false;
+            };
+        }
+        return null;
+    }
+
+    private List<RowTest> compileAll(List<Query.Condition<Student>> conditions) {
+        List<RowTest> parts = new ArrayList<>();
+        for (Query.Condition<Student> c : conditions) {
+            RowTest t = compile(c);
+            if (t == null) return null;
+            parts.add(t);
+        }
+        return parts;
+    }
+
+    private RowTest equalsTest(int col, Object value) {
+        IntColumn column = columns[col];
+        if (value == null) return row -> column.get(row) == NULL;
+        if (!(value instanceof String s)) return row -> false;
+        byte[] bytes = utf8(s);
+        if (col == FIRST_NAME || col == LAST_NAME) {
+            // a name not in the dictionary matches nothing; otherwise compare ids
+            int pos = names.find(bytes, hash(bytes));
+            return pos < 0 ? row -> false : row -> column.get(row) == pos;
+        }
+        return row -> {
+            int pos = column.get(row);
+            return pos != NULL && values.matches(pos, bytes);
+        };
+    }
+
+    // rows from the email index, ascending, or null when the condition does not pin the email down
+    private int[] candidates(Query.Condition<Student> condition) {
+        if (condition instanceof Query.Eq<Student> eq && column(eq.field()) == EMAIL && eq.value() instanceof String email) {
+            byte[] key = utf8(email);
+            int row = emails.find(key, hash(key));
+            return row < 0 ? new int[0] : new int[]{row};
+        } else if (condition instanceof Query.In<Student> in && column(in.field()) == EMAIL) {
+            int[] found = new int[in.values().size()];
+            int n = 0;
+            for (Object v : in.values()) {
+                if (!(v instanceof String email)) continue;
+                byte[] key = utf8(email);
+                int row = emails.find(key, hash(key));
+                if (row >= 0) found[n++] = row;
+            }
+            int[] rows = Arrays.copyOf(found, n);
+            Arrays.sort(rows);
+            return rows;
+        } else if (condition instanceof Query.And<Student> and) {
+            for (Query.Condition<Student> part : and.parts()) {
+                int[] rows = candidates(part);
+                if (rows != null) return rows;
+            }
+        }
+        return null;
+    }
+
+    private static void set(Student s, int column, String value) {
+        switch (column) {
+            case FIRST_NAME -> s.firstName = value;
+            case LAST_NAME -> s.lastName = value;
+            case EMAIL -> s.email = value;
+            default -> s.studentNumber = value;
+        }
+    }
+
+    private static byte[] utf8(String s) {
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > 0xFFFF) throw new IllegalArgumentException("Value longer than 65535 UTF-8 bytes");
+        return bytes;
+    }
+
+    private static int hash(byte[] bytes) {
+        int h = Arrays.hashCode(bytes);
+        return h ^ (h >>> 16);
+    }
+
+    // ---- storage
+
+    /**
+     * Append-only strings, each a 2-byte length and its UTF-8 bytes, in 1 MB chunks. A position is the chunk
+     * number and offset packed into an int, so one heap holds up to 2 GB.
+     */
+    private static final class ByteHeap {
+        private final boolean direct;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private int used = CHUNK_SIZE;
+
+        ByteHeap(boolean direct) {
+            this.direct = direct;
+        }
+
+        int append(byte[] bytes) {
+            int need = 2 + bytes.length;
+            if (used + need > CHUNK_SIZE) {
+                if (chunks.size() == 1 << (31 - CHUNK_BITS)) throw new IllegalStateException("String heap is full (2 GB)");
+                chunks.add(direct ? ByteBuffer.allocateDirect(CHUNK_SIZE) : ByteBuffer.allocate(CHUNK_SIZE));
+                used = 0;
+            }
+            ByteBuffer chunk = chunks.get(chunks.size() - 1);
+            chunk.putShort(used, (short) bytes.length);
+            chunk.put(used + 2, bytes);
+            int pos = (chunks.size() - 1) << CHUNK_BITS | used;
+            used += need;
+            return pos;
+        }
+
+        String string(int pos) {
+            ByteBuffer chunk = chunks.get(pos >>> CHUNK_BITS);
+            int offset = pos & (CHUNK_SIZE - 1);
+            byte[] bytes = new byte[chunk.getShort(offset) & 0xFFFF];
+            chunk.get(offset + 2, bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        boolean matches(int pos, byte[] key) {
+            ByteBuffer chunk = chunks.get(pos >>> CHUNK_BITS);
+            int offset = pos & (CHUNK_SIZE - 1);
+            return (chunk.getShort(offset) & 0xFFFF) == key.length && startsWith(chunk, offset + 2, key);
+        }
+
+        boolean startsWith(int pos, byte[] prefix) {
+            ByteBuffer chunk = chunks.get(pos >>> CHUNK_BITS);
+            int offset = pos & (CHUNK_SIZE - 1);
+            return (chunk.getShort(offset) & 0xFFFF) >= prefix.length && startsWith(chunk, offset + 2, prefix);
+        }
+
+        private static boolean startsWith(ByteBuffer chunk, int from, byte[] prefix) {
+            for (int i = 0; i < prefix.length; i++) if (chunk.get(from + i) != prefix[i]) return false;
+            return true;
+        }
+
+        long capacity() {
+            return (long) chunks.size() * CHUNK_SIZE;
+        }
+    }
+
+    /** Append-only ints in 1 MB chunks. */
+    private static final class IntColumn {
+        private static final int PER_CHUNK = CHUNK_SIZE / 4;
+        private final boolean direct;
+        private final List<ByteBuffer> chunks = new ArrayList<>();
+        private int size;
+
+        IntColumn(boolean direct) {
+            this.direct = direct;
+        }
+
+        void add(int value) {
+            if (size % PER_CHUNK == 0) chunks.add(direct ? ByteBuffer.allocateDirect(CHUNK_SIZE) : ByteBuffer.allocate(CHUNK_SIZE));
+            chunks.get(size / PER_CHUNK).putInt((size % PER_CHUNK) * 4, value);
+            size++;
+        }
+
+        int get(int index) {
+            return chunks.get(index / PER_CHUNK).getInt((index % PER_CHUNK) * 4);
+        }
+
+        long capacity() {
+            return (long) chunks.size() * CHUNK_SIZE;
+        }
+    }
+
+    /**
+     * Open-addressing hash set of entries (row numbers or heap positions) keyed by a string in a {@link ByteHeap}.
+     * Slots hold entry + 1, 0 when empty and -1 for a removed entry; hashes are kept to skip most byte comparisons.
+     */
+    private static final class StringSet {
+        private static final int REMOVED = -1;
+        private final ByteHeap heap;
+        private final IntUnaryOperator keyOf;
+        private int[] slots = new int[1024];
+        private int[] hashes = new int[1024];
+        private int size;
+        private int occupied;
+
+        StringSet(ByteHeap heap, IntUnaryOperator keyOf) {
+            this.heap = heap;
+            this.keyOf = keyOf;
+        }
+
+        int find(byte[] key, int hash) {
+            int mask = slots.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == 0) return -1;
+                if (slot != REMOVED && hashes[i] == hash && heap.matches(keyOf.applyAsInt(slot - 1), key)) return slot - 1;
+            }
+        }
+
+        void add(int entry, int hash) {
+            if ((occupied + 1) * 3L > slots.length * 2L) rehash(size * 3L > slots.length ? slots.length * 2 : slots.length);
+            int mask = slots.length - 1;
+            int i = hash & mask;
+            while (slots[i] > 0) i = (i + 1) & mask;
+            if (slots[i] == 0) occupied++;
+            slots[i] = entry + 1;
+            hashes[i] = hash;
+            size++;
+        }
+
+        int remove(byte[] key, int hash) {
+            int mask = slots.length - 1;
+            for (int i = hash & mask; ; i = (i + 1) & mask) {
+                int slot = slots[i];
+                if (slot == 0) return -1;
+                if (slot != REMOVED && hashes[i] == hash && heap.matches(keyOf.applyAsInt(slot - 1), key)) {
+                    slots[i] = REMOVED;
+                    size--;
+                    return slot - 1;
+                }
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        long memoryBytes() {
+            return slots.length * 8L;
+        }
+
+        // also clears removed slots when the table is rebuilt at the same size
+        private void rehash(int capacity) {
+            int[] oldSlots = slots;
+            int[] oldHashes = hashes;
+            slots = new int[capacity];
+            hashes = new int[capacity];
+            int mask = capacity - 1;
+            for (int j = 0; j < oldSlots.length; j++) {
+                if (oldSlots[j] <= 0) continue;
+                int i = oldHashes[j] & mask;
+                while (slots[i] != 0) i = (i + 1) & mask;
+                slots[i] = oldSlots[j];
+                hashes[i] = oldHashes[j];
+            }
+            occupied = size;
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package edu.aitu.oop3.db;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Small fixed-bound JDBC connection pool used behind {@link DatabaseConnection#getConnection()}.
+ * Borrowed connections are proxies: calling close() hands the physical connection back to the pool.
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    // extra interface implemented by borrowed connections, used by StatementCache.forConnection
+    interface PooledHandle {
+        StatementCache statementCache();
+    }
+
+    // connections handed back within this window are not re-validated on borrow
+    private static final long VALIDATION_SKIP_MS = 500;
+    private static final long HOUSEKEEPING_PERIOD_MS = 5_000;
+
+    private final ConnectionFactory factory;
+    private final int minIdle;
+    private final int maxSize;
+    private final long idleTimeoutMs;
+    private final long borrowTimeoutMs;
+    private final int validationTimeoutSec;
+    private final long leakThresholdMs;
+
+    private final Semaphore permits;
+    private final Deque<PooledConnection> idle = new ConcurrentLinkedDeque<>();
+    private final Set<PooledConnection> leased = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger total = new AtomicInteger();
+    private final ScheduledExecutorService housekeeper;
+    private volatile boolean closed;
+
+    public ConnectionPool(AppConfig cfg) {
+        this(() -> DriverManager.getConnection(cfg.getUrl(), cfg.getUser(), cfg.getPassword()), cfg);
+    }
+
+    public ConnectionPool(ConnectionFactory factory, AppConfig cfg) {
+        this(factory, cfg.getPoolMinIdle(), cfg.getPoolMaxSize(), cfg.getPoolIdleTimeoutMs(),
+                cfg.getPoolBorrowTimeoutMs(), cfg.getPoolValidationTimeoutSec(), cfg.getPoolLeakThresholdMs());
+    }
+
+    public ConnectionPool(ConnectionFactory factory, int minIdle, int maxSize, long idleTimeoutMs,
+                          long borrowTimeoutMs, int validationTimeoutSec, long leakThresholdMs) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be >= 1");
+        this.factory = factory;
+        this.minIdle = Math.max(0, Math.min(minIdle, maxSize));
+        this.maxSize = maxSize;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.validationTimeoutSec = validationTimeoutSec;
+        this.leakThresholdMs = leakThresholdMs;
+        this.permits = new Semaphore(maxSize, true);
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "connection-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        housekeeper.scheduleWithFixedDelay(this::housekeep, HOUSEKEEPING_PERIOD_MS, HOUSEKEEPING_PERIOD_MS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection, waiting at most the configured borrow timeout when every connection is in use.
+     */
+    public Connection borrow() throws SQLException {
+        if (closed) throw new SQLException("Connection pool is closed");
+        long t = Metrics.start();
+        try {
+            boolean acquired = permits.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+            Metrics.recordWithin("pool.wait", t, 0);
+            if (!acquired) {
+                Metrics.recordErrorWithin("pool.acquire", t);
+                throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMs
+                        + " ms waiting for a connection (" + leased.size() + "/" + maxSize + " in use)");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted while waiting for a connection", e);
+        }
+        try {
+            PooledConnection pc;
+            while ((pc = idle.pollFirst()) != null) {
+                if (isUsable(pc)) break;
+                discard(pc);
+            }
+            if (pc == null) pc = open();
+            pc.leasedAt = System.currentTimeMillis();
+            pc.leakReported = false;
+            pc.borrowSite = leakThresholdMs > 0 ? new Exception("Connection borrowed here") : null;
+            leased.add(pc);
+            Metrics.recordWithin("pool.acquire", t, 0);
+            return pc.newLease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            Metrics.recordErrorWithin("pool.acquire", t);
+            throw e;
+        }
+    }
+
+    public int getActiveCount() { return leased.size(); }
+    public int getIdleCount() { return idle.size(); }
+    public int getTotalCount() { return total.get(); }
+    public int getMaxSize() { return maxSize; }
+
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        PooledConnection pc;
+        while ((pc = idle.pollFirst()) != null) discard(pc);
+    }
+
+    private PooledConnection open() throws SQLException {
+        PooledConnection pc = new PooledConnection(factory.open());
+        total.incrementAndGet();
+        return pc;
+    }
+
+    /** Counts one more physical connection unless there are maxSize already. */
+    private boolean reserve() {
+        int n;
+        do {
+            n = total.get();
+            if (n >= maxSize) return false;
+        } while (!total.compareAndSet(n, n + 1));
+        return true;
+    }
+
+    private boolean isUsable(PooledConnection pc) {
+        if (System.currentTimeMillis() - pc.returnedAt < VALIDATION_SKIP_MS) return true;
+        try {
+            return pc.physical.isValid(validationTimeoutSec);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pc) {
+        total.decrementAndGet();
+        pc.statements.close();
+        try {
+            pc.physical.close();
+        } catch (SQLException ignored) {
+            // already broken, nothing else to do
+        }
+    }
+
+    private void release(PooledConnection pc) {
+        leased.remove(pc);
+        try {
+            boolean reusable = !closed && !pc.physical.isClosed();
+            if (reusable && !pc.physical.getAutoCommit()) {
+                // never hand an open transaction to the next borrower
+                pc.physical.rollback();
+                pc.physical.setAutoCommit(true);
+            }
+            if (reusable) {
+                pc.returnedAt = System.currentTimeMillis();
+                idle.addFirst(pc);
+            } else {
+                discard(pc);
+            }
+        } catch (SQLException e) {
+            discard(pc);
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void housekeep() {
+        long now = System.currentTimeMillis();
+        // idle eviction, oldest first, never below minIdle
+        for (Iterator<PooledConnection> it = idle.descendingIterator(); it.hasNext() && idle.size() > minIdle; ) {
+            PooledConnection pc = it.next();
+            if (now - pc.returnedAt > idleTimeoutMs && idle.remove(pc)) discard(pc);
+        }
+        // top up to minIdle; idle connections hold no permit, so each one reserves its place in total first, and the
+        // permit held while opening keeps a borrower from opening one of its own at the same time
+        while (!closed && idle.size() < minIdle && reserve()) {
+            if (!permits.tryAcquire()) {
+                total.decrementAndGet();
+                break;
+            }
+            try {
+                PooledConnection pc = new PooledConnection(factory.open());
+                pc.returnedAt = now;
+                idle.addLast(pc);
+            } catch (SQLException e) {
+                total.decrementAndGet();
+                System.out.println("Warning: connection pool could not pre-open a connection: " + e.getMessage());
+                break;
+            } finally {
+                permits.release();
+            }
+        }
+        if (leakThresholdMs > 0) {
+            for (PooledConnection pc : leased) {
+                if (!pc.leakReported && now - pc.leasedAt > leakThresholdMs) {
+                    pc.leakReported = true;
+                    System.out.println("Warning: possible connection leak, held for " + (now - pc.leasedAt) + " ms");
+                    if (pc.borrowSite != null) pc.borrowSite.printStackTrace(System.out);
+                }
+            }
+        }
+    }
+
+    private final class PooledConnection {
+        final Connection physical;
+        final StatementCache statements;
+        volatile long leasedAt;
+        volatile long returnedAt;
+        volatile boolean leakReported;
+        volatile Exception borrowSite;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statements = new StatementCache(physical);
+        }
+
+        Connection newLease() {
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class, PooledHandle.class}, new Lease(this));
+        }
+    }
+
+    // One handle per borrow, so a stale handle cannot touch a connection that is already re-leased.
+    private final class Lease implements InvocationHandler {
+        private final PooledConnection pc;
+        private final AtomicBoolean returned = new AtomicBoolean();
+
+        Lease(PooledConnection pc) {
+            this.pc = pc;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close" -> {
+                    if (returned.compareAndSet(false, true)) release(pc);
+                    return null;
+                }
+                case "statementCache" -> {
+                    if (returned.get()) throw new IllegalStateException("Connection is closed");
+                    return pc.statements;
+                }
+                case "isClosed" -> {
+                    return returned.get() || pc.physical.isClosed();
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" -> {
+                    return "Pooled(" + pc.physical + ")";
+                }
+                default -> {
+                    if (returned.get()) throw new SQLException("Connection is closed");
+                    try {
+                        return method.invoke(pc.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -1,6 +1,46 @@
 package edu.aitu.oop3.db;
 
-public class Course {
-    public String type;
-    public Course(String type) { this.type = type; }
-}
\ No newline at end of file
+/**
+ * A course as seen by registration: its type (LECTURE, LAB, ...) and, for courses from the {@code courses} table,
+ * its id, code, title and credits.
+ * <p>
+ * Instances are immutable and canonical: {@link CourseFactory} hands out one instance per type and one per course
+ * code, so equality is identity and a course is a cheap map key. Do not construct them elsewhere.
+ */
+public final class Course {
+
+    private final String type;
+    private final int id;
+    private final String code;
+    private final String title;
+    private final int credits;
+
+    Course(String type, int id, String code, String title, int credits) {
+        this.type = type;
+        this.id = id;
+        this.code = code;
+        this.title = title;
+        this.credits = credits;
+    }
+
+    public String getType() { return type; }
+
+    /** 0 for a type-only course. */
+    public int getId() { return id; }
+
+    /** Null for a type-only course. */
+    public String getCode() { return code; }
+
+    public String getTitle() { return title; }
+
+    public int getCredits() { return credits; }
+
+    boolean sameRow(CampusDao.CourseRow row) {
+        return id == row.id() && credits == row.credits() && row.title().equals(title);
+    }
+
+    @Override
+    public String toString() {
+        return code == null ? type : code + " (" + type + ")";
+    }
+}
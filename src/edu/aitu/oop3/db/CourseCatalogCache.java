@@ -0,0 +1,139 @@
+package edu.aitu.oop3.db;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide read-through cache of course rows, looked up by id or by course code.
+ * Entries expire after a TTL and the least recently used ones are evicted beyond {@code maxEntries}.
+ * CampusDao invalidates entries when it writes courses; writes from other processes become visible after the TTL.
+ * Misses are not cached, so a course created elsewhere is found on the next lookup.
+ */
+public class CourseCatalogCache {
+
+    @FunctionalInterface
+    public interface Loader {
+        /** Loads the row from the database, or returns null when it does not exist. */
+        CampusDao.CourseRow load() throws SQLException;
+    }
+
+    private static final CourseCatalogCache INSTANCE = new CourseCatalogCache(
+            AppConfig.getInstance().getCourseCacheSize(), AppConfig.getInstance().getCourseCacheTtlMs());
+
+    private record Entry(CampusDao.CourseRow row, long expiresAt) {
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<Integer, Entry> byId = new LinkedHashMap<>(16, 0.75f, true);
+    private final Map<String, Integer> idByCode = new HashMap<>();
+    // bumped by every invalidation so a load that raced with a write does not cache the old row
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * @param maxEntries 0 disables caching: every lookup goes to the loader
+     */
+    public CourseCatalogCache(int maxEntries, long ttlMs) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMs);
+    }
+
+    public static CourseCatalogCache getInstance() {
+        return INSTANCE;
+    }
+
+    public CampusDao.CourseRow getById(int id, Loader loader) throws SQLException {
+        long gen;
+        synchronized (this) {
+            CampusDao.CourseRow row = lookup(id);
+            if (row != null) return row;
+            gen = generation;
+        }
+        return store(loader.load(), gen);
+    }
+
+    public CampusDao.CourseRow getByCode(String courseCode, Loader loader) throws SQLException {
+        long gen;
+        synchronized (this) {
+            Integer id = idByCode.get(courseCode);
+            CampusDao.CourseRow row = id == null ? null : lookup(id);
+            if (row != null) return row;
+            if (id == null) misses++;
+            gen = generation;
+        }
+        return store(loader.load(), gen);
+    }
+
+    public synchronized void invalidate(int id) {
+        generation++;
+        Entry e = byId.remove(id);
+        if (e != null) idByCode.remove(e.row().courseCode());
+    }
+
+    public synchronized void invalidate(String courseCode) {
+        generation++;
+        Integer id = idByCode.remove(courseCode);
+        if (id != null) byId.remove(id);
+    }
+
+    public synchronized void invalidateAll() {
+        generation++;
+        byId.clear();
+        idByCode.clear();
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized long getEvictions() { return evictions; }
+    public synchronized long getExpirations() { return expirations; }
+    public synchronized int size() { return byId.size(); }
+
+    public synchronized double getHitRatio() {
+        long total = hits + misses;
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    // counts a hit, or a miss when absent or expired
+    private CampusDao.CourseRow lookup(int id) {
+        Entry e = byId.get(id);
+        if (e != null && e.expiresAt() - System.nanoTime() > 0) {
+            hits++;
+            return e.row();
+        }
+        misses++;
+        if (e != null) {
+            expirations++;
+            byId.remove(id);
+            idByCode.remove(e.row().courseCode());
+        }
+        return null;
+    }
+
+    private synchronized CampusDao.CourseRow store(CampusDao.CourseRow row, long gen) {
+        if (row == null || maxEntries <= 0 || gen != generation) return row;
+        Entry previous = byId.put(row.id(), new Entry(row, System.nanoTime() + ttlNanos));
+        if (previous != null && !previous.row().courseCode().equals(row.courseCode())) idByCode.remove(previous.row().courseCode());
+        idByCode.put(row.courseCode(), row.id());
+        Iterator<Entry> it = byId.values().iterator();
+        while (byId.size() > maxEntries && it.hasNext()) {
+            idByCode.remove(it.next().row().courseCode());
+            it.remove();
+            evictions++;
+        }
+        return row;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "CourseCatalogCache[size=" + byId.size() + ", hits=" + hits + ", misses=" + misses
+                + ", evictions=" + evictions + ", expirations=" + expirations + "]";
+    }
+}
@@ -1,7 +1,81 @@
 package edu.aitu.oop3.db;
 
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Canonical {@link Course} instances. Repeated calls return the same object, so looking a course up costs a map
+ * probe and no allocation. Courses by code come from the {@code courses} table via {@link #loadCourses}.
+ */
 public class CourseFactory {
+
+    private static final Map<String, Course> BY_TYPE = new ConcurrentHashMap<>();
+    private static final Map<String, Course> BY_CODE = new ConcurrentHashMap<>();
+
+    static {
+        for (String type : new String[]{"LECTURE", "LAB"}) BY_TYPE.put(type, new Course(type, 0, null, null, 0));
+    }
+
+    private CourseFactory() {
+    }
+
+    /**
+     * The course of the given type, LECTURE or LAB; case and surrounding blanks are ignored.
+     *
+     * @throws IllegalArgumentException for any other type
+     */
     public static Course createCourse(String type) {
-        return new Course(type);
+        Course course = BY_TYPE.get(type);
+        if (course == null) course = BY_TYPE.get(type.trim().toUpperCase(Locale.ROOT));
+        if (course == null) throw new IllegalArgumentException("Unknown course type: " + type);
+        return course;
+    }
+
+    /**
+     * The course with this code as of the last {@link #loadCourses}, or null.
+     */
+    public static Course forCode(String courseCode) {
+        return BY_CODE.get(courseCode);
+    }
+
+    /**
+     * A course code if it is known, otherwise a type; what the demo accepts at its prompts.
+     *
+     * @throws IllegalArgumentException if it is neither a loaded code nor LECTURE or LAB
+     */
+    public static Course resolve(String codeOrType) {
+        Course course = BY_CODE.get(codeOrType.trim());
+        if (course == null) course = BY_TYPE.get(codeOrType.trim().toUpperCase(Locale.ROOT));
+        if (course == null) throw new IllegalArgumentException("Unknown course code or type: " + codeOrType.trim());
+        return course;
+    }
+
+    public static Collection<Course> loadedCourses() {
+        return BY_CODE.values();
+    }
+
+    /**
+     * Loads every course from the table. Unchanged courses keep their instance; changed ones get a new instance and
+     * deleted ones are dropped. Courses whose code ends in "-LAB" are of type LAB, the others LECTURE.
+     */
+    public static int loadCourses(CampusDao dao) throws SQLException {
+        Set<String> seen = new HashSet<>();
+        for (CampusDao.CourseRow row : dao.findAllCourses()) {
+            seen.add(row.courseCode());
+            BY_CODE.compute(row.courseCode(), (code, old) -> old != null && old.sameRow(row) ? old
+                    : new Course(typeOf(code), row.id(), code, row.title(), row.credits()));
+        }
+        BY_CODE.keySet().retainAll(seen);
+        return seen.size();
+    }
+
+    private static String typeOf(String courseCode) {
+        String type = courseCode.toUpperCase(Locale.ROOT).endsWith("-LAB") ? "LAB" : "LECTURE";
+        return createCourse(type).getType(); // the interned string
     }
-}//f
\ No newline at end of file
+}
@@ -1,19 +1,44 @@
 package edu.aitu.oop3.db;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 
 public class DatabaseConnection {
 
+    private static volatile ConnectionPool pool;
+
     private DatabaseConnection() {
         // no instances
     }
 
     /**
      * Uses configuration from AppConfig singleton so configuration can be changed/tested easily.
+     * Connections come from a shared pool; closing one returns it to the pool.
      */
     public static Connection getConnection() throws SQLException {
-        AppConfig cfg = AppConfig.getInstance();
-        return DriverManager.getConnection(cfg.getUrl(), cfg.getUser(), cfg.getPassword());
+        return getPool().borrow();
+    }
+
+    public static ConnectionPool getPool() {
+        ConnectionPool p = pool;
+        if (p == null) {
+            synchronized (DatabaseConnection.class) {
+                p = pool;
+                if (p == null) {
+                    p = new ConnectionPool(AppConfig.getInstance());
+                    pool = p;
+                }
+            }
+        }
+        return p;
+    }
+
+    /**
+     * Closes all idle pooled connections. Later calls to getConnection() start a fresh pool.
+     */
+    public static synchronized void shutdown() {
+        if (pool != null) {
+            pool.close();
+            pool = null;
+        }
     }
-}//f
\ No newline at end of file
+}
@@ -1,30 +1,46 @@
 package edu.aitu.oop3.db;
 
+import java.io.IOException;
 import java.sql.Connection;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Scanner;
 
 public class DemoUsersExample {
 
-    public static void main(String[] args) {
+    // seat limits and waitlists for the enrollments menu
+    private static final SeatedEnrollmentService seats = new SeatedEnrollmentService(new SeatReservationEngine());
 
-        try (Connection connection = DatabaseConnection.getConnection()) {
+    // registration audit trail when JOURNAL_ENABLED is set; null = registrations are printed
+    private static EnrollmentJournal journal;
 
-            createTableStudents(connection);
-            createTableInstructors(connection);
-            createTableCourses(connection);
-            createTableEnrollments(connection);
+    // in-memory copy of the students table, created on first use (student menu option 9)
+    private static InMemoryRepository<Student> studentCache;
+    private static StudentWarmStart studentWarmStart;
 
+    // name search over students and instructors, loaded on the first search and kept current by the menus below
+    private static PeopleSearch peopleSearch;
 
-            insertStudent(connection, "Ayan", "Sadykov", "ayan.sadykov@uni.kz", "IT-2513");
-            insertStudent(connection, "Dana", "Nurpeisova", "dana.nurpeisova@uni.kz", "SE-2302");
-            insertStudent(connection, "Timur", "Bekov", "timur.bekov@uni.kz", "CS-2415");
+    public static void main(String[] args) {
+        long started = System.nanoTime();
 
-            // sample instructors, courses and enrollments (non-fatal if they already exist)
-            insertSampleCoursesAndEnrollments(connection);
+        try (Connection connection = DatabaseConnection.getConnection();
+             CampusDao dao = new CampusDao(connection)) {
+
+            // tables and sample data; a single version check when the schema is already current
+            SchemaMigrator.Result schema = SchemaMigrator.campus().migrate(connection);
+            if (schema.upToDate()) {
+                System.out.println("Schema is current (version " + schema.toVersion() + ").");
+            } else {
+                System.out.println("Schema migrated from version " + schema.fromVersion() + " to " + schema.toVersion()
+                        + " (" + schema.statements() + " statements in " + schema.millis() + " ms).");
+            }
+            seats.reload();
+            CourseFactory.loadCourses(dao);
+            if (AppConfig.getInstance().isJournalEnabled()) journal = openJournal();
+            System.out.println("Ready in " + (System.nanoTime() - started) / 1_000_000 + " ms.");
 
             Scanner scanner = new Scanner(System.in, "UTF-8");
             boolean exit = false;
@@ -40,56 +56,86 @@ public class DemoUsersExample {
                 int mainOption = Integer.parseInt(scanner.nextLine());
 
                 switch (mainOption) {
-                    case 1 -> studentMenu(connection, scanner);
-                    case 2 -> instructorMenu(connection, scanner);
-                    case 3 -> courseMenu(connection, scanner);
-                    case 4 -> enrollmentMenu(connection, scanner);
+                    case 1 -> studentMenu(dao, scanner);
+                    case 2 -> instructorMenu(dao, scanner);
+                    case 3 -> courseMenu(dao, scanner);
+                    case 4 -> enrollmentMenu(dao, scanner);
                     case 0 -> exit = true;
                     default -> System.out.println("Invalid option. Try again.");
                 }
             }
 
+            System.out.println("Statement cache: " + dao.getStatementCache());
+            System.out.println("Course cache: " + CourseCatalogCache.getInstance());
+            if (studentWarmStart != null) closeStudentCache();
+            if (journal != null) {
+                System.out.println("Journal: " + journal.getLastSequence() + " records in " + journal.getDirectory());
+                journal.close();
+            }
+            if (Metrics.isEnabled()) System.out.print(Metrics.dump());
+
         } catch (SQLException e) {
             e.printStackTrace();
         }
     }
 
-    // ==================== STUDENTS ====================
+    private static EnrollmentJournal openJournal() {
+        try {
+            return EnrollmentJournal.fromConfig();
+        } catch (IOException | RuntimeException e) {
+            System.out.println("Warning: journal disabled, could not open it: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static InMemoryRepository<Student> studentCache() throws SQLException {
+        if (studentCache != null) return studentCache;
+        InMemoryRepository<Student> repo = new InMemoryRepository<>();
+        repo.addUniqueIndex(StudentFields.EMAIL);
+        repo.addSortedIndex(StudentFields.STUDENT_NUMBER);
+        StudentWarmStart warmStart = StudentWarmStart.fromConfig(repo);
+        StudentWarmStart.Report report = warmStart.start();
+        System.out.printf("Student cache ready in %d ms: %d from snapshot, %d from the database%n",
+                report.totalMillis(), report.fromSnapshot(), report.fromDatabase());
+        long interval = AppConfig.getInstance().getSnapshotIntervalMs();
+        if (interval > 0) warmStart.scheduleDumps(interval);
+        studentCache = repo;
+        studentWarmStart = warmStart;
+        return repo;
+    }
+
+    private static PeopleSearch peopleSearch(CampusDao dao) throws SQLException {
+        if (peopleSearch == null) {
+            long started = System.nanoTime();
+            peopleSearch = PeopleSearch.load(dao);
+            System.out.printf("Search index ready in %d ms: %d students, %d instructors%n",
+                    (System.nanoTime() - started) / 1_000_000, peopleSearch.getStudentIndex().size(),
+                    peopleSearch.getInstructorIndex().size());
+        }
+        return peopleSearch;
+    }
 
-    private static void createTableStudents(Connection connection) throws SQLException {
-        String sql = """
-                CREATE TABLE IF NOT EXISTS students (
-                    id SERIAL PRIMARY KEY,
-                    first_name VARCHAR(50) NOT NULL,
-                    last_name VARCHAR(50),
-                    email VARCHAR(100) UNIQUE NOT NULL,
-                    student_number VARCHAR(20) UNIQUE
-                );
-                """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.execute();
-            System.out.println("Table students is ready.");
+    private static void closeStudentCache() {
+        try {
+            studentWarmStart.close();
+        } catch (IOException e) {
+            System.out.println("Warning: could not write student snapshot: " + e.getMessage());
         }
     }
 
-    private static void insertStudent(Connection connection, String firstName, String lastName, String email, String studentNumber) throws SQLException {
-        String sql = """
-                INSERT INTO students (first_name, last_name, email, student_number)
-                VALUES (?, ?, ?, ?)
-                ON CONFLICT (email) DO NOTHING;
-                """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, firstName);
-            stmt.setString(2, lastName);
-            stmt.setString(3, email);
-            stmt.setString(4, studentNumber);
-            stmt.executeUpdate();
-            System.out.println("Student inserted: " + firstName + " " + lastName);
+    // ==================== STUDENTS ====================
+
+    private static void insertStudent(CampusDao dao, String firstName, String lastName, String email, String studentNumber) throws SQLException {
+        int rows = dao.insertStudent(firstName, lastName, email, studentNumber);
+        System.out.println("Student inserted: " + firstName + " " + lastName);
+        if (rows > 0 && peopleSearch != null) {
+            Integer id = dao.findStudentIdByEmail(email);
+            if (id != null) dao.findStudentById(id).ifPresent(peopleSearch::putStudent);
         }
     }
 
-    private static void studentMenu(Connection connection, Scanner scanner) throws SQLException {
-        RegistrationService registrationService = new RegistrationService();
+    private static void studentMenu(CampusDao dao, Scanner scanner) throws SQLException {
+        RegistrationService registrationService = new RegistrationService(journal);
 
         boolean back = false;
         while (!back) {
@@ -101,6 +147,9 @@ public class DemoUsersExample {
             System.out.println("5. View all students");
             System.out.println("6. Register student for course");
             System.out.println("7. Batch register (Repository + Lambda + Callback)");
+            System.out.println("8. Batch register students stored in the database");
+            System.out.println("9. Batch register from the in-memory student cache (snapshot warm start)");
+            System.out.println("10. Search students by name, email or student number");
             System.out.println("0. Back");
             System.out.print("Choose: ");
             int option = Integer.parseInt(scanner.nextLine());
@@ -115,26 +164,26 @@ public class DemoUsersExample {
                     String email = scanner.nextLine();
                     System.out.print("Student number: ");
                     String studentNumber = scanner.nextLine();
-                    insertStudent(connection, firstName, lastName, email, studentNumber);
+                    insertStudent(dao, firstName, lastName, email, studentNumber);
                 }
                 case 2 -> {
                     System.out.print("Student ID: ");
                     int id = Integer.parseInt(scanner.nextLine());
-                    findStudentById(connection, id);
+                    findStudentById(dao, id);
                 }
                 case 3 -> {
                     System.out.print("Student ID: ");
                     int id = Integer.parseInt(scanner.nextLine());
                     System.out.print("New email: ");
                     String email = scanner.nextLine();
-                    updateStudentEmail(connection, id, email);
+                    updateStudentEmail(dao, id, email);
                 }
                 case 4 -> {
                     System.out.print("Student ID to delete: ");
                     int id = Integer.parseInt(scanner.nextLine());
-                    deleteStudent(connection, id);
+                    deleteStudent(dao, id);
                 }
-                case 5 -> printAllStudents(connection);
+                case 5 -> printAllStudents(dao);
                 case 6 -> {
                     System.out.print("First name: ");
                     String firstName = scanner.nextLine();
@@ -152,9 +201,9 @@ public class DemoUsersExample {
                             .setStudentNumber(studentNumber)
                             .build();
 
-                    System.out.print("Enter course type (LECTURE / LAB): ");
-                    String courseType = scanner.nextLine().toUpperCase();
-                    Course course = CourseFactory.createCourse(courseType);
+                    System.out.print("Enter course type (LECTURE / LAB) or course code: ");
+                    Course course = readCourse(scanner);
+                    if (course == null) break;
 
                     // ======= Lambda for filtering =======
                     List<Student> students = List.of(student);
@@ -167,102 +216,102 @@ public class DemoUsersExample {
                 case 7 -> {
                     // Demonstration of generic repository + lambda filtering + callback
                     InMemoryRepository<Student> repo = new InMemoryRepository<>();
+                    repo.addUniqueIndex(StudentFields.EMAIL);
+                    repo.addUniqueIndex(StudentFields.STUDENT_NUMBER);
+                    repo.addSortedIndex(StudentFields.STUDENT_NUMBER); // serves the "CS" prefix below
                     repo.save(new Student("Ayan", "Sadykov", "ayan.sadykov@uni.kz", "IT-2513"));
                     repo.save(new Student("Dana", "Nurpeisova", "dana.nurpeisova@uni.kz", "SE-2302"));
                     repo.save(new Student("Timur", "Bekov", "timur.bekov@uni.kz", "CS-2415"));
 
-                    System.out.print("Enter course type for batch registration (LECTURE / LAB): ");
-                    String ctype = scanner.nextLine().toUpperCase();
-                    Course course = CourseFactory.createCourse(ctype);
+                    System.out.print("Enter course type (LECTURE / LAB) or course code for batch registration: ");
+                    Course course = readCourse(scanner);
+                    if (course == null) break;
 
                     EnrollmentService enroll = new EnrollmentService(repo, registrationService);
 
                     // Use lambda predicate and callback
                     enroll.registerAll(
-                            s -> s.studentNumber.startsWith("CS"), // lambda predicate
+                            Query.prefix(StudentFields.STUDENT_NUMBER, "CS"), // query spec, also a Predicate
                             course,
-                            (s, c) -> System.out.println("[Callback] Registered: " + s + " -> " + c.type) // lambda callback
+                            (s, c) -> System.out.println("[Callback] Registered: " + s + " -> " + c) // lambda callback
                     );
 
                     System.out.println("Batch registration complete.");
                 }
+                case 8 -> {
+                    // same flow as 7, but the filter runs in the database as WHERE student_number LIKE 'CS%'
+                    JdbcRepository<Student> repo = new JdbcRepository<>(TableMapping.students());
+                    System.out.print("Enter course type (LECTURE / LAB) or course code for batch registration: ");
+                    Course course = readCourse(scanner);
+                    if (course == null) break;
+                    new EnrollmentService(repo, registrationService).registerAll(
+                            Query.prefix(StudentFields.STUDENT_NUMBER, "CS"),
+                            course,
+                            (s, c) -> System.out.println("[Callback] Registered: " + s + " -> " + c));
+                    System.out.println("Batch registration complete.");
+                }
+                case 9 -> {
+                    // the first use loads the snapshot file and catches up from the database; later uses are in memory
+                    InMemoryRepository<Student> repo = studentCache();
+                    System.out.print("Enter course type (LECTURE / LAB) or course code for batch registration: ");
+                    Course course = readCourse(scanner);
+                    if (course == null) break;
+                    new EnrollmentService(repo, registrationService).registerAll(
+                            Query.prefix(StudentFields.STUDENT_NUMBER, "CS"),
+                            course,
+                            (s, c) -> System.out.println("[Callback] Registered: " + s + " -> " + c));
+                    System.out.println("Batch registration complete.");
+                }
+                case 10 -> {
+                    System.out.print("Search: ");
+                    searchStudents(dao, scanner.nextLine());
+                }
                 case 0 -> back = true;
                 default -> System.out.println("Invalid option.");
             }
         }
     }
 
-    private static void printAllStudents(Connection connection) throws SQLException {
-        String sql = "SELECT * FROM students ORDER BY id";
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-            System.out.println("Current students:");
-            while (rs.next()) {
-                System.out.printf("%d | %s | %s | %s | %s%n",
-                        rs.getInt("id"),
-                        rs.getString("first_name"),
-                        rs.getString("last_name"),
-                        rs.getString("email"),
-                        rs.getString("student_number"));
-            }
+    private static void searchStudents(CampusDao dao, String text) throws SQLException {
+        long started = System.nanoTime();
+        List<PeopleSearch.Match<CampusDao.StudentRow>> matches = peopleSearch(dao).findStudents(dao, text, 10);
+        for (PeopleSearch.Match<CampusDao.StudentRow> m : matches) {
+            CampusDao.StudentRow s = m.row();
+            System.out.printf("%3.0f%% | %d | %s | %s | %s | %s%n", m.score() * 100, s.id(), s.firstName(), s.lastName(), s.email(), s.studentNumber());
         }
+        System.out.printf("%d match(es) in %.1f ms%n", matches.size(), (System.nanoTime() - started) / 1e6);
     }
 
-    private static void findStudentById(Connection connection, int id) throws SQLException {
-        String sql = "SELECT * FROM students WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                System.out.printf("Found: %d | %s | %s | %s | %s%n",
-                        rs.getInt("id"),
-                        rs.getString("first_name"),
-                        rs.getString("last_name"),
-                        rs.getString("email"),
-                        rs.getString("student_number"));
-            } else {
-                System.out.println("Not found");
-            }
+    private static void printAllStudents(CampusDao dao) throws SQLException {
+        System.out.println("Current students:");
+        try (RowCursor<CampusDao.StudentRow> rows = dao.openStudentCursor()) {
+            rows.forEach(s -> System.out.printf("%d | %s | %s | %s | %s%n", s.id(), s.firstName(), s.lastName(), s.email(), s.studentNumber()));
         }
     }
 
-    private static void updateStudentEmail(Connection connection, int id, String email) throws SQLException {
-        String sql = "UPDATE students SET email = ? WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, email);
-            stmt.setInt(2, id);
-            int rows = stmt.executeUpdate();
-            System.out.println(rows > 0 ? "Updated" : "Not found");
-        }
+    private static void findStudentById(CampusDao dao, int id) throws SQLException {
+        dao.findStudentById(id).ifPresentOrElse(
+                s -> System.out.printf("Found: %d | %s | %s | %s | %s%n", s.id(), s.firstName(), s.lastName(), s.email(), s.studentNumber()),
+                () -> System.out.println("Not found"));
     }
 
-    private static void deleteStudent(Connection connection, int id) throws SQLException {
-        String sql = "DELETE FROM students WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            int rows = stmt.executeUpdate();
-            System.out.println(rows > 0 ? "Deleted" : "Not found");
-        }
+    private static void updateStudentEmail(CampusDao dao, int id, String email) throws SQLException {
+        int rows = dao.updateStudentEmail(id, email);
+        System.out.println(rows > 0 ? "Updated" : "Not found");
+        if (rows > 0 && peopleSearch != null) dao.findStudentById(id).ifPresent(peopleSearch::putStudent);
     }
 
-    // ==================== INSTRUCTORS ====================
-
-    private static void createTableInstructors(Connection connection) throws SQLException {
-        String sql = """
-                CREATE TABLE IF NOT EXISTS instructors (
-                    id SERIAL PRIMARY KEY,
-                    first_name VARCHAR(50),
-                    last_name VARCHAR(50),
-                    email VARCHAR(100) UNIQUE
-                );
-                """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.execute();
-            System.out.println("Table instructors is ready.");
-        }
+    private static void deleteStudent(CampusDao dao, int id) throws SQLException {
+        int rows = dao.deleteStudent(id);
+        System.out.println(rows > 0 ? "Deleted" : "Not found");
+        if (rows > 0 && peopleSearch != null) peopleSearch.removeStudent(id);
+        // enrollments went with the student (ON DELETE CASCADE)
+        if (rows > 0) seats.reload();
     }
 
-    private static void instructorMenu(Connection connection, Scanner scanner) throws SQLException {
+    // ==================== INSTRUCTORS ====================
+
+    private static void instructorMenu(CampusDao dao, Scanner scanner) throws SQLException {
         boolean back = false;
         while (!back) {
             System.out.println("\n--- Instructors Menu ---");
@@ -271,6 +320,7 @@ public class DemoUsersExample {
             System.out.println("3. Update instructor email");
             System.out.println("4. Delete instructor");
             System.out.println("5. View all instructors");
+            System.out.println("6. Search instructors by name or email");
             System.out.println("0. Back");
             System.out.print("Choose: ");
 
@@ -283,171 +333,147 @@ public class DemoUsersExample {
                     String lastName = scanner.nextLine();
                     System.out.print("Email: ");
                     String email = scanner.nextLine();
-                    insertInstructor(connection, firstName, lastName, email);
+                    insertInstructor(dao, firstName, lastName, email);
                 }
                 case 2 -> {
                     System.out.print("Instructor ID: ");
                     int id = Integer.parseInt(scanner.nextLine());
-                    findInstructorById(connection, id);
+                    findInstructorById(dao, id);
                 }
                 case 3 -> {
                     System.out.print("Instructor ID: ");
                     int id = Integer.parseInt(scanner.nextLine());
                     System.out.print("New email: ");
                     String email = scanner.nextLine();
-                    updateInstructorEmail(connection, id, email);
+                    updateInstructorEmail(dao, id, email);
                 }
                 case 4 -> {
                     System.out.print("Instructor ID to delete: ");
                     int id = Integer.parseInt(scanner.nextLine());
-                    deleteInstructor(connection, id);
+                    deleteInstructor(dao, id);
+                }
+                case 5 -> printAllInstructors(dao);
+                case 6 -> {
+                    System.out.print("Search: ");
+                    searchInstructors(dao, scanner.nextLine());
                 }
-                case 5 -> printAllInstructors(connection);
                 case 0 -> back = true;
                 default -> System.out.println("Invalid option.");
             }
         }
     }
 
-    private static void insertInstructor(Connection connection, String firstName, String lastName, String email) throws SQLException {
-        String sql = """
-                INSERT INTO instructors (first_name, last_name, email)
-                VALUES (?, ?, ?)
-                ON CONFLICT (email) DO NOTHING;
-                """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, firstName);
-            stmt.setString(2, lastName);
-            stmt.setString(3, email);
-            stmt.executeUpdate();
-            System.out.println("Instructor inserted: " + firstName + " " + lastName);
+    private static void insertInstructor(CampusDao dao, String firstName, String lastName, String email) throws SQLException {
+        int rows = dao.insertInstructor(firstName, lastName, email);
+        System.out.println("Instructor inserted: " + firstName + " " + lastName);
+        if (rows > 0 && peopleSearch != null) {
+            Integer id = dao.findInstructorIdByEmail(email);
+            if (id != null) dao.findInstructorById(id).ifPresent(peopleSearch::putInstructor);
         }
     }
 
-    private static void printAllInstructors(Connection connection) throws SQLException {
-        String sql = "SELECT * FROM instructors ORDER BY id";
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-            System.out.println("Current instructors:");
-            while (rs.next()) {
-                System.out.printf("%d | %s | %s | %s%n",
-                        rs.getInt("id"),
-                        rs.getString("first_name"),
-                        rs.getString("last_name"),
-                        rs.getString("email"));
-            }
+    private static void searchInstructors(CampusDao dao, String text) throws SQLException {
+        long started = System.nanoTime();
+        List<PeopleSearch.Match<CampusDao.InstructorRow>> matches = peopleSearch(dao).findInstructors(dao, text, 10);
+        for (PeopleSearch.Match<CampusDao.InstructorRow> m : matches) {
+            CampusDao.InstructorRow i = m.row();
+            System.out.printf("%3.0f%% | %d | %s | %s | %s%n", m.score() * 100, i.id(), i.firstName(), i.lastName(), i.email());
         }
+        System.out.printf("%d match(es) in %.1f ms%n", matches.size(), (System.nanoTime() - started) / 1e6);
     }
 
-    private static void findInstructorById(Connection connection, int id) throws SQLException {
-        String sql = "SELECT * FROM instructors WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                System.out.printf("Found: %d | %s | %s | %s%n",
-                        rs.getInt("id"),
-                        rs.getString("first_name"),
-                        rs.getString("last_name"),
-                        rs.getString("email"));
-            } else System.out.println("Not found");
+    private static void printAllInstructors(CampusDao dao) throws SQLException {
+        System.out.println("Current instructors:");
+        try (RowCursor<CampusDao.InstructorRow> rows = dao.openInstructorCursor()) {
+            rows.forEach(i -> System.out.printf("%d | %s | %s | %s%n", i.id(), i.firstName(), i.lastName(), i.email()));
         }
     }
 
-    private static void updateInstructorEmail(Connection connection, int id, String email) throws SQLException {
-        String sql = "UPDATE instructors SET email = ? WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, email);
-            stmt.setInt(2, id);
-            int rows = stmt.executeUpdate();
-            System.out.println(rows > 0 ? "Updated" : "Not found");
-        }
+    private static void findInstructorById(CampusDao dao, int id) throws SQLException {
+        dao.findInstructorById(id).ifPresentOrElse(
+                i -> System.out.printf("Found: %d | %s | %s | %s%n", i.id(), i.firstName(), i.lastName(), i.email()),
+                () -> System.out.println("Not found"));
     }
 
-    private static void deleteInstructor(Connection connection, int id) throws SQLException {
-        String sql = "DELETE FROM instructors WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            int rows = stmt.executeUpdate();
-            System.out.println(rows > 0 ? "Deleted" : "Not found");
-        }
+    private static void updateInstructorEmail(CampusDao dao, int id, String email) throws SQLException {
+        int rows = dao.updateInstructorEmail(id, email);
+        System.out.println(rows > 0 ? "Updated" : "Not found");
+        if (rows > 0 && peopleSearch != null) dao.findInstructorById(id).ifPresent(peopleSearch::putInstructor);
+    }
+
+    private static void deleteInstructor(CampusDao dao, int id) throws SQLException {
+        int rows = dao.deleteInstructor(id);
+        System.out.println(rows > 0 ? "Deleted" : "Not found");
+        if (rows > 0 && peopleSearch != null) peopleSearch.removeInstructor(id);
     }
 
     // ==================== COURSES ====================
 
-    private static void createTableCourses(Connection connection) throws SQLException {
-        String sql = """
-                CREATE TABLE IF NOT EXISTS courses (
-                    id SERIAL PRIMARY KEY,
-                    course_code VARCHAR(20) UNIQUE NOT NULL,
-                    title VARCHAR(200) NOT NULL,
-                    credits INTEGER DEFAULT 0
-                );
-                """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.execute();
-            System.out.println("Table courses is ready.");
-        }
+    private static void insertCourse(CampusDao dao, String courseCode, String title, int credits) throws SQLException {
+        dao.insertCourse(courseCode, title, credits);
+        CourseFactory.loadCourses(dao);
+        System.out.println("Course inserted: " + courseCode + " - " + title + " (" + credits + "cr)");
     }
 
-    private static void insertCourse(Connection connection, String courseCode, String title, int credits) throws SQLException {
-        String sql = """
-                INSERT INTO courses (course_code, title, credits)
-                VALUES (?, ?, ?)
-                ON CONFLICT (course_code) DO NOTHING;
-                """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, courseCode);
-            stmt.setString(2, title);
-            stmt.setInt(3, credits);
-            stmt.executeUpdate();
-            System.out.println("Course inserted: " + courseCode + " - " + title + " (" + credits + "cr)");
+    private static void printAllCourses(CampusDao dao) throws SQLException {
+        System.out.println("Current courses:");
+        try (RowCursor<CampusDao.CourseRow> rows = dao.openCourseCursor()) {
+            rows.forEach(c -> System.out.printf("%d | %s | %s | %d | %s%n", c.id(), c.courseCode(), c.title(), c.credits(),
+                    c.meetings().isEmpty() ? "no meetings" : c.meetings()));
         }
     }
 
-    private static void printAllCourses(Connection connection) throws SQLException {
-        String sql = "SELECT c.id, c.course_code, c.title, c.credits FROM courses c ORDER BY c.id";
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-            System.out.println("Current courses:");
-            while (rs.next()) {
-                System.out.printf("%d | %s | %s | %d%n", rs.getInt("id"), rs.getString("course_code"), rs.getString("title"), rs.getInt("credits"));
-            }
+    private static void findCourseById(CampusDao dao, int id) throws SQLException {
+        dao.findCourseById(id).ifPresentOrElse(
+                c -> System.out.printf("Found: %d | %s | %s | %d | %s%n", c.id(), c.courseCode(), c.title(), c.credits(), c.meetings()),
+                () -> System.out.println("Not found"));
+    }
+
+    private static void updateCourse(CampusDao dao, int id, String title, Integer credits) throws SQLException {
+        int rows = dao.updateCourse(id, title, credits);
+        if (rows > 0) {
+            CourseFactory.loadCourses(dao);
+            if (credits != null) seats.reload(); // credit loads
         }
+        System.out.println(rows > 0 ? "Updated" : "Not found");
     }
 
-    private static void findCourseById(Connection connection, int id) throws SQLException {
-        String sql = "SELECT * FROM courses WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) {
-                System.out.printf("Found: %d | %s | %s | %d%n", rs.getInt("id"), rs.getString("course_code"), rs.getString("title"), rs.getInt("credits"));
-            } else System.out.println("Not found");
+    private static void deleteCourse(CampusDao dao, int id) throws SQLException {
+        int rows = dao.deleteCourse(id);
+        if (rows > 0) {
+            CourseFactory.loadCourses(dao);
+            seats.reload(); // its enrollments went with it
         }
+        System.out.println(rows > 0 ? "Deleted" : "Not found");
     }
 
-    private static void updateCourse(Connection connection, int id, String title, Integer credits) throws SQLException {
-        String sql = "UPDATE courses SET title = COALESCE(NULLIF(?, ''), title), credits = COALESCE(?, credits) WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, title);
-            if (credits == null) stmt.setNull(2, java.sql.Types.INTEGER); else stmt.setInt(2, credits);
-            stmt.setInt(3, id);
-            int rows = stmt.executeUpdate();
-            System.out.println(rows > 0 ? "Updated" : "Not found");
+    private static Course readCourse(Scanner scanner) {
+        try {
+            return CourseFactory.resolve(scanner.nextLine());
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return null;
         }
     }
 
-    private static void deleteCourse(Connection connection, int id) throws SQLException {
-        String sql = "DELETE FROM courses WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            int rows = stmt.executeUpdate();
-            System.out.println(rows > 0 ? "Deleted" : "Not found");
+    private static void setCourseCapacity(String courseCode, Integer capacity) throws SQLException {
+        if (!seats.setCapacity(courseCode, capacity)) System.out.println("Course not found: " + courseCode);
+        else System.out.println("Seat limit of " + courseCode + ": " + (capacity == null ? "none" : capacity));
+    }
+
+    private static void setCourseMeetings(String courseCode, String slots) throws SQLException {
+        WeeklySchedule meetings;
+        try {
+            meetings = WeeklySchedule.parse(slots);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid meeting times: " + e.getMessage());
+            return;
         }
+        if (!seats.setMeetings(courseCode, meetings)) System.out.println("Course not found: " + courseCode);
+        else System.out.println("Meetings of " + courseCode + ": " + (meetings.isEmpty() ? "none" : meetings));
     }
 
-    private static void courseMenu(Connection connection, Scanner scanner) throws SQLException {
+    private static void courseMenu(CampusDao dao, Scanner scanner) throws SQLException {
         boolean back = false;
         while (!back) {
             System.out.println("\n--- Courses Menu ---");
@@ -456,6 +482,8 @@ public class DemoUsersExample {
             System.out.println("3. Update course title/credits");
             System.out.println("4. Delete course");
             System.out.println("5. View all courses");
+            System.out.println("6. Set seat limit");
+            System.out.println("7. Set meeting times");
             System.out.println("0. Back");
             System.out.print("Choose: ");
             int option = Integer.parseInt(scanner.nextLine());
@@ -467,12 +495,12 @@ public class DemoUsersExample {
                     String title = scanner.nextLine();
                     System.out.print("Credits (integer): ");
                     int credits = Integer.parseInt(scanner.nextLine());
-                    insertCourse(connection, code, title, credits);
+                    insertCourse(dao, code, title, credits);
                 }
                 case 2 -> {
                     System.out.print("Course ID: ");
                     int id = Integer.parseInt(scanner.nextLine());
-                    findCourseById(connection, id);
+                    findCourseById(dao, id);
                 }
                 case 3 -> {
                     System.out.print("Course ID: ");
@@ -482,14 +510,27 @@ public class DemoUsersExample {
                     System.out.print("New credits (or blank to keep): ");
                     String creds = scanner.nextLine();
                     Integer credits = creds.isBlank() ? null : Integer.parseInt(creds);
-                    updateCourse(connection, id, title, credits);
+                    updateCourse(dao, id, title, credits);
                 }
                 case 4 -> {
                     System.out.print("Course ID to delete: ");
                     int id = Integer.parseInt(scanner.nextLine());
-                    deleteCourse(connection, id);
+                    deleteCourse(dao, id);
+                }
+                case 5 -> printAllCourses(dao);
+                case 6 -> {
+                    System.out.print("Course code: ");
+                    String code = scanner.nextLine();
+                    System.out.print("Seats (or blank for no limit): ");
+                    String limit = scanner.nextLine();
+                    setCourseCapacity(code, limit.isBlank() ? null : Integer.parseInt(limit));
+                }
+                case 7 -> {
+                    System.out.print("Course code: ");
+                    String code = scanner.nextLine();
+                    System.out.print("Meetings, e.g. MON 09:00-10:30; WED 09:00-10:30 (or blank for none): ");
+                    setCourseMeetings(code, scanner.nextLine());
                 }
-                case 5 -> printAllCourses(connection);
                 case 0 -> back = true;
                 default -> System.out.println("Invalid option.");
             }
@@ -498,102 +539,83 @@ public class DemoUsersExample {
 
     // ==================== ENROLLMENTS ====================
 
-    private static void createTableEnrollments(Connection connection) throws SQLException {
-        String sql = """
-                CREATE TABLE IF NOT EXISTS enrollments (
-                    id SERIAL PRIMARY KEY,
-                    student_id INTEGER REFERENCES students(id) ON DELETE CASCADE,
-                    course VARCHAR(50),
-                    enrolled_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-                    UNIQUE(student_id, course)
-                );
-                """;
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.execute();
-            System.out.println("Table enrollments is ready (ensured 'course' column exists).");
+    private static void printAllEnrollments(CampusDao dao) throws SQLException {
+        System.out.println("Current enrollments:");
+        try (RowCursor<CampusDao.EnrollmentRow> rows = dao.openEnrollmentCursor()) {
+            rows.forEach(e -> System.out.printf("%d | %s %s (%s) => %s (%s) at %s%n", e.id(), e.firstName(), e.lastName(), e.studentNumber(), e.course(), e.title(), e.enrolledAt().toString()));
         }
+    }
 
-        // Ensure FK to courses(course_code) exists if courses table present
-        try {
-            if (!hasColumn(connection, "enrollments", "course")) {
-                try (PreparedStatement stmt = connection.prepareStatement("ALTER TABLE enrollments ADD COLUMN course VARCHAR(50);")) {
-                    stmt.execute();
-                }
-            }
-            // try adding FK constraint (ignore if fails)
-            try (PreparedStatement stmt = connection.prepareStatement("ALTER TABLE enrollments ADD CONSTRAINT enrollments_course_fkey FOREIGN KEY (course) REFERENCES courses(course_code) ON DELETE CASCADE;")) {
-                stmt.execute();
-            } catch (SQLException ignored) {
-                // constraint might already exist or courses not present yet
-            }
-        } catch (SQLException e) {
-            // best-effort, don't fail startup
-            System.out.println("Warning: could not ensure enrollments course column/constraint: " + e.getMessage());
+    private static void enrollWithSeatLimit(int studentId, String courseCode) throws SQLException {
+        SeatedEnrollmentService.Outcome outcome = seats.enroll(studentId, courseCode);
+        switch (outcome) {
+            case ENROLLED -> System.out.println("Enrollment inserted: student " + studentId + " -> course " + courseCode);
+            case WAITLISTED -> System.out.println("Course is full, waitlisted at position "
+                    + seats.getEngine().waitlistPosition(courseCode, studentId));
+            case ALREADY_WAITLISTED -> System.out.println("Student is already on the waitlist.");
+            case ALREADY_ENROLLED -> System.out.println("Enrollment already exists or invalid IDs.");
+            case COURSE_NOT_FOUND -> System.out.println("Course not found: " + courseCode);
+            case TIMETABLE_CLASH -> System.out.println("Timetable clash: " + courseCode + " meets at the same time as "
+                    + String.join(", ", seats.clashesWith(studentId, courseCode)));
         }
     }
 
-    private static void insertEnrollment(Connection connection, int studentId, String courseCode) throws SQLException {
-        String courseColumn = getEnrollmentCourseColumn(connection);
-        if ("course_id".equals(courseColumn)) {
-            // resolve course id by code
-            Integer cid = findCourseIdByCode(connection, courseCode);
-            if (cid == null) {
-                System.out.println("Course not found: " + courseCode);
-                return;
-            }
-            String sql = "INSERT INTO enrollments (student_id, course_id) VALUES (?, ?) ON CONFLICT (student_id, course_id) DO NOTHING";
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-                stmt.setInt(1, studentId);
-                stmt.setInt(2, cid);
-                int rows = stmt.executeUpdate();
-                System.out.println(rows > 0 ? "Enrollment inserted: student " + studentId + " -> course id " + cid : "Enrollment already exists or invalid IDs.");
-            }
+    // every student in the database unless ids are given
+    private static void checkCohort(CampusDao dao, String courseCode, String ids) throws SQLException {
+        List<Integer> cohort = new ArrayList<>();
+        if (ids.isBlank()) {
+            for (CampusDao.StudentRow row : dao.findAllStudents()) cohort.add(row.id());
         } else {
-            String col = courseColumn; // either 'course' or 'course_code'
-            String sql = "INSERT INTO enrollments (student_id, " + col + ") VALUES (?, ?) ON CONFLICT (student_id, " + col + ") DO NOTHING";
-            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-                stmt.setInt(1, studentId);
-                stmt.setString(2, courseCode);
-                int rows = stmt.executeUpdate();
-                System.out.println(rows > 0 ? "Enrollment inserted: student " + studentId + " -> course " + courseCode : "Enrollment already exists or invalid IDs.");
-            }
+            for (String id : ids.split(",")) cohort.add(Integer.parseInt(id.trim()));
         }
+        List<Integer> clashing = seats.findClashes(cohort, courseCode);
+        System.out.println(clashing.isEmpty()
+                ? "No clashes with " + courseCode + " among " + cohort.size() + " students."
+                : clashing.size() + " of " + cohort.size() + " students clash with " + courseCode + ": " + clashing);
     }
 
-    private static void printAllEnrollments(Connection connection) throws SQLException {
-        String courseColumn = getEnrollmentCourseColumn(connection);
-        String joinExpr;
-        if ("course_id".equals(courseColumn)) {
-            joinExpr = "JOIN courses c ON e.course_id = c.id";
-        } else {
-            joinExpr = "JOIN courses c ON e." + courseColumn + " = c.course_code";
-        }
-        String sql = "SELECT e.id, s.first_name, s.last_name, s.student_number, e." + courseColumn + " as course_col, c.title, e.enrolled_at FROM enrollments e JOIN students s ON e.student_id = s.id " + joinExpr + " ORDER BY e.id";
-        try (PreparedStatement stmt = connection.prepareStatement(sql);
-             ResultSet rs = stmt.executeQuery()) {
-            System.out.println("Current enrollments:");
-            while (rs.next()) {
-                System.out.printf("%d | %s %s (%s) => %s (%s) at %s%n", rs.getInt("id"), rs.getString("first_name"), rs.getString("last_name"), rs.getString("student_number"), rs.getString("course_col"), rs.getString("title"), rs.getTimestamp("enrolled_at").toString());
-            }
-        }
+    private static void dropEnrollment(int id) throws SQLException {
+        System.out.println(seats.drop(id) ? "Deleted" : "Not found");
     }
 
-    private static void deleteEnrollment(Connection connection, int id) throws SQLException {
-        String sql = "DELETE FROM enrollments WHERE id = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setInt(1, id);
-            int rows = stmt.executeUpdate();
-            System.out.println(rows > 0 ? "Deleted" : "Not found");
+    private static void printRoster(String courseCode, String otherCode) {
+        EnrollmentGraph graph = seats.getGraph();
+        int course = graph.courseId(courseCode);
+        if (course < 0) {
+            System.out.println("Course not found: " + courseCode);
+            return;
         }
+        System.out.println(courseCode + ": " + graph.rosterSize(course) + " students " + Arrays.toString(graph.roster(course)));
+        if (otherCode.isBlank()) return;
+        int other = graph.courseId(otherCode);
+        if (other < 0) System.out.println("Course not found: " + otherCode);
+        else System.out.println("Also in " + otherCode + ": " + Arrays.toString(graph.sharedStudents(course, other)));
+    }
+
+    private static void printCreditLoad(int studentId) {
+        EnrollmentGraph graph = seats.getGraph();
+        System.out.println("Student " + studentId + ": " + graph.courseCount(studentId) + " courses, "
+                + graph.credits(studentId) + " credits");
+    }
+
+    private static void printWaitlist(String courseCode) {
+        SeatReservationEngine engine = seats.getEngine();
+        int capacity = engine.capacity(courseCode);
+        System.out.println(courseCode + ": " + engine.seatsTaken(courseCode) + " / "
+                + (capacity == SeatReservationEngine.UNLIMITED ? "unlimited" : capacity) + " seats, waitlist " + engine.waitlist(courseCode));
     }
 
-    private static void enrollmentMenu(Connection connection, Scanner scanner) throws SQLException {
+    private static void enrollmentMenu(CampusDao dao, Scanner scanner) throws SQLException {
         boolean back = false;
         while (!back) {
             System.out.println("\n--- Enrollments Menu ---");
             System.out.println("1. Enroll student to course");
             System.out.println("2. View all enrollments");
             System.out.println("3. Delete enrollment");
+            System.out.println("4. Show seats and waitlist");
+            System.out.println("5. Check a cohort for timetable clashes");
+            System.out.println("6. Course roster");
+            System.out.println("7. Student credit load");
             System.out.println("0. Back");
             System.out.print("Choose: ");
             int option = Integer.parseInt(scanner.nextLine());
@@ -603,13 +625,33 @@ public class DemoUsersExample {
                     int sid = Integer.parseInt(scanner.nextLine());
                     System.out.print("Course code: ");
                     String code = scanner.nextLine();
-                    insertEnrollment(connection, sid, code);
+                    enrollWithSeatLimit(sid, code);
                 }
-                case 2 -> printAllEnrollments(connection);
+                case 2 -> printAllEnrollments(dao);
                 case 3 -> {
                     System.out.print("Enrollment ID to delete: ");
                     int id = Integer.parseInt(scanner.nextLine());
-                    deleteEnrollment(connection, id);
+                    dropEnrollment(id);
+                }
+                case 4 -> {
+                    System.out.print("Course code: ");
+                    printWaitlist(scanner.nextLine());
+                }
+                case 5 -> {
+                    System.out.print("Course code: ");
+                    String code = scanner.nextLine();
+                    System.out.print("Student IDs, comma-separated (or blank for all): ");
+                    checkCohort(dao, code, scanner.nextLine());
+                }
+                case 6 -> {
+                    System.out.print("Course code: ");
+                    String code = scanner.nextLine();
+                    System.out.print("Compare with course (or blank): ");
+                    printRoster(code, scanner.nextLine());
+                }
+                case 7 -> {
+                    System.out.print("Student ID: ");
+                    printCreditLoad(Integer.parseInt(scanner.nextLine()));
                 }
                 case 0 -> back = true;
                 default -> System.out.println("Invalid option.");
@@ -617,79 +659,6 @@ public class DemoUsersExample {
         }
     }
 
-    // Helper lookups for sample data
-    private static Integer findInstructorIdByEmail(Connection connection, String email) throws SQLException {
-        String sql = "SELECT id FROM instructors WHERE email = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, email);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) return rs.getInt("id");
-        }
-        return null;
-    }
-
-    private static Integer findStudentIdByEmail(Connection connection, String email) throws SQLException {
-        String sql = "SELECT id FROM students WHERE email = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, email);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) return rs.getInt("id");
-        }
-        return null;
-    }
-
-    private static Integer findCourseIdByCode(Connection connection, String courseCode) throws SQLException {
-        String sql = "SELECT id FROM courses WHERE course_code = ?";
-        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setString(1, courseCode);
-            ResultSet rs = stmt.executeQuery();
-            if (rs.next()) return rs.getInt("id");
-        }
-        return null;
-    }
-
-    private static boolean hasColumn(Connection connection, String tableName, String columnName) throws SQLException {
-        // DatabaseMetaData is case-insensitive for unquoted identifiers in Postgres
-        ResultSet rs = connection.getMetaData().getColumns(null, null, tableName, columnName);
-        boolean exists = rs.next();
-        rs.close();
-        return exists;
-    }
-
-    private static String getEnrollmentCourseColumn(Connection connection) throws SQLException {
-        if (hasColumn(connection, "enrollments", "course")) return "course";
-        if (hasColumn(connection, "enrollments", "course_code")) return "course_code";
-        if (hasColumn(connection, "enrollments", "course_id")) return "course_id";
-        // If none found, ensure 'course' column exists and use it
-        try (PreparedStatement stmt = connection.prepareStatement("ALTER TABLE enrollments ADD COLUMN IF NOT EXISTS course VARCHAR(50);")) {
-            stmt.execute();
-        } catch (SQLException ignored) {}
-        return "course";
-    }
-
-    // Insert some sample instructors, courses and enrollment if possible
-    // (keeps id lookups so we don't assume numeric IDs)
-    private static void insertSampleCoursesAndEnrollments(Connection connection) throws SQLException {
-        insertInstructor(connection, "Alice", "Smith", "alice.smith@uni.kz");
-        insertInstructor(connection, "Bob", "Brown", "bob.brown@uni.kz");
-
-        Integer aliceId = findInstructorIdByEmail(connection, "alice.smith@uni.kz");
-        Integer bobId = findInstructorIdByEmail(connection, "bob.brown@uni.kz");
-
-        insertCourse(connection, "CS101", "Intro to Computer Science", 4);
-        insertCourse(connection, "CS101-LAB", "Intro to CS Lab", 1);
-        insertCourse(connection, "IT200", "Software Engineering", 3);
-
-        Integer ayanId = findStudentIdByEmail(connection, "ayan.sadykov@uni.kz");
-
-        if (ayanId != null) {
-            insertEnrollment(connection, ayanId, "CS101");
-            insertEnrollment(connection, ayanId, "IT200");
-        }
-
-        System.out.println("Sample courses and enrollments inserted (where possible).");
-    }
-
     // ==================== DOMAIN ====================
     public static class Student {
         public String firstName;
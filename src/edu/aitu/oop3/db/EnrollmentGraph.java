@@ -0,0 +1,186 @@
+package edu.aitu.oop3.db;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Who is enrolled in what, in memory, keyed by {@code students.id} and {@code courses.id}. Each student and each
+ * course has a sorted {@code int[]} of the other side, so a roster is one array, shared students of two courses a
+ * merge of two arrays and a credit load a sum over a student's few courses; nothing is boxed.
+ * <p>
+ * Reads take no lock. Writes are serialized and replace the affected arrays (copy on write), publishing them with
+ * release/acquire ordering, so a reader always sees a complete, sorted array. Ids are expected to be dense, as SERIAL
+ * ids are: tables are sized by the largest id seen.
+ */
+public class EnrollmentGraph {
+
+    private static final int[] NONE = new int[0];
+    private static final VarHandle ADJACENCY = MethodHandles.arrayElementVarHandle(int[][].class);
+    private static final VarHandle CREDITS = MethodHandles.arrayElementVarHandle(int[].class);
+
+    private volatile int[][] coursesByStudent = new int[16][];
+    private volatile int[][] studentsByCourse = new int[16][];
+    private volatile int[] credits = new int[16];
+    private final Map<String, Integer> courseIds = new ConcurrentHashMap<>();
+    private int enrollments; // guarded by this
+
+    /**
+     * Registers (or updates) a course so it can be looked up by code and counted in credit sums.
+     */
+    public synchronized void defineCourse(int courseId, String courseCode, int courseCredits) {
+        checkId(courseId);
+        if (courseId >= credits.length) credits = Arrays.copyOf(credits, grow(credits.length, courseId));
+        CREDITS.setRelease(credits, courseId, courseCredits);
+        courseIds.put(courseCode, courseId);
+    }
+
+    /** The id of a course defined with {@link #defineCourse}, or -1. */
+    public int courseId(String courseCode) {
+        Integer id = courseIds.get(courseCode);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Adds an enrollment; false if it was already there.
+     */
+    public synchronized boolean add(int studentId, int courseId) {
+        checkId(studentId);
+        checkId(courseId);
+        int[] courses = get(coursesByStudent, studentId);
+        int at = Arrays.binarySearch(courses, courseId);
+        if (at >= 0) return false;
+        if (studentId >= coursesByStudent.length) coursesByStudent = Arrays.copyOf(coursesByStudent, grow(coursesByStudent.length, studentId));
+        if (courseId >= studentsByCourse.length) studentsByCourse = Arrays.copyOf(studentsByCourse, grow(studentsByCourse.length, courseId));
+        ADJACENCY.setRelease(coursesByStudent, studentId, insert(courses, -at - 1, courseId));
+        int[] students = get(studentsByCourse, courseId);
+        ADJACENCY.setRelease(studentsByCourse, courseId, insert(students, -Arrays.binarySearch(students, studentId) - 1, studentId));
+        enrollments++;
+        return true;
+    }
+
+    /**
+     * Removes an enrollment; false if it was not there.
+     */
+    public synchronized boolean remove(int studentId, int courseId) {
+        int[] courses = get(coursesByStudent, studentId);
+        int at = Arrays.binarySearch(courses, courseId);
+        if (at < 0) return false;
+        ADJACENCY.setRelease(coursesByStudent, studentId, delete(courses, at));
+        int[] students = get(studentsByCourse, courseId);
+        ADJACENCY.setRelease(studentsByCourse, courseId, delete(students, Arrays.binarySearch(students, studentId)));
+        enrollments--;
+        return true;
+    }
+
+    /**
+     * Removes every enrollment; courses stay defined.
+     */
+    public synchronized void clearEnrollments() {
+        coursesByStudent = new int[coursesByStudent.length][];
+        studentsByCourse = new int[studentsByCourse.length][];
+        enrollments = 0;
+    }
+
+    /** Student ids enrolled in the course, ascending. */
+    public int[] roster(int courseId) {
+        return get(studentsByCourse, courseId).clone();
+    }
+
+    public int rosterSize(int courseId) {
+        return get(studentsByCourse, courseId).length;
+    }
+
+    /** Course ids the student is enrolled in, ascending. */
+    public int[] courses(int studentId) {
+        return get(coursesByStudent, studentId).clone();
+    }
+
+    public int courseCount(int studentId) {
+        return get(coursesByStudent, studentId).length;
+    }
+
+    public boolean isEnrolled(int studentId, int courseId) {
+        return Arrays.binarySearch(get(coursesByStudent, studentId), courseId) >= 0;
+    }
+
+    /** Students enrolled in both courses, ascending. */
+    public int[] sharedStudents(int courseA, int courseB) {
+        int[] a = get(studentsByCourse, courseA);
+        int[] b = get(studentsByCourse, courseB);
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return n == out.length ? out : Arrays.copyOf(out, n);
+    }
+
+    public int sharedCount(int courseA, int courseB) {
+        int[] a = get(studentsByCourse, courseA);
+        int[] b = get(studentsByCourse, courseB);
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) i++;
+            else if (a[i] > b[j]) j++;
+            else {
+                n++;
+                i++;
+                j++;
+            }
+        }
+        return n;
+    }
+
+    /** Sum of the credits of the student's courses. */
+    public int credits(int studentId) {
+        int[] table = credits;
+        int sum = 0;
+        for (int course : get(coursesByStudent, studentId)) {
+            if (course < table.length) sum += (int) CREDITS.getAcquire(table, course);
+        }
+        return sum;
+    }
+
+    public synchronized int getEnrollmentCount() {
+        return enrollments;
+    }
+
+    private static int[] get(int[][] table, int id) {
+        if (id < 0 || id >= table.length) return NONE;
+        int[] list = (int[]) ADJACENCY.getAcquire(table, id);
+        return list == null ? NONE : list;
+    }
+
+    private static int[] insert(int[] sorted, int at, int value) {
+        int[] copy = new int[sorted.length + 1];
+        System.arraycopy(sorted, 0, copy, 0, at);
+        copy[at] = value;
+        System.arraycopy(sorted, at, copy, at + 1, sorted.length - at);
+        return copy;
+    }
+
+    private static int[] delete(int[] sorted, int at) {
+        if (sorted.length == 1) return null;
+        int[] copy = new int[sorted.length - 1];
+        System.arraycopy(sorted, 0, copy, 0, at);
+        System.arraycopy(sorted, at + 1, copy, at, sorted.length - at - 1);
+        return copy;
+    }
+
+    private static int grow(int length, int id) {
+        return Math.max(id + 1, length + (length >> 1));
+    }
+
+    private static void checkId(int id) {
+        if (id <= 0) throw new IllegalArgumentException("Ids start at 1: " + id);
+    }
+}
@@ -0,0 +1,557 @@
+package edu.aitu.oop3.db;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only binary journal of registration events, written to memory-mapped segment files.
+ * <p>
+ * Each segment is a preallocated file named after the sequence number of its first record
+ * ({@code 00000000000000000001.journal}). A record is {@code [int length][int crc32c][long seq][long timeMillis]
+ * [byte type][3 x (short length, UTF-8)]}, padded to 8 bytes. The length is stored last with release semantics, so a
+ * reader that sees a non-zero length sees the whole record; a length of -1 seals a segment. When a record does not fit,
+ * the segment is sealed and the next one created; only the newest {@code retainSegments} are kept.
+ * <p>
+ * Appends copy a few dozen bytes into the mapping under a short lock; nothing is written to the database.
+ * Data in the mapping survives a process crash. The {@link FsyncPolicy} decides what survives a power loss:
+ * NONE leaves it to the OS, INTERVAL forces dirty pages every {@code fsyncIntervalMs}, ALWAYS forces each record
+ * before append returns. On open, a torn record at the end of the last segment is cut off and appending continues.
+ * Settings come from JOURNAL_DIR, JOURNAL_SEGMENT_BYTES, JOURNAL_FSYNC, JOURNAL_FSYNC_INTERVAL_MS and
+ * JOURNAL_RETAIN_SEGMENTS (see {@link #fromConfig()}).
+ */
+public class EnrollmentJournal implements AutoCloseable {
+
+    public enum FsyncPolicy { NONE, INTERVAL, ALWAYS }
+
+    public enum EventType {
+        REGISTERED(1), DROPPED(2);
+
+        final byte code;
+
+        EventType(int code) {
+            this.code = (byte) code;
+        }
+
+        static EventType of(byte code) {
+            for (EventType t : values()) if (t.code == code) return t;
+            throw new IllegalStateException("Unknown journal event type " + code);
+        }
+    }
+
+    /** {@code course} is the course code, or the course type for a course without one. */
+    public record Entry(long sequence, long timeMillis, EventType type, String studentNumber, String email, String course) {
+    }
+
+    static final String SUFFIX = ".journal";
+    private static final int MAGIC = 0x4E524A45; // "EJRN" little-endian
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER = 16; // magic, version, first sequence
+    private static final int RECORD_HEADER = 8; // length, crc
+    private static final int END_OF_SEGMENT = -1;
+    private static final int ALIGN = 8;
+    private static final int MIN_SEGMENT_BYTES = 4096;
+    private static final VarHandle LENGTH = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final ThreadLocal<ByteBuffer> SCRATCH = ThreadLocal.withInitial(() -> newScratch(256));
+    private static final ThreadLocal<CRC32C> CRC = ThreadLocal.withInitial(CRC32C::new);
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final FsyncPolicy fsync;
+    private final int retainSegments;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ScheduledExecutorService syncer;
+    // guarded by lock
+    private FileChannel channel;
+    private MappedByteBuffer segment;
+    private int position;
+    private long nextSequence;
+    private boolean dirty;
+    private boolean closed;
+    private volatile long lastSequence;
+
+    public EnrollmentJournal(Path directory, int segmentBytes, FsyncPolicy fsync, long fsyncIntervalMs, int retainSegments) throws IOException {
+        if (segmentBytes < MIN_SEGMENT_BYTES) throw new IllegalArgumentException("segmentBytes must be >= " + MIN_SEGMENT_BYTES);
+        this.directory = directory;
+        this.segmentBytes = segmentBytes & -ALIGN;
+        this.fsync = fsync;
+        this.retainSegments = retainSegments;
+        Files.createDirectories(directory);
+        recover();
+        if (fsync == FsyncPolicy.INTERVAL) {
+            syncer = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "journal-fsync");
+                t.setDaemon(true);
+                return t;
+            });
+            syncer.scheduleWithFixedDelay(this::syncQuietly, fsyncIntervalMs, fsyncIntervalMs, TimeUnit.MILLISECONDS);
+        } else {
+            syncer = null;
+        }
+    }
+
+    /**
+     * Journal configured from the environment; defaults: ./journal, 64 MB segments, fsync every second, keep 8 segments.
+     */
+    public static EnrollmentJournal fromConfig() throws IOException {
+        AppConfig config = AppConfig.getInstance();
+        return new EnrollmentJournal(Path.of(config.getJournalDir()), config.getJournalSegmentBytes(),
+                config.getJournalFsync(), config.getJournalFsyncIntervalMs(), config.getJournalRetainSegments());
+    }
+
+    public long append(DemoUsersExample.Student student, Course course) {
+        return append(EventType.REGISTERED, student.studentNumber, student.email,
+                course.getCode() != null ? course.getCode() : course.getType());
+    }
+
+    /**
+     * Appends one event and returns its sequence number. Strings may be null and are limited to 32767 UTF-8 bytes.
+     */
+    public long append(EventType type, String studentNumber, String email, String course) {
+        long t = Metrics.start();
+        // encode outside the lock; only the sequence and checksum are filled in under it
+        ByteBuffer body = encode(type, studentNumber, email, course);
+        int bodyLength = body.position();
+        int total = align(RECORD_HEADER + bodyLength);
+        if (total > segmentBytes - SEGMENT_HEADER - ALIGN) {
+            throw new IllegalArgumentException("Journal record of " + total + " bytes does not fit a segment");
+        }
+        long sequence;
+        lock.lock();
+        try {
+            if (closed) throw new IllegalStateException("Journal " + directory + " is closed");
+            // always leave room for the end-of-segment marker
+            if (position + total > segment.capacity() - ALIGN) roll();
+            sequence = nextSequence++;
+            body.putLong(0, sequence);
+            CRC32C crc = CRC.get();
+            crc.reset();
+            crc.update(body.array(), 0, bodyLength);
+            int start = position;
+            segment.put(start + RECORD_HEADER, body.array(), 0, bodyLength);
+            segment.putInt(start + 4, (int) crc.getValue());
+            LENGTH.setRelease(segment, start, bodyLength);
+            position += total;
+            lastSequence = sequence;
+            if (fsync == FsyncPolicy.ALWAYS) segment.force(start, total);
+            else dirty = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not roll journal segment in " + directory, e);
+        } finally {
+            lock.unlock();
+        }
+        Metrics.record("journal.append", t, 1);
+        return sequence;
+    }
+
+    /**
+     * Forces everything appended so far to disk.
+     */
+    public void sync() {
+        MappedByteBuffer toForce;
+        lock.lock();
+        try {
+            if (closed || !dirty) return;
+            toForce = segment;
+            dirty = false;
+        } finally {
+            lock.unlock();
+        }
+        // outside the lock so appends are not held up by the disk; a roll forces the old segment itself
+        toForce.force();
+    }
+
+    /** Sequence number of the last appended record, 0 when empty. */
+    public long getLastSequence() {
+        return lastSequence;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public FsyncPolicy getFsyncPolicy() {
+        return fsync;
+    }
+
+    /** Segment files, oldest first. */
+    public List<Path> segments() throws IOException {
+        return listSegments(directory);
+    }
+
+    /**
+     * Reader starting at the first record with sequence &gt;= {@code fromSequence} (or the oldest retained one).
+     */
+    public Reader reader(long fromSequence) {
+        return new Reader(directory, fromSequence);
+    }
+
+    /**
+     * Reader over a journal directory, with or without a writer in this process.
+     */
+    public static Reader openReader(Path directory, long fromSequence) {
+        return new Reader(directory, fromSequence);
+    }
+
+    /**
+     * Passes every record from {@code fromSequence} up to the current end to the handler; returns how many.
+     */
+    public long replay(long fromSequence, Consumer<Entry> handler) {
+        long count = 0;
+        try (Reader reader = reader(fromSequence)) {
+            Entry e;
+            while ((e = reader.next()) != null) {
+                handler.accept(e);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Stops the fsync thread and forces outstanding data unless the policy is NONE. The active segment is not sealed:
+     * reopening the directory continues appending to it.
+     */
+    @Override
+    public void close() {
+        if (syncer != null) syncer.shutdown();
+        lock.lock();
+        try {
+            if (closed) return;
+            if (fsync != FsyncPolicy.NONE && dirty) segment.force();
+            closed = true;
+            channel.close();
+        } catch (IOException e) {
+            System.out.println("Warning: could not close journal " + directory + ": " + e.getMessage());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ==================== SEGMENTS ====================
+
+    // finds the end of the newest segment; a sealed or missing one means starting a fresh segment
+    private void recover() throws IOException {
+        List<Path> existing = listSegments(directory);
+        if (existing.isEmpty()) {
+            openSegment(1);
+            return;
+        }
+        Path last = existing.get(existing.size() - 1);
+        long first = firstSequence(last);
+        if (Files.size(last) < SEGMENT_HEADER + ALIGN) {
+            // crashed while creating it
+            Files.delete(last);
+            lastSequence = first - 1;
+            openSegment(first);
+            return;
+        }
+        FileChannel ch = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, ch.size() & -ALIGN);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.getInt(0) == 0) {
+            buf.putInt(0, MAGIC);
+            buf.putInt(4, VERSION);
+            buf.putLong(8, first);
+        }
+        checkHeader(buf, last);
+        CRC32C crc = new CRC32C();
+        int pos = SEGMENT_HEADER;
+        long seq = first - 1;
+        boolean sealed = false;
+        while (pos + RECORD_HEADER <= buf.capacity()) {
+            int length = buf.getInt(pos);
+            if (length == END_OF_SEGMENT) {
+                sealed = true;
+                break;
+            }
+            Entry e = decode(buf, pos, crc);
+            if (e == null) break;
+            seq = e.sequence();
+            pos += align(RECORD_HEADER + length);
+        }
+        lastSequence = seq;
+        if (sealed) {
+            ch.close();
+            openSegment(seq + 1);
+            return;
+        }
+        // cut off a torn record (and anything after it) so readers stop at the right place
+        boolean torn = false;
+        for (int i = pos; i < buf.capacity(); i += ALIGN) {
+            if (buf.getLong(i) != 0) {
+                torn = true;
+                buf.putLong(i, 0L);
+            }
+        }
+        if (torn) {
+            buf.force();
+            System.out.println("Warning: truncated a torn record at the end of journal segment " + last.getFileName());
+        }
+        channel = ch;
+        segment = buf;
+        position = pos;
+        nextSequence = seq + 1;
+    }
+
+    private void roll() throws IOException {
+        LENGTH.setRelease(segment, position, END_OF_SEGMENT);
+        if (fsync != FsyncPolicy.NONE) segment.force();
+        channel.close();
+        openSegment(nextSequence);
+        enforceRetention();
+    }
+
+    private void openSegment(long firstSequence) throws IOException {
+        Path file = directory.resolve(String.format("%020d", firstSequence) + SUFFIX);
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, segmentBytes);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(0, MAGIC);
+        buf.putInt(4, VERSION);
+        buf.putLong(8, firstSequence);
+        channel = ch;
+        segment = buf;
+        position = SEGMENT_HEADER;
+        nextSequence = firstSequence;
+        dirty = true;
+    }
+
+    private void enforceRetention() throws IOException {
+        if (retainSegments <= 0) return;
+        List<Path> all = listSegments(directory);
+        for (int i = 0; i < all.size() - retainSegments; i++) Files.deleteIfExists(all.get(i));
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            System.out.println("Warning: journal fsync failed: " + e.getMessage());
+        }
+    }
+
+    static List<Path> listSegments(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) return List.of();
+        try (Stream<Path> files = Files.list(directory)) {
+            // fixed-width names, so name order is sequence order
+            return files.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).sorted().toList();
+        }
+    }
+
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SUFFIX.length()));
+    }
+
+    private static void checkHeader(ByteBuffer buf, Path file) {
+        if (buf.capacity() < SEGMENT_HEADER || buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) {
+            throw new IllegalStateException("Not a journal segment (or unsupported version): " + file);
+        }
+    }
+
+    // ==================== RECORD FORMAT ====================
+
+    private static ByteBuffer encode(EventType type, String studentNumber, String email, String course) {
+        byte[] a = utf8(studentNumber);
+        byte[] b = utf8(email);
+        byte[] c = utf8(course);
+        int size = 8 + 8 + 1 + 6 + length(a) + length(b) + length(c);
+        ByteBuffer buf = SCRATCH.get();
+        if (buf.capacity() < size) {
+            buf = newScratch(Integer.highestOneBit(size) << 1);
+            SCRATCH.set(buf);
+        }
+        buf.clear();
+        buf.putLong(0L); // sequence, set under the lock
+        buf.putLong(System.currentTimeMillis());
+        buf.put(type.code);
+        putString(buf, a);
+        putString(buf, b);
+        putString(buf, c);
+        return buf;
+    }
+
+    // null when there is no complete, intact record at pos
+    private static Entry decode(ByteBuffer buf, int pos, CRC32C crc) {
+        int length = (int) LENGTH.getAcquire(buf, pos);
+        if (length <= 0 || pos + RECORD_HEADER + length > buf.capacity()) return null;
+        int bodyStart = pos + RECORD_HEADER;
+        crc.reset();
+        crc.update(buf.slice(bodyStart, length));
+        if ((int) crc.getValue() != buf.getInt(pos + 4)) return null;
+        ByteBuffer body = buf.slice(bodyStart, length).order(ByteOrder.LITTLE_ENDIAN);
+        long seq = body.getLong();
+        long time = body.getLong();
+        EventType type = EventType.of(body.get());
+        return new Entry(seq, time, type, getString(body), getString(body), getString(body));
+    }
+
+    private static ByteBuffer newScratch(int capacity) {
+        return ByteBuffer.allocate(capacity).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    private static byte[] utf8(String s) {
+        if (s == null) return null;
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) throw new IllegalArgumentException("Journal field longer than " + Short.MAX_VALUE + " bytes");
+        return bytes;
+    }
+
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+
+    private static void putString(ByteBuffer buf, byte[] bytes) {
+        if (bytes == null) {
+            buf.putShort((short) -1);
+        } else {
+            buf.putShort((short) bytes.length);
+            buf.put(bytes);
+        }
+    }
+
+    private static String getString(ByteBuffer buf) {
+        short length = buf.getShort();
+        if (length < 0) return null;
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static int align(int size) {
+        return (size + ALIGN - 1) & -ALIGN;
+    }
+
+    /**
+     * Sequential reader over the segment files. {@link #next()} returns null at the current end of the journal;
+     * {@link #poll} waits for the writer, which makes the reader a tail. Not thread-safe; use one per consumer.
+     * If retention deletes segments the reader has not reached, it continues at the oldest remaining one.
+     */
+    public static final class Reader implements AutoCloseable {
+        private final Path directory;
+        private final long fromSequence;
+        private final CRC32C crc = new CRC32C();
+        private MappedByteBuffer segment;
+        private long segmentFirst;
+        private int position;
+        private long lastSequence;
+
+        Reader(Path directory, long fromSequence) {
+            this.directory = directory;
+            this.fromSequence = fromSequence;
+        }
+
+        /**
+         * Next record, or null if the writer has not appended one yet.
+         */
+        public Entry next() {
+            while (true) {
+                if (segment == null && !openFirst()) return null;
+                if (position + RECORD_HEADER > segment.capacity()) {
+                    if (!openNext()) return null;
+                    continue;
+                }
+                int length = (int) LENGTH.getAcquire(segment, position);
+                if (length == END_OF_SEGMENT) {
+                    if (!openNext()) return null;
+                    continue;
+                }
+                Entry e = decode(segment, position, crc);
+                if (e == null) return null; // not written yet, or a torn tail the writer will cut off
+                position += align(RECORD_HEADER + length);
+                lastSequence = e.sequence();
+                if (e.sequence() >= fromSequence) return e;
+            }
+        }
+
+        /**
+         * Waits up to the timeout for the next record; null on timeout.
+         */
+        public Entry poll(long timeout, TimeUnit unit) throws InterruptedException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            long backoff = 1_000;
+            while (true) {
+                Entry e = next();
+                if (e != null) return e;
+                long left = deadline - System.nanoTime();
+                if (left <= 0) return null;
+                LockSupport.parkNanos(Math.min(backoff, left));
+                if (Thread.interrupted()) throw new InterruptedException();
+                backoff = Math.min(backoff * 2, 1_000_000);
+            }
+        }
+
+        /** Sequence number of the last record read (including skipped ones), 0 before the first. */
+        public long getLastSequence() {
+            return lastSequence;
+        }
+
+        @Override
+        public void close() {
+            segment = null;
+        }
+
+        private boolean openFirst() {
+            List<Path> all = list();
+            Path start = null;
+            for (Path p : all) {
+                if (start == null || firstSequence(p) <= fromSequence) start = p;
+            }
+            return start != null && open(start);
+        }
+
+        private boolean openNext() {
+            for (Path p : list()) {
+                if (firstSequence(p) > segmentFirst) return open(p);
+            }
+            return false;
+        }
+
+        private boolean open(Path file) {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                buf.order(ByteOrder.LITTLE_ENDIAN);
+                checkHeader(buf, file);
+                segment = buf;
+                segmentFirst = firstSequence(file);
+                position = SEGMENT_HEADER;
+                return true;
+            } catch (java.nio.file.NoSuchFileException e) {
+                // deleted by retention between listing and opening
+                return false;
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not open journal segment " + file, e);
+            }
+        }
+
+        private List<Path> list() {
+            try {
+                return new ArrayList<>(listSegments(directory));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Could not list journal " + directory, e);
+            }
+        }
+    }
+}
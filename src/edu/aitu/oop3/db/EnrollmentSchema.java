@@ -0,0 +1,104 @@
+package edu.aitu.oop3.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Caches which column the enrollments table uses to reference a course.
+ * Older databases store the course code in {@code course} or {@code course_code}, newer ones {@code course_id}.
+ * The layout is probed through DatabaseMetaData once and then reused until {@link #invalidate()} is called
+ * or a statement fails because the schema changed underneath us (see {@link #withLayout}).
+ */
+public final class EnrollmentSchema {
+
+    public enum Layout {
+        COURSE("course"),
+        COURSE_CODE("course_code"),
+        COURSE_ID("course_id");
+
+        private final String column;
+
+        Layout(String column) {
+            this.column = column;
+        }
+
+        public String column() { return column; }
+
+        public boolean byId() { return this == COURSE_ID; }
+    }
+
+    @FunctionalInterface
+    public interface LayoutAction<R> {
+        R run(Layout layout) throws SQLException;
+    }
+
+    private static volatile Layout cached;
+
+    private EnrollmentSchema() {
+        // no instances
+    }
+
+    public static Layout layout(Connection connection) throws SQLException {
+        Layout layout = cached;
+        if (layout == null) {
+            synchronized (EnrollmentSchema.class) {
+                layout = cached;
+                if (layout == null) {
+                    layout = probe(connection);
+                    cached = layout;
+                }
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Drops the cached layout and probes again, e.g. after running DDL against enrollments.
+     */
+    public static Layout refresh(Connection connection) throws SQLException {
+        invalidate();
+        return layout(connection);
+    }
+
+    public static void invalidate() {
+        cached = null;
+    }
+
+    /**
+     * Runs {@code action} with the cached layout. If it fails with an undefined column/table error the cache is
+     * refreshed and, when the layout really changed, the action is retried once.
+     * Not suitable inside an explicit transaction, where the failed statement aborts the transaction.
+     */
+    public static <R> R withLayout(Connection connection, LayoutAction<R> action) throws SQLException {
+        Layout layout = layout(connection);
+        try {
+            return action.run(layout);
+        } catch (SQLException e) {
+            if (!isSchemaChange(e)) throw e;
+            Layout fresh = refresh(connection);
+            if (fresh == layout) throw e;
+            return action.run(fresh);
+        }
+    }
+
+    static boolean isSchemaChange(SQLException e) {
+        String state = e.getSQLState();
+        return "42703".equals(state) || "42P01".equals(state); // undefined_column, undefined_table
+    }
+
+    private static Layout probe(Connection connection) throws SQLException {
+        for (Layout layout : Layout.values()) {
+            // DatabaseMetaData is case-insensitive for unquoted identifiers in Postgres
+            try (ResultSet rs = connection.getMetaData().getColumns(null, null, "enrollments", layout.column())) {
+                if (rs.next()) return layout;
+            }
+        }
+        // If none found, ensure 'course' column exists and use it
+        try (PreparedStatement stmt = connection.prepareStatement("ALTER TABLE enrollments ADD COLUMN IF NOT EXISTS course VARCHAR(50);")) {
+            stmt.execute();
+        } catch (SQLException ignored) {}
+        return Layout.COURSE;
+    }
+}
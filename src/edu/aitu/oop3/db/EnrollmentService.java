@@ -1,6 +1,14 @@
 package edu.aitu.oop3.db;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
 import java.util.function.Predicate;
 
 public class EnrollmentService {
@@ -8,15 +16,146 @@ public class EnrollmentService {
     private final RegistrationService registrationService;
 
     public EnrollmentService(Repository<DemoUsersExample.Student> studentRepository, RegistrationService registrationService) {
-        this.studentRepository = studentRepository;
+        this.studentRepository = InstrumentedRepository.wrap("students", studentRepository);
         this.registrationService = registrationService;
     }
 
     public void registerAll(Predicate<DemoUsersExample.Student> predicate, Course course, RegistrationCallback callback) {
-        List<DemoUsersExample.Student> filtered = studentRepository.find(predicate);
-        filtered.forEach(s -> {
-            registrationService.register(s, course);
-            if (callback != null) callback.onRegistered(s, course);
-        });
+        String outer = Metrics.beginOperation("registerAll");
+        long t = Metrics.start();
+        try {
+            List<DemoUsersExample.Student> filtered = studentRepository.find(predicate);
+            filtered.forEach(s -> {
+                registrationService.register(s, course);
+                if (callback != null) callback.onRegistered(s, course);
+            });
+            Metrics.record("registerAll", t, filtered.size());
+        } catch (RuntimeException e) {
+            Metrics.recordError("registerAll", t);
+            throw e;
+        } finally {
+            Metrics.endOperation(outer);
+        }
+    }
+
+    /**
+     * Parallel variant of {@link #registerAll}: at most {@code maxConcurrency} registrations run at once,
+     * each on its own virtual thread when the JVM supports them (platform threads otherwise).
+     * The callback fires once per successful registration, from the worker thread, so it must be thread-safe.
+     * Exceptions from register, or from an executor that refuses a task, are collected per student instead of
+     * aborting the batch. A student whose callback throws stays registered; that error is reported on its own, so
+     * retrying the failures never registers anyone twice.
+     */
+    public RegistrationResult registerAllParallel(Predicate<DemoUsersExample.Student> predicate, Course course,
+                                                  RegistrationCallback callback, int maxConcurrency) {
+        if (maxConcurrency < 1) throw new IllegalArgumentException("maxConcurrency must be >= 1");
+        long start = System.nanoTime();
+        long metricsStart = Metrics.start();
+        List<DemoUsersExample.Student> filtered;
+        String outer = Metrics.beginOperation("registerAllParallel");
+        try {
+            filtered = studentRepository.find(predicate);
+        } finally {
+            Metrics.endOperation(outer);
+        }
+        int n = filtered.size();
+        Throwable[] outcome = new Throwable[n];
+        Throwable[] callbackOutcome = new Throwable[n];
+        Semaphore limit = new Semaphore(maxConcurrency);
+        CountDownLatch finished = new CountDownLatch(n);
+        ExecutorService executor = newRegistrationExecutor();
+        try {
+            for (int i = 0; i < n; i++) {
+                try {
+                    limit.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    // not submitted: report the rest as failed
+                    for (int j = i; j < n; j++) {
+                        outcome[j] = e;
+                        finished.countDown();
+                    }
+                    break;
+                }
+                int idx = i;
+                DemoUsersExample.Student s = filtered.get(i);
+                long submitted = Metrics.start();
+                try {
+                    executor.execute(() -> {
+                        try {
+                            long t = Metrics.start();
+                            try {
+                                registrationService.register(s, course);
+                                Metrics.record("registerAllParallel.student", t, 1);
+                            } catch (Throwable e) {
+                                outcome[idx] = e;
+                                Metrics.recordError("registerAllParallel.student", t);
+                                return;
+                            }
+                            if (callback != null) {
+                                t = Metrics.start();
+                                try {
+                                    callback.onRegistered(s, course);
+                                    Metrics.record("registerAllParallel.callback", t, 1);
+                                } catch (Throwable e) {
+                                    callbackOutcome[idx] = e;
+                                    Metrics.recordError("registerAllParallel.callback", t);
+                                }
+                            }
+                        } finally {
+                            limit.release();
+                            finished.countDown();
+                        }
+                    });
+                } catch (RuntimeException | Error e) {
+                    // never started (rejected, or no thread could be created): the task cannot release or count down
+                    outcome[idx] = e;
+                    Metrics.recordError("registerAllParallel.student", submitted);
+                    limit.release();
+                    finished.countDown();
+                }
+            }
+            awaitUninterruptibly(finished);
+        } finally {
+            executor.shutdown();
+        }
+
+        List<DemoUsersExample.Student> registered = new ArrayList<>();
+        Map<DemoUsersExample.Student, Throwable> failures = new LinkedHashMap<>();
+        Map<DemoUsersExample.Student, Throwable> callbackFailures = new LinkedHashMap<>();
+        for (int i = 0; i < n; i++) {
+            if (outcome[i] == null) registered.add(filtered.get(i));
+            else failures.put(filtered.get(i), outcome[i]);
+            if (callbackOutcome[i] != null) callbackFailures.put(filtered.get(i), callbackOutcome[i]);
+        }
+        // the batch itself completed; failed students are counted under registerAllParallel.student
+        Metrics.record("registerAllParallel", metricsStart, registered.size());
+        return new RegistrationResult(registered, failures, callbackFailures, Duration.ofNanos(System.nanoTime() - start));
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) Thread.currentThread().interrupt();
+    }
+
+    // Virtual threads need Java 21; look the factory up reflectively so the project still builds on 17.
+    private static ExecutorService newRegistrationExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newCachedThreadPool(r -> {
+                Thread t = new Thread(r, "registration-worker");
+                t.setDaemon(true);
+                return t;
+            });
+        }
     }
 }
@@ -0,0 +1,18 @@
+package edu.aitu.oop3.db;
+
+import java.util.function.Function;
+
+/**
+ * A named property of T used in {@link Query} conditions. The name is the column in SQL and the index name in
+ * {@link InMemoryRepository}; the getter evaluates the same property in Java.
+ */
+public record Field<T, V>(String name, Function<T, V> getter) {
+
+    public static <T, V> Field<T, V> of(String name, Function<T, V> getter) {
+        return new Field<>(name, getter);
+    }
+
+    public V get(T item) {
+        return getter.apply(item);
+    }
+}
@@ -0,0 +1,45 @@
+package edu.aitu.oop3.db;
+
+import java.time.Duration;
+
+/**
+ * Counters for one {@link BulkImporter} run.
+ * Skipped rows were well-formed but not inserted: a unique-key conflict ({@code ON CONFLICT DO NOTHING})
+ * or, for enrollments, an unknown student email or course code.
+ */
+public class ImportReport {
+    private final String table;
+    private final boolean usedCopy;
+    private final long rowsRead;
+    private final long rowsAccepted;
+    private final long rowsMalformed;
+    private final int batches;
+    private final Duration elapsed;
+
+    public ImportReport(String table, boolean usedCopy, long rowsRead, long rowsAccepted,
+                        long rowsMalformed, int batches, Duration elapsed) {
+        this.table = table;
+        this.usedCopy = usedCopy;
+        this.rowsRead = rowsRead;
+        this.rowsAccepted = rowsAccepted;
+        this.rowsMalformed = rowsMalformed;
+        this.batches = batches;
+        this.elapsed = elapsed;
+    }
+
+    public String getTable() { return table; }
+    public boolean isUsedCopy() { return usedCopy; }
+    public long getRowsRead() { return rowsRead; }
+    public long getRowsAccepted() { return rowsAccepted; }
+    public long getRowsSkipped() { return rowsRead - rowsMalformed - rowsAccepted; }
+    public long getRowsMalformed() { return rowsMalformed; }
+    public int getBatches() { return batches; }
+    public Duration getElapsed() { return elapsed; }
+
+    @Override
+    public String toString() {
+        return String.format("%s: %d read, %d accepted, %d skipped, %d malformed in %d batches (%s) in %d ms",
+                table, rowsRead, rowsAccepted, getRowsSkipped(), rowsMalformed, batches,
+                usedCopy ? "COPY" : "multi-row INSERT", elapsed.toMillis());
+    }
+}
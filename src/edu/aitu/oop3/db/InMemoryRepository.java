@@ -1,45 +1,444 @@
 package edu.aitu.oop3.db;
 
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.stream.Stream;
 
+/**
+ * Thread-safe in-memory repository. Reads never lock: they walk a concurrent skip list kept in
+ * insertion order, and findAll() hands out an immutable snapshot that is reused until the next write.
+ * Writers are serialised by a lock so storage and indexes change together.
+ * An item that is already stored (by equals) is not stored a second time.
+ * <p>
+ * A {@link Query} is answered from the hash index named after its field when it has one: equality and in-list
+ * conditions, and conjunctions containing one, look up candidates instead of scanning all items. Prefix and range
+ * conditions on a field with a sorted index seek to the first key and read on from there; those results come back
+ * in key order rather than insertion order.
+ */
 public class InMemoryRepository<T> implements Repository<T> {
-    private final List<T> storage = Collections.synchronizedList(new ArrayList<>());
+    private final ConcurrentSkipListMap<Long, T> storage = new ConcurrentSkipListMap<>();
+    private final Map<T, Long> positions = new ConcurrentHashMap<>();
+    private final Map<String, KeyIndex<T>> indexes = new ConcurrentHashMap<>();
+    private final Map<String, SortedIndex<T>> sortedIndexes = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final AtomicLong sequence = new AtomicLong();
+    private final AtomicLong version = new AtomicLong();
+    private volatile Snapshot<T> snapshot;
+
+    /**
+     * Registers a hash index whose keys must be unique, e.g. {@code addUniqueIndex("email", s -> s.email)}.
+     * Null keys are not indexed. Existing items are indexed immediately; if two of them share a key,
+     * IllegalStateException is thrown and no index is added.
+     * Keys are read on save, so an item whose key field changes must be deleted and saved again.
+     */
+    public void addUniqueIndex(String name, Function<T, ?> keyExtractor) {
+        addIndex(name, keyExtractor, true);
+    }
+
+    /**
+     * Registers a hash index that allows several items per key.
+     */
+    public void addIndex(String name, Function<T, ?> keyExtractor) {
+        addIndex(name, keyExtractor, false);
+    }
+
+    /**
+     * Unique index named after the field, used by {@link Query} conditions on it.
+     */
+    public void addUniqueIndex(Field<T, ?> field) {
+        addIndex(field.name(), field.getter(), true);
+    }
+
+    public void addIndex(Field<T, ?> field) {
+        addIndex(field.name(), field.getter(), false);
+    }
+
+    /**
+     * Registers a sorted index, e.g. {@code addSortedIndex("student_number", s -> s.studentNumber)}, which serves
+     * prefix, range and equality conditions of a {@link Query} on the field of that name. Null keys are not indexed.
+     */
+    public void addSortedIndex(String name, Function<T, ? extends Comparable<?>> keyExtractor) {
+        writeLock.lock();
+        try {
+            if (sortedIndexes.containsKey(name)) throw new IllegalArgumentException("Sorted index already exists: " + name);
+            SortedIndex<T> index = new SortedIndex<>(keyExtractor);
+            for (Map.Entry<Long, T> e : storage.entrySet()) index.add(e.getValue(), e.getKey());
+            sortedIndexes.put(name, index);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    public <V extends Comparable<? super V>> void addSortedIndex(Field<T, V> field) {
+        addSortedIndex(field.name(), field.getter());
+    }
+
+    private void addIndex(String name, Function<T, ?> keyExtractor, boolean unique) {
+        writeLock.lock();
+        try {
+            if (indexes.containsKey(name)) throw new IllegalArgumentException("Index already exists: " + name);
+            KeyIndex<T> index = new KeyIndex<>(name, keyExtractor, unique);
+            // checked against the items indexed so far, so duplicates among stored items are caught; the index is
+            // only published once every item is in
+            for (Map.Entry<Long, T> e : storage.entrySet()) {
+                index.checkUnique(e.getValue());
+                index.add(e.getValue(), e.getKey());
+            }
+            indexes.put(name, index);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Returns a predicate matching items whose indexed key equals {@code key}.
+     * {@link #find} and {@link #findFirst} answer it from the index instead of scanning.
+     */
+    public Predicate<T> keyEquals(String indexName, Object key) {
+        KeyIndex<T> index = indexes.get(indexName);
+        if (index == null) throw new IllegalArgumentException("No such index: " + indexName);
+        return new KeyLookup<>(index, key);
+    }
+
+    public List<T> findBy(String indexName, Object key) {
+        return find(keyEquals(indexName, key));
+    }
+
+    public Optional<T> findFirstBy(String indexName, Object key) {
+        return findFirst(keyEquals(indexName, key));
+    }
+
+    public int size() {
+        return positions.size();
+    }
+
+    /** Incremented by every write; equal versions mean equal contents. */
+    public long getVersion() {
+        return version.get();
+    }
 
     @Override
     public void save(T item) {
-        storage.add(item);
+        Objects.requireNonNull(item, "item");
+        writeLock.lock();
+        try {
+            insert(item);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Saves items in order under one lock acquisition, e.g. for bulk loads.
+     * Like repeated {@link #save}, items before one that violates a unique index stay saved.
+     */
+    public void saveAll(Collection<? extends T> items) {
+        writeLock.lock();
+        try {
+            for (T item : items) insert(Objects.requireNonNull(item, "item"));
+        } finally {
+            writeLock.unlock();
+        }
     }
 
     @Override
     public List<T> findAll() {
-        synchronized (storage) {
-            return new ArrayList<>(storage);
-        }
+        long v = version.get();
+        Snapshot<T> s = snapshot;
+        if (s != null && s.version == v) return s.items;
+        List<T> items = List.copyOf(storage.values());
+        snapshot = new Snapshot<>(v, items);
+        return items;
     }
 
     @Override
     public List<T> find(Predicate<T> predicate) {
+        if (predicate instanceof Query<T> query) return find(query);
+        List<T> hits = indexHits(predicate);
+        if (hits != null) return new ArrayList<>(hits);
         List<T> result = new ArrayList<>();
-        synchronized (storage) {
-            for (T t : storage) if (predicate.test(t)) result.add(t);
-        }
+        for (T t : storage.values()) if (predicate.test(t)) result.add(t);
         return result;
     }
 
     @Override
     public Optional<T> findFirst(Predicate<T> predicate) {
-        synchronized (storage) {
-            for (T t : storage) if (predicate.test(t)) return Optional.of(t);
+        if (predicate instanceof Query<T> query) {
+            List<T> first = find(query.limit(1));
+            return first.isEmpty() ? Optional.empty() : Optional.of(first.get(0));
         }
+        List<T> hits = indexHits(predicate);
+        if (hits != null) return hits.isEmpty() ? Optional.empty() : Optional.of(hits.get(0));
+        for (T t : storage.values()) if (predicate.test(t)) return Optional.of(t);
         return Optional.empty();
     }
 
+    /**
+     * Evaluates the query from an index when one covers it, otherwise by scanning in insertion order.
+     * Unordered queries stop scanning once the limit is reached.
+     */
+    public List<T> find(Query<T> query) {
+        Collection<T> candidates = candidates(query.where());
+        int stopAt = query.isOrdered() ? Integer.MAX_VALUE : query.getLimit();
+        List<T> result = new ArrayList<>();
+        for (T t : candidates != null ? candidates : storage.values()) {
+            if (result.size() >= stopAt) break;
+            if (query.test(t)) result.add(t);
+        }
+        return query.order(result);
+    }
+
+    /**
+     * Lazy form of {@link #find(Query)}: items are read as the stream is consumed, straight off an index or the
+     * storage, so a short-circuiting consumer stops the walk. Like iteration over the storage it is weakly
+     * consistent under concurrent writes. Ordered queries are sorted up front.
+     */
+    public Stream<T> stream(Query<T> query) {
+        if (query.isOrdered()) return find(query).stream();
+        Collection<T> candidates = candidates(query.where());
+        Stream<T> items = (candidates != null ? candidates : storage.values()).stream().filter(query);
+        return query.hasLimit() ? items.limit(query.getLimit()) : items;
+    }
+
     @Override
     public void delete(T item) {
-        storage.remove(item);
+        writeLock.lock();
+        try {
+            Long seq = positions.remove(item);
+            if (seq == null) return;
+            T stored = storage.remove(seq);
+            for (KeyIndex<T> index : indexes.values()) index.remove(stored, seq);
+            for (SortedIndex<T> index : sortedIndexes.values()) index.remove(seq);
+            version.incrementAndGet();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void insert(T item) {
+        if (positions.containsKey(item)) return;
+        for (KeyIndex<T> index : indexes.values()) index.checkUnique(item);
+        long seq = sequence.incrementAndGet();
+        storage.put(seq, item);
+        positions.put(item, seq);
+        for (KeyIndex<T> index : indexes.values()) index.add(item, seq);
+        for (SortedIndex<T> index : sortedIndexes.values()) index.add(item, seq);
+        version.incrementAndGet();
+    }
+
+    // null when the predicate cannot be served by one of this repository's indexes
+    private List<T> indexHits(Predicate<T> predicate) {
+        if (predicate instanceof KeyLookup<T> lookup && lookup.key != null && indexes.get(lookup.index.name) == lookup.index) {
+            return lookup.index.get(lookup.key);
+        }
+        return null;
+    }
+
+    // superset of the matches, or null when no index narrows the condition down; hash lookups come back as lists
+    // in insertion order, sorted index ranges as lazy views in key order
+    private Collection<T> candidates(Query.Condition<T> condition) {
+        if (condition instanceof Query.Eq<T> eq) {
+            if (eq.value() == null) return null;
+            KeyIndex<T> index = indexes.get(eq.field().name());
+            if (index != null) return index.get(eq.value());
+            SortedIndex<T> sorted = sortedIndexes.get(eq.field().name());
+            return sorted == null ? null : sorted.range(eq.value(), true, eq.value(), true);
+        } else if (condition instanceof Query.In<T> in) {
+            KeyIndex<T> index = indexes.get(in.field().name());
+            if (index == null) return null;
+            List<Collection<T>> buckets = new ArrayList<>();
+            for (Object key : in.values()) buckets.add(index.get(key));
+            return union(buckets);
+        } else if (condition instanceof Query.Prefix<T> prefix) {
+            SortedIndex<T> sorted = sortedIndexes.get(prefix.field().name());
+            return sorted == null ? null : sorted.prefix(prefix.prefix());
+        } else if (condition instanceof Query.Range<T, ?> range) {
+            SortedIndex<T> sorted = sortedIndexes.get(range.field().name());
+            return sorted == null ? null : sorted.range(range.from(), range.fromInclusive(), range.to(), range.toInclusive());
+        } else if (condition instanceof Query.And<T> and) {
+            // drive from the smallest hash lookup, else from a sorted range (its size is unknown without walking it);
+            // the full condition is re-checked on every candidate
+            Collection<T> best = null;
+            for (Query.Condition<T> part : and.parts()) {
+                Collection<T> hits = candidates(part);
+                if (hits == null) continue;
+                if (best == null || (hits instanceof List && (!(best instanceof List) || hits.size() < best.size()))) best = hits;
+            }
+            return best;
+        } else if (condition instanceof Query.Or<T> or) {
+            List<Collection<T>> buckets = new ArrayList<>();
+            for (Query.Condition<T> part : or.parts()) {
+                Collection<T> hits = candidates(part);
+                if (hits == null) return null;
+                buckets.add(hits);
+            }
+            return union(buckets);
+        }
+        return null;
+    }
+
+    private Collection<T> union(List<Collection<T>> buckets) {
+        if (buckets.size() == 1) return buckets.get(0);
+        TreeMap<Long, T> merged = new TreeMap<>();
+        for (Collection<T> bucket : buckets) {
+            for (T t : bucket) {
+                Long seq = positions.get(t);
+                if (seq != null) merged.put(seq, t);
+            }
+        }
+        return new ArrayList<>(merged.values());
+    }
+
+    private record Snapshot<T>(long version, List<T> items) {
+    }
+
+    private static final class KeyIndex<T> {
+        final String name;
+        final Function<T, ?> extractor;
+        final boolean unique;
+        // buckets are immutable lists swapped by writers, so readers never see one mid-update
+        final Map<Object, List<T>> entries = new ConcurrentHashMap<>();
+        // key each item was indexed under, by sequence, for removal in case the item changed since; writers only
+        final Map<Long, Object> keys = new HashMap<>();
+
+        KeyIndex(String name, Function<T, ?> extractor, boolean unique) {
+            this.name = name;
+            this.extractor = extractor;
+            this.unique = unique;
+        }
+
+        void checkUnique(T item) {
+            Object key = extractor.apply(item);
+            if (unique && key != null && entries.containsKey(key)) {
+                throw new IllegalStateException("Duplicate key '" + key + "' for unique index " + name);
+            }
+        }
+
+        void add(T item, long seq) {
+            Object key = extractor.apply(item);
+            if (key == null) return;
+            keys.put(seq, key);
+            entries.compute(key, (k, bucket) -> {
+                if (bucket == null) return List.of(item);
+                List<T> copy = new ArrayList<>(bucket.size() + 1);
+                copy.addAll(bucket);
+                copy.add(item);
+                return List.copyOf(copy);
+            });
+        }
+
+        void remove(T item, long seq) {
+            Object key = keys.remove(seq);
+            if (key == null) return;
+            entries.computeIfPresent(key, (k, bucket) -> {
+                List<T> copy = new ArrayList<>(bucket);
+                copy.remove(item);
+                return copy.isEmpty() ? null : List.copyOf(copy);
+            });
+        }
+
+        List<T> get(Object key) {
+            return entries.getOrDefault(key, List.of());
+        }
+    }
+
+    /**
+     * Skip list ordered by key, then by insertion sequence so equal keys keep their order. Ranges are views of the
+     * list: finding the first key is a logarithmic seek, the rest a walk along the bottom level.
+     */
+    private static final class SortedIndex<T> {
+        private record Entry(Comparable<Object> key, long seq) implements Comparable<Entry> {
+            @Override
+            public int compareTo(Entry o) {
+                int c = key.compareTo(o.key);
+                return c != 0 ? c : Long.compare(seq, o.seq);
+            }
+        }
+
+        final Function<T, ? extends Comparable<?>> extractor;
+        final ConcurrentSkipListMap<Entry, T> entries = new ConcurrentSkipListMap<>();
+        // entry of each indexed item, by sequence, so removal does not depend on the item's current key; writers only
+        final Map<Long, Entry> bySeq = new HashMap<>();
+        // class of the first key indexed; bounds of another class cannot be compared with the keys
+        volatile Class<?> keyClass;
+
+        SortedIndex(Function<T, ? extends Comparable<?>> extractor) {
+            this.extractor = extractor;
+        }
+
+        void add(T item, long seq) {
+            Comparable<Object> key = key(item);
+            if (key == null) return;
+            if (keyClass == null) keyClass = key.getClass();
+            Entry entry = new Entry(key, seq);
+            bySeq.put(seq, entry);
+            entries.put(entry, item);
+        }
+
+        void remove(long seq) {
+            Entry entry = bySeq.remove(seq);
+            if (entry != null) entries.remove(entry);
+        }
+
+        // null bound = open on that side; returns null for a bound that is not a key, so the caller scans instead
+        Collection<T> range(Object from, boolean fromInclusive, Object to, boolean toInclusive) {
+            if (!comparesWithKeys(from) || !comparesWithKeys(to)) return null;
+            NavigableMap<Entry, T> view = entries;
+            if (from != null) view = view.tailMap(new Entry(comparable(from), fromInclusive ? Long.MIN_VALUE : Long.MAX_VALUE), true);
+            if (to != null) view = view.headMap(new Entry(comparable(to), toInclusive ? Long.MAX_VALUE : Long.MIN_VALUE), true);
+            return view.values();
+        }
+
+        // [prefix, next string after every string starting with prefix)
+        Collection<T> prefix(String prefix) {
+            int end = prefix.length();
+            while (end > 0 && prefix.charAt(end - 1) == Character.MAX_VALUE) end--;
+            if (end == 0) return range(prefix, true, null, false);
+            String upper = prefix.substring(0, end - 1) + (char) (prefix.charAt(end - 1) + 1);
+            return range(prefix, true, upper, false);
+        }
+
+        private boolean comparesWithKeys(Object bound) {
+            Class<?> c = keyClass;
+            return bound == null || (c == null ? bound instanceof Comparable : c.isInstance(bound));
+        }
+
+        @SuppressWarnings("unchecked")
+        private Comparable<Object> key(T item) {
+            return (Comparable<Object>) extractor.apply(item);
+        }
+
+        @SuppressWarnings("unchecked")
+        private static Comparable<Object> comparable(Object key) {
+            return (Comparable<Object>) key;
+        }
+    }
+
+    private static final class KeyLookup<T> implements Predicate<T> {
+        final KeyIndex<T> index;
+        final Object key;
+
+        KeyLookup(KeyIndex<T> index, Object key) {
+            this.index = index;
+            this.key = key;
+        }
+
+        @Override
+        public boolean test(T t) {
+            return key != null && key.equals(index.extractor.apply(t));
+        }
     }
 }
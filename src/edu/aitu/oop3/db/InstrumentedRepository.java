@@ -0,0 +1,115 @@
+package edu.aitu.oop3.db;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Predicate;
+
+/**
+ * Repository decorator that records every call in {@link Metrics} as "repo.&lt;name&gt;.&lt;method&gt;".
+ * Rows are the number of items returned (or 1 for save/delete). Each call is also the current logical operation,
+ * so a connection the delegate borrows is timed as e.g. "repo.students.find.pool.wait".
+ */
+public class InstrumentedRepository<T> implements Repository<T> {
+    private final Repository<T> delegate;
+    // operation names built once, so a call with metrics off allocates nothing
+    private final String saveOp, findAllOp, findOp, findFirstOp, deleteOp;
+
+    public InstrumentedRepository(String name, Repository<T> delegate) {
+        this.delegate = delegate;
+        String prefix = "repo." + name + ".";
+        this.saveOp = prefix + "save";
+        this.findAllOp = prefix + "findAll";
+        this.findOp = prefix + "find";
+        this.findFirstOp = prefix + "findFirst";
+        this.deleteOp = prefix + "delete";
+    }
+
+    /**
+     * The repository wrapped, or itself if it is already instrumented.
+     */
+    public static <T> Repository<T> wrap(String name, Repository<T> repository) {
+        return repository instanceof InstrumentedRepository<T> ? repository : new InstrumentedRepository<>(name, repository);
+    }
+
+    @Override
+    public void save(T item) {
+        String outer = Metrics.beginOperation(saveOp);
+        long t = Metrics.start();
+        try {
+            delegate.save(item);
+            Metrics.record(saveOp, t, 1);
+        } catch (RuntimeException e) {
+            Metrics.recordError(saveOp, t);
+            throw e;
+        } finally {
+            Metrics.endOperation(outer);
+        }
+    }
+
+    @Override
+    public List<T> findAll() {
+        String outer = Metrics.beginOperation(findAllOp);
+        long t = Metrics.start();
+        try {
+            List<T> result = delegate.findAll();
+            Metrics.record(findAllOp, t, result.size());
+            return result;
+        } catch (RuntimeException e) {
+            Metrics.recordError(findAllOp, t);
+            throw e;
+        } finally {
+            Metrics.endOperation(outer);
+        }
+    }
+
+    @Override
+    public List<T> find(Predicate<T> predicate) {
+        String outer = Metrics.beginOperation(findOp);
+        long t = Metrics.start();
+        try {
+            List<T> result = delegate.find(predicate);
+            Metrics.record(findOp, t, result.size());
+            return result;
+        } catch (RuntimeException e) {
+            Metrics.recordError(findOp, t);
+            throw e;
+        } finally {
+            Metrics.endOperation(outer);
+        }
+    }
+
+    @Override
+    public Optional<T> findFirst(Predicate<T> predicate) {
+        String outer = Metrics.beginOperation(findFirstOp);
+        long t = Metrics.start();
+        try {
+            Optional<T> result = delegate.findFirst(predicate);
+            Metrics.record(findFirstOp, t, result.isPresent() ? 1 : 0);
+            return result;
+        } catch (RuntimeException e) {
+            Metrics.recordError(findFirstOp, t);
+            throw e;
+        } finally {
+            Metrics.endOperation(outer);
+        }
+    }
+
+    @Override
+    public void delete(T item) {
+        String outer = Metrics.beginOperation(deleteOp);
+        long t = Metrics.start();
+        try {
+            delegate.delete(item);
+            Metrics.record(deleteOp, t, 1);
+        } catch (RuntimeException e) {
+            Metrics.recordError(deleteOp, t);
+            throw e;
+        } finally {
+            Metrics.endOperation(outer);
+        }
+    }
+
+    public Repository<T> getDelegate() {
+        return delegate;
+    }
+}
@@ -0,0 +1,379 @@
+package edu.aitu.oop3.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Repository persisted in a database table described by a {@link TableMapping}. Saves are upserts on the key column.
+ * <p>
+ * In write-behind mode ({@code batchSize > 0}) save and delete only record the change; changes are coalesced per key
+ * and written as JDBC batches in one transaction when {@code batchSize} changes are pending or every
+ * {@code flushIntervalMs}, whichever comes first. Reads flush first, so callers always see their own writes.
+ * A JVM shutdown hook flushes whatever is still pending; a failed flush keeps the changes for the next attempt.
+ * <p>
+ * A {@link Query} whose fields are all mapped columns is translated into a parameterised WHERE / ORDER BY / LIMIT,
+ * so filtering happens in the database. Any other predicate is evaluated in Java over a streamed scan of the table
+ * (one query, rows fetched in chunks).
+ * Repository methods cannot throw SQLException, so database errors surface as IllegalStateException.
+ */
+public class JdbcRepository<T> implements Repository<T>, AutoCloseable {
+
+    private record PendingWrite<T>(T item, boolean delete) {
+    }
+
+    private final TableMapping<T> mapping;
+    private final ConnectionPool.ConnectionFactory connections;
+    private final int batchSize;
+    private final int fetchSize;
+    private final String upsertSql;
+    private final String deleteSql;
+    private final String metricsPrefix;
+
+    // coalesced pending writes by key, in first-touched order
+    private final Map<Object, PendingWrite<T>> pending = new LinkedHashMap<>();
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final ScheduledExecutorService flusher;
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private final Thread shutdownHook;
+    private volatile boolean closed;
+
+    /**
+     * Write-through repository: every save and delete is its own statement.
+     */
+    public JdbcRepository(TableMapping<T> mapping) {
+        this(mapping, DatabaseConnection::getConnection, 0, 0);
+    }
+
+    public JdbcRepository(TableMapping<T> mapping, ConnectionPool.ConnectionFactory connections, int batchSize, long flushIntervalMs) {
+        mapping.validate();
+        this.mapping = mapping;
+        this.connections = connections;
+        this.batchSize = batchSize;
+        this.fetchSize = AppConfig.getInstance().getFetchSize();
+        this.upsertSql = mapping.upsertSql();
+        this.deleteSql = mapping.deleteSql();
+        this.metricsPrefix = "jdbcRepo." + mapping.getTable() + ".";
+        if (batchSize > 0) {
+            flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "write-behind-" + mapping.getTable());
+                t.setDaemon(true);
+                return t;
+            });
+            if (flushIntervalMs > 0) {
+                flusher.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+            }
+            shutdownHook = new Thread(this::flushQuietly, "write-behind-shutdown-" + mapping.getTable());
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        } else {
+            flusher = null;
+            shutdownHook = null;
+        }
+    }
+
+    /**
+     * Write-behind repository over {@link DatabaseConnection}.
+     */
+    public static <T> JdbcRepository<T> writeBehind(TableMapping<T> mapping, int batchSize, long flushIntervalMs) {
+        return new JdbcRepository<>(mapping, DatabaseConnection::getConnection, batchSize, flushIntervalMs);
+    }
+
+    @Override
+    public void save(T item) {
+        write(new PendingWrite<>(Objects.requireNonNull(item), false));
+    }
+
+    @Override
+    public void delete(T item) {
+        write(new PendingWrite<>(Objects.requireNonNull(item), true));
+    }
+
+    @Override
+    public List<T> findAll() {
+        return scan(t -> true, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<T> find(Predicate<T> predicate) {
+        if (predicate instanceof Query<T> query) return find(query);
+        return scan(predicate, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public Optional<T> findFirst(Predicate<T> predicate) {
+        List<T> first = predicate instanceof Query<T> query ? find(query.limit(1)) : scan(predicate, 1);
+        return first.isEmpty() ? Optional.empty() : Optional.of(first.get(0));
+    }
+
+    /**
+     * Runs the query in the database when every field it uses is a mapped column; otherwise filters in Java.
+     */
+    public List<T> find(Query<T> query) {
+        for (String name : query.fieldNames()) {
+            if (!mapping.hasColumn(name)) {
+                // e.g. a computed field: fall back to a scan, then order and limit in Java
+                return query.order(scan(query, query.isOrdered() ? Integer.MAX_VALUE : query.getLimit()));
+            }
+        }
+        List<Object> params = new ArrayList<>();
+        String where = whereSql(query.where(), params);
+        String order = null;
+        if (query.isOrdered()) {
+            List<String> parts = new ArrayList<>();
+            for (Query.Order<T> o : query.orderBy()) parts.add(o.field().name() + (o.ascending() ? " ASC" : " DESC") + " NULLS LAST");
+            order = String.join(", ", parts);
+        }
+        if (query.hasLimit()) params.add(query.getLimit());
+        return select(mapping.selectSql(where, order, query.hasLimit()), params);
+    }
+
+    public boolean isWriteBehind() {
+        return batchSize > 0;
+    }
+
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * Writes all pending changes in one transaction. On failure they stay pending and the exception is rethrown.
+     */
+    public void flush() throws SQLException {
+        flushLock.lock();
+        try {
+            List<PendingWrite<T>> batch;
+            synchronized (pending) {
+                if (pending.isEmpty()) return;
+                batch = new ArrayList<>(pending.values());
+                pending.clear();
+            }
+            try {
+                writeBatch(batch);
+            } catch (SQLException | RuntimeException e) {
+                requeue(batch);
+                throw e;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Flushes, stops the background flusher and removes the shutdown hook.
+     */
+    @Override
+    public void close() throws SQLException {
+        if (closed) return;
+        closed = true;
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException ignored) {
+                // already shutting down; the hook is running or has run
+            }
+        }
+        flush();
+    }
+
+    // ==================== WRITES ====================
+
+    private void write(PendingWrite<T> write) {
+        if (closed) throw new IllegalStateException("Repository for " + mapping.getTable() + " is closed");
+        if (batchSize <= 0) {
+            try {
+                writeBatch(List.of(write));
+            } catch (SQLException e) {
+                throw new IllegalStateException("Could not write to " + mapping.getTable() + ": " + e.getMessage(), e);
+            }
+            return;
+        }
+        int size;
+        synchronized (pending) {
+            Object key = mapping.keyOf(write.item());
+            // a later change to the same key replaces the earlier one but keeps its place
+            pending.put(key, write);
+            size = pending.size();
+        }
+        if (size >= 4 * batchSize) {
+            // the flusher is falling behind (or the database is down): make the writer wait
+            flushOrThrow();
+        } else if (size >= batchSize && flushScheduled.compareAndSet(false, true)) {
+            flusher.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    // deletes go first, so a row deleted and another saved with the same unique value in one batch do not collide
+    private void writeBatch(List<PendingWrite<T>> batch) throws SQLException {
+        long t = Metrics.start();
+        try (Connection connection = connections.open()) {
+            StatementCache statements = StatementCache.forConnection(connection);
+            boolean autoCommit = connection.getAutoCommit();
+            if (autoCommit && batch.size() > 1) connection.setAutoCommit(false);
+            try {
+                PreparedStatement delete = null;
+                PreparedStatement upsert = null;
+                for (PendingWrite<T> w : batch) {
+                    if (!w.delete()) continue;
+                    if (delete == null) delete = statements.prepare(deleteSql);
+                    delete.setObject(1, mapping.keyOf(w.item()));
+                    delete.addBatch();
+                }
+                if (delete != null) delete.executeBatch();
+                for (PendingWrite<T> w : batch) {
+                    if (w.delete()) continue;
+                    if (upsert == null) upsert = statements.prepare(upsertSql);
+                    for (int i = 0; i < mapping.getColumns().size(); i++) upsert.setObject(i + 1, mapping.valueOf(w.item(), i));
+                    upsert.addBatch();
+                }
+                if (upsert != null) upsert.executeBatch();
+                if (!connection.getAutoCommit()) connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                if (!connection.getAutoCommit()) connection.rollback();
+                throw e;
+            } finally {
+                if (autoCommit && !connection.getAutoCommit()) connection.setAutoCommit(true);
+                if (!StatementCache.isShared(connection)) statements.close();
+            }
+            Metrics.record(metricsPrefix + "write", t, batch.size());
+        } catch (SQLException | RuntimeException e) {
+            Metrics.recordError(metricsPrefix + "write", t);
+            throw e;
+        }
+    }
+
+    // failed changes go back unless the key was written again meanwhile
+    private void requeue(List<PendingWrite<T>> batch) {
+        synchronized (pending) {
+            Map<Object, PendingWrite<T>> newer = new LinkedHashMap<>(pending);
+            pending.clear();
+            for (PendingWrite<T> w : batch) pending.put(mapping.keyOf(w.item()), w);
+            pending.putAll(newer);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (SQLException | RuntimeException e) {
+            System.out.println("Warning: write-behind flush to " + mapping.getTable() + " failed, "
+                    + getPendingCount() + " changes kept: " + e.getMessage());
+        }
+    }
+
+    private void flushOrThrow() {
+        try {
+            flush();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Could not flush to " + mapping.getTable() + ": " + e.getMessage(), e);
+        }
+    }
+
+    // ==================== READS ====================
+
+    private List<T> scan(Predicate<T> predicate, int limit) {
+        return read(mapping.selectSql(), List.of(), predicate, limit, "scan");
+    }
+
+    private List<T> select(String sql, List<Object> params) {
+        return read(sql, params, t -> true, Integer.MAX_VALUE, "query");
+    }
+
+    private List<T> read(String sql, List<Object> params, Predicate<T> predicate, int limit, String metric) {
+        if (batchSize > 0) flushOrThrow();
+        long t = Metrics.start();
+        List<T> result = new ArrayList<>();
+        try (Connection connection = connections.open()) {
+            StatementCache statements = StatementCache.forConnection(connection);
+            boolean switchAutoCommit = connection.getAutoCommit();
+            if (switchAutoCommit) connection.setAutoCommit(false);
+            try {
+                PreparedStatement stmt = statements.prepare(sql);
+                for (int i = 0; i < params.size(); i++) stmt.setObject(i + 1, params.get(i));
+                stmt.setFetchSize(fetchSize);
+                try (RowCursor<T> rows = new RowCursor<>(connection, stmt.executeQuery(), mapping.getMapper(), switchAutoCommit)) {
+                    T row;
+                    while (result.size() < limit && (row = rows.next()) != null) {
+                        if (predicate.test(row)) result.add(row);
+                    }
+                }
+            } finally {
+                // the cursor restores autocommit on close; this covers a failed executeQuery
+                if (switchAutoCommit && !connection.getAutoCommit()) {
+                    connection.rollback();
+                    connection.setAutoCommit(true);
+                }
+                if (!StatementCache.isShared(connection)) statements.close();
+            }
+            Metrics.record(metricsPrefix + metric, t, result.size());
+            return result;
+        } catch (SQLException e) {
+            Metrics.recordError(metricsPrefix + metric, t);
+            throw new IllegalStateException("Could not read " + mapping.getTable() + ": " + e.getMessage(), e);
+        }
+    }
+
+    // column names come from the mapping (checked by the caller); every value is a bind parameter
+    private String whereSql(Query.Condition<T> condition, List<Object> params) {
+        if (condition instanceof Query.All<T>) {
+            return "1 = 1";
+        } else if (condition instanceof Query.Eq<T> eq) {
+            if (eq.value() == null) return eq.field().name() + " IS NULL";
+            params.add(eq.value());
+            return eq.field().name() + " = ?";
+        } else if (condition instanceof Query.Prefix<T> prefix) {
+            params.add(escapeLike(prefix.prefix()) + "%");
+            return prefix.field().name() + " LIKE ? ESCAPE '\\'";
+        } else if (condition instanceof Query.Range<T, ?> range) {
+            List<String> bounds = new ArrayList<>();
+            if (range.from() != null) {
+                bounds.add(range.field().name() + (range.fromInclusive() ? " >= ?" : " > ?"));
+                params.add(range.from());
+            }
+            if (range.to() != null) {
+                bounds.add(range.field().name() + (range.toInclusive() ? " <= ?" : " < ?"));
+                params.add(range.to());
+            }
+            return bounds.isEmpty() ? range.field().name() + " IS NOT NULL" : String.join(" AND ", bounds);
+        } else if (condition instanceof Query.In<T> in) {
+            if (in.values().isEmpty()) return "1 = 0";
+            params.addAll(in.values());
+            return in.field().name() + " IN (" + "?, ".repeat(in.values().size() - 1) + "?)";
+        } else if (condition instanceof Query.And<T> and) {
+            List<String> parts = new ArrayList<>();
+            for (Query.Condition<T> c : and.parts()) parts.add("(" + whereSql(c, params) + ")");
+            return String.join(" AND ", parts);
+        } else if (condition instanceof Query.Or<T> or) {
+            List<String> parts = new ArrayList<>();
+            for (Query.Condition<T> c : or.parts()) parts.add("(" + whereSql(c, params) + ")");
+            return String.join(" OR ", parts);
+        }
+        throw new IllegalArgumentException("Unsupported condition: " + condition);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+
+    @Override
+    public String toString() {
+        return "JdbcRepository[" + mapping.getTable() + (batchSize > 0 ? ", writeBehind=" + batchSize + ", pending=" + getPendingCount() : "") + "]";
+    }
+}
@@ -0,0 +1,179 @@
+package edu.aitu.oop3.db;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process-wide per-operation metrics for the DB layer: call and error counts, rows, and latency percentiles.
+ * Typical use:
+ * <pre>
+ * long t = Metrics.start();
+ * ... work ...
+ * Metrics.record("insertEnrollment", t, rows);
+ * </pre>
+ * When disabled (the default, see METRICS_ENABLED) start() returns 0 and record() returns immediately.
+ * Each operation is also registered as an MBean under {@value #JMX_DOMAIN}.
+ */
+public final class Metrics {
+
+    public static final String JMX_DOMAIN = "edu.aitu.oop3.db";
+
+    private static final Map<String, OperationStats> OPERATIONS = new ConcurrentHashMap<>();
+    // logical operation the thread is running, see beginOperation
+    private static final ThreadLocal<String> CURRENT = new ThreadLocal<>();
+    private static volatile boolean enabled;
+    private static volatile boolean jmx;
+    private static ScheduledExecutorService reporter;
+
+    static {
+        AppConfig cfg = AppConfig.getInstance();
+        enabled = cfg.isMetricsEnabled();
+        jmx = cfg.isMetricsJmx();
+        if (enabled && cfg.getMetricsDumpIntervalMs() > 0) startReporter(cfg.getMetricsDumpIntervalMs(), System.out);
+    }
+
+    private Metrics() {
+        // no instances
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean on) {
+        enabled = on;
+    }
+
+    public static void setJmxEnabled(boolean on) {
+        jmx = on;
+    }
+
+    /**
+     * Start timestamp for {@link #record}; 0 when metrics are off.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : 0L;
+    }
+
+    public static void record(String operation, long start, long rows) {
+        if (start == 0L || !enabled) return;
+        stats(operation).record(System.nanoTime() - start, rows, false);
+    }
+
+    public static void recordError(String operation, long start) {
+        if (start == 0L || !enabled) return;
+        stats(operation).record(System.nanoTime() - start, 0, true);
+    }
+
+    /**
+     * Like {@link #record}, and also under "&lt;current&gt;.&lt;operation&gt;" when the thread is inside a logical
+     * operation (see {@link #beginOperation}); used for costs such as waiting for a pooled connection.
+     */
+    public static void recordWithin(String operation, long start, long rows) {
+        if (start == 0L || !enabled) return;
+        long nanos = System.nanoTime() - start;
+        stats(operation).record(nanos, rows, false);
+        String current = CURRENT.get();
+        if (current != null) stats(current + "." + operation).record(nanos, rows, false);
+    }
+
+    public static void recordErrorWithin(String operation, long start) {
+        if (start == 0L || !enabled) return;
+        long nanos = System.nanoTime() - start;
+        stats(operation).record(nanos, 0, true);
+        String current = CURRENT.get();
+        if (current != null) stats(current + "." + operation).record(nanos, 0, true);
+    }
+
+    /**
+     * Names the logical operation the calling thread runs until the matching {@link #endOperation}, so that
+     * {@link #recordWithin} also attributes to it, e.g. "repo.students.find.pool.wait". Returns the value to pass
+     * to endOperation; null when metrics are off.
+     */
+    public static String beginOperation(String operation) {
+        if (!enabled) return null;
+        String outer = CURRENT.get();
+        CURRENT.set(operation);
+        return outer == null ? "" : outer;
+    }
+
+    public static void endOperation(String outer) {
+        if (outer == null) return;
+        if (outer.isEmpty()) CURRENT.remove();
+        else CURRENT.set(outer);
+    }
+
+    public static Optional<OperationStats> get(String operation) {
+        return Optional.ofNullable(OPERATIONS.get(operation));
+    }
+
+    public static Map<String, OperationStats> snapshot() {
+        return new TreeMap<>(OPERATIONS);
+    }
+
+    public static void reset() {
+        OPERATIONS.values().forEach(OperationStats::reset);
+    }
+
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-32s %9s %7s %9s %10s %10s %10s %10s%n",
+                "operation", "count", "errors", "rows", "p50(us)", "p99(us)", "p999(us)", "max(us)"));
+        for (OperationStats s : snapshot().values()) {
+            sb.append(String.format("%-32s %9d %7d %9d %10.1f %10.1f %10.1f %10.1f%n",
+                    s.getName(), s.getCount(), s.getErrors(), s.getRows(),
+                    s.getP50Micros(), s.getP99Micros(), s.getP999Micros(), s.getMaxMicros()));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Prints {@link #dump()} every {@code periodMs} on a daemon thread. Replaces any running reporter.
+     */
+    public static synchronized void startReporter(long periodMs, PrintStream out) {
+        stopReporter();
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metrics-reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(() -> out.print("=== DB metrics ===\n" + dump()), periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    public static synchronized void stopReporter() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+            reporter = null;
+        }
+    }
+
+    private static OperationStats stats(String operation) {
+        OperationStats s = OPERATIONS.get(operation);
+        if (s != null) return s;
+        return OPERATIONS.computeIfAbsent(operation, name -> {
+            OperationStats created = new OperationStats(name);
+            if (jmx) register(created);
+            return created;
+        });
+    }
+
+    private static void register(OperationStats stats) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":type=Operation,name=" + ObjectName.quote(stats.getName()));
+            if (!server.isRegistered(name)) server.registerMBean(stats, name);
+        } catch (JMException e) {
+            System.out.println("Warning: could not register JMX metrics for " + stats.getName() + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package edu.aitu.oop3.db;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters and latency histogram for one logical operation, e.g. "insertEnrollment" or "pool.acquire".
+ */
+public class OperationStats implements OperationStatsMBean {
+    private final String name;
+    private final LongAdder count = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    OperationStats(String name) {
+        this.name = name;
+    }
+
+    void record(long nanos, long rowCount, boolean failed) {
+        count.increment();
+        if (failed) errors.increment();
+        if (rowCount > 0) rows.add(rowCount);
+        totalNanos.add(nanos);
+        maxNanos.accumulate(nanos);
+        latency.record(nanos);
+    }
+
+    public LatencyHistogram getLatency() { return latency; }
+
+    @Override public String getName() { return name; }
+    @Override public long getCount() { return count.sum(); }
+    @Override public long getErrors() { return errors.sum(); }
+    @Override public long getRows() { return rows.sum(); }
+
+    @Override
+    public double getMeanMicros() {
+        long n = count.sum();
+        return n == 0 ? 0 : totalNanos.sum() / 1000.0 / n;
+    }
+
+    @Override public double getP50Micros() { return percentileMicros(50); }
+    @Override public double getP99Micros() { return percentileMicros(99); }
+    @Override public double getP999Micros() { return percentileMicros(99.9); }
+    @Override public double getMaxMicros() { return maxNanos.get() / 1000.0; }
+
+    // bucket upper bounds can overshoot the largest value actually seen
+    private double percentileMicros(double p) {
+        return Math.min(latency.percentile(p), maxNanos.get()) / 1000.0;
+    }
+
+    @Override
+    public void reset() {
+        count.reset();
+        errors.reset();
+        rows.reset();
+        totalNanos.reset();
+        maxNanos.reset();
+        latency.reset();
+    }
+}
@@ -0,0 +1,17 @@
+package edu.aitu.oop3.db;
+
+/**
+ * JMX view of one {@link OperationStats}. Latencies are in microseconds.
+ */
+public interface OperationStatsMBean {
+    String getName();
+    long getCount();
+    long getErrors();
+    long getRows();
+    double getMeanMicros();
+    double getP50Micros();
+    double getP99Micros();
+    double getP999Micros();
+    double getMaxMicros();
+    void reset();
+}
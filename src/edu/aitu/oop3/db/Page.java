@@ -0,0 +1,41 @@
+package edu.aitu.oop3.db;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * One page of a keyset-paginated listing. Pass {@link #getNextPageToken()} back to get the following page;
+ * it is null on the last page. Tokens are opaque to callers.
+ */
+public class Page<T> {
+    private final List<T> items;
+    private final String nextPageToken;
+
+    public Page(List<T> items, String nextPageToken) {
+        this.items = List.copyOf(items);
+        this.nextPageToken = nextPageToken;
+    }
+
+    public List<T> getItems() { return items; }
+    public String getNextPageToken() { return nextPageToken; }
+    public boolean hasNext() { return nextPageToken != null; }
+
+    static String encodeToken(int lastId) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(("id:" + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns the last id seen by the previous page, or 0 for a null/blank token (first page).
+     */
+    static int decodeToken(String token) {
+        if (token == null || token.isBlank()) return 0;
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            if (!raw.startsWith("id:")) throw new IllegalArgumentException("Invalid page token: " + token);
+            return Integer.parseInt(raw.substring(3));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token, e);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package edu.aitu.oop3.db;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Name search for the front desk: {@link TrigramIndex}es over the students' first name, last name, email and student
+ * number and the instructors' first name, last name and email, loaded once from the database. The indexes hold ids
+ * only; the few rows of a result are read back by primary key, so a search shows current data and skips people
+ * deleted behind the index's back.
+ * <p>
+ * Keep it current by calling {@link #putStudent}/{@link #putInstructor} with the row after an insert or email update,
+ * and {@link #removeStudent}/{@link #removeInstructor} after a delete.
+ */
+public class PeopleSearch {
+
+    /** A row found by a search and its score (1.0 = every trigram of the query matched). */
+    public record Match<R>(R row, double score) {
+    }
+
+    private final TrigramIndex students = new TrigramIndex();
+    private final TrigramIndex instructors = new TrigramIndex();
+
+    /**
+     * Indexes every student and instructor.
+     */
+    public static PeopleSearch load(CampusDao dao) throws SQLException {
+        PeopleSearch search = new PeopleSearch();
+        try (RowCursor<CampusDao.StudentRow> rows = dao.openStudentCursor()) {
+            rows.forEach(search::putStudent);
+        }
+        try (RowCursor<CampusDao.InstructorRow> rows = dao.openInstructorCursor()) {
+            rows.forEach(search::putInstructor);
+        }
+        return search;
+    }
+
+    public void putStudent(CampusDao.StudentRow s) {
+        students.put(s.id(), s.firstName(), s.lastName(), s.email(), s.studentNumber());
+    }
+
+    public void putInstructor(CampusDao.InstructorRow i) {
+        instructors.put(i.id(), i.firstName(), i.lastName(), i.email());
+    }
+
+    public boolean removeStudent(int id) {
+        return students.remove(id);
+    }
+
+    public boolean removeInstructor(int id) {
+        return instructors.remove(id);
+    }
+
+    public TrigramIndex getStudentIndex() {
+        return students;
+    }
+
+    public TrigramIndex getInstructorIndex() {
+        return instructors;
+    }
+
+    /** The best matching students, best first. */
+    public List<Match<CampusDao.StudentRow>> findStudents(CampusDao dao, String text, int limit) throws SQLException {
+        List<Match<CampusDao.StudentRow>> result = new ArrayList<>();
+        for (TrigramIndex.Hit hit : students.search(text, limit)) {
+            Optional<CampusDao.StudentRow> row = dao.findStudentById(hit.id());
+            if (row.isPresent()) result.add(new Match<>(row.get(), hit.score()));
+            else students.remove(hit.id());
+        }
+        return result;
+    }
+
+    /** The best matching instructors, best first. */
+    public List<Match<CampusDao.InstructorRow>> findInstructors(CampusDao dao, String text, int limit) throws SQLException {
+        List<Match<CampusDao.InstructorRow>> result = new ArrayList<>();
+        for (TrigramIndex.Hit hit : instructors.search(text, limit)) {
+            Optional<CampusDao.InstructorRow> row = dao.findInstructorById(hit.id());
+            if (row.isPresent()) result.add(new Match<>(row.get(), hit.score()));
+            else instructors.remove(hit.id());
+        }
+        return result;
+    }
+}
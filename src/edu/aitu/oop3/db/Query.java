@@ -0,0 +1,225 @@
+package edu.aitu.oop3.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Predicate;
+
+/**
+ * Composable, inspectable query over {@link Field}s: equality, prefix, range and in-list conditions joined with
+ * and/or, plus ordering and a limit. A Query is also a Predicate, so it can go anywhere a lambda did, but
+ * repositories that understand it push the filtering to where the data lives: {@link JdbcRepository} turns it into a
+ * parameterised WHERE clause and {@link InMemoryRepository} answers it from its indexes.
+ * <p>
+ * Queries are immutable; every method returns a new one. Java evaluation compares Strings by UTF-16 order,
+ * which can differ from the database collation for ordering and ranges.
+ * <pre>
+ * Query&lt;Student&gt; q = Query.prefix(StudentFields.STUDENT_NUMBER, "CS")
+ *         .and(Query.in(StudentFields.EMAIL, emails))
+ *         .orderBy(StudentFields.LAST_NAME).limit(20);
+ * </pre>
+ */
+public final class Query<T> implements Predicate<T> {
+
+    /** Filter tree; package-private so repositories can translate it. */
+    sealed interface Condition<T> permits All, Eq, Prefix, Range, In, And, Or {
+        boolean test(T item);
+    }
+
+    record All<T>() implements Condition<T> {
+        public boolean test(T item) { return true; }
+    }
+
+    record Eq<T>(Field<T, ?> field, Object value) implements Condition<T> {
+        public boolean test(T item) { return Objects.equals(field.get(item), value); }
+    }
+
+    record Prefix<T>(Field<T, String> field, String prefix) implements Condition<T> {
+        public boolean test(T item) {
+            String v = field.get(item);
+            return v != null && v.startsWith(prefix);
+        }
+    }
+
+    // null bound = open on that side
+    record Range<T, V extends Comparable<? super V>>(Field<T, V> field, V from, boolean fromInclusive, V to, boolean toInclusive)
+            implements Condition<T> {
+        public boolean test(T item) {
+            V v = field.get(item);
+            if (v == null) return false;
+            if (from != null) {
+                int c = v.compareTo(from);
+                if (c < 0 || (c == 0 && !fromInclusive)) return false;
+            }
+            if (to != null) {
+                int c = v.compareTo(to);
+                if (c > 0 || (c == 0 && !toInclusive)) return false;
+            }
+            return true;
+        }
+    }
+
+    record In<T>(Field<T, ?> field, Set<Object> values) implements Condition<T> {
+        public boolean test(T item) {
+            Object v = field.get(item);
+            return v != null && values.contains(v);
+        }
+    }
+
+    record And<T>(List<Condition<T>> parts) implements Condition<T> {
+        public boolean test(T item) {
+            for (Condition<T> c : parts) if (!c.test(item)) return false;
+            return true;
+        }
+    }
+
+    record Or<T>(List<Condition<T>> parts) implements Condition<T> {
+        public boolean test(T item) {
+            for (Condition<T> c : parts) if (c.test(item)) return true;
+            return false;
+        }
+    }
+
+    record Order<T>(Field<T, ? extends Comparable<?>> field, boolean ascending) {
+    }
+
+    private final Condition<T> where;
+    private final List<Order<T>> orderBy;
+    private final int limit;
+
+    private Query(Condition<T> where, List<Order<T>> orderBy, int limit) {
+        this.where = where;
+        this.orderBy = orderBy;
+        this.limit = limit;
+    }
+
+    public static <T> Query<T> all() {
+        return new Query<>(new All<>(), List.of(), Integer.MAX_VALUE);
+    }
+
+    public static <T, V> Query<T> eq(Field<T, V> field, V value) {
+        return of(new Eq<>(field, value));
+    }
+
+    public static <T> Query<T> prefix(Field<T, String> field, String prefix) {
+        return of(new Prefix<>(field, Objects.requireNonNull(prefix, "prefix")));
+    }
+
+    /** from &lt;= value &lt; to; either bound may be null. */
+    public static <T, V extends Comparable<? super V>> Query<T> range(Field<T, V> field, V from, V to) {
+        return of(new Range<>(field, from, true, to, false));
+    }
+
+    public static <T, V extends Comparable<? super V>> Query<T> range(Field<T, V> field, V from, boolean fromInclusive,
+                                                                        V to, boolean toInclusive) {
+        return of(new Range<>(field, from, fromInclusive, to, toInclusive));
+    }
+
+    public static <T, V> Query<T> in(Field<T, V> field, Collection<? extends V> values) {
+        return of(new In<>(field, Set.copyOf(values)));
+    }
+
+    private static <T> Query<T> of(Condition<T> where) {
+        return new Query<>(where, List.of(), Integer.MAX_VALUE);
+    }
+
+    /** Both conditions; ordering and limit of this query are kept. */
+    public Query<T> and(Query<T> other) {
+        return new Query<>(combine(where, other.where, true), orderBy, limit);
+    }
+
+    public Query<T> or(Query<T> other) {
+        return new Query<>(combine(where, other.where, false), orderBy, limit);
+    }
+
+    public <V extends Comparable<? super V>> Query<T> orderBy(Field<T, V> field) {
+        return withOrder(new Order<>(field, true));
+    }
+
+    public <V extends Comparable<? super V>> Query<T> orderByDescending(Field<T, V> field) {
+        return withOrder(new Order<>(field, false));
+    }
+
+    public Query<T> limit(int limit) {
+        if (limit < 0) throw new IllegalArgumentException("limit must be >= 0");
+        return new Query<>(where, orderBy, limit);
+    }
+
+    @Override
+    public boolean test(T item) {
+        return where.test(item);
+    }
+
+    Condition<T> where() { return where; }
+    List<Order<T>> orderBy() { return orderBy; }
+    public int getLimit() { return limit; }
+    public boolean hasLimit() { return limit != Integer.MAX_VALUE; }
+    public boolean isOrdered() { return !orderBy.isEmpty(); }
+
+    /**
+     * Sorts and truncates already filtered items; nulls sort last.
+     */
+    public List<T> order(List<T> items) {
+        if (!orderBy.isEmpty()) items.sort(comparator());
+        return items.size() > limit ? new ArrayList<>(items.subList(0, limit)) : items;
+    }
+
+    /**
+     * Names of all fields the query refers to, for checking them against a table or index set.
+     */
+    public Set<String> fieldNames() {
+        Set<String> names = new java.util.LinkedHashSet<>();
+        collectNames(where, names);
+        for (Order<T> o : orderBy) names.add(o.field().name());
+        return names;
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    Comparator<T> comparator() {
+        Comparator<T> cmp = null;
+        for (Order<T> o : orderBy) {
+            // nulls last in both directions, like the NULLS LAST that JdbcRepository puts in its ORDER BY
+            Comparator<Comparable> values = o.ascending() ? Comparator.naturalOrder() : Comparator.reverseOrder();
+            Comparator<T> next = Comparator.comparing(t -> (Comparable) o.field().get(t), Comparator.nullsLast(values));
+            cmp = cmp == null ? next : cmp.thenComparing(next);
+        }
+        return cmp;
+    }
+
+    private Query<T> withOrder(Order<T> order) {
+        List<Order<T>> orders = new ArrayList<>(orderBy);
+        orders.add(order);
+        return new Query<>(where, List.copyOf(orders), limit);
+    }
+
+    // flattens nested and/or of the same kind and drops "all" from conjunctions
+    private static <T> Condition<T> combine(Condition<T> a, Condition<T> b, boolean and) {
+        if (and && a instanceof All) return b;
+        if (and && b instanceof All) return a;
+        if (!and && (a instanceof All || b instanceof All)) return new All<>();
+        List<Condition<T>> parts = new ArrayList<>();
+        for (Condition<T> c : List.of(a, b)) {
+            if (and && c instanceof And<T> x) parts.addAll(x.parts());
+            else if (!and && c instanceof Or<T> x) parts.addAll(x.parts());
+            else parts.add(c);
+        }
+        return and ? new And<>(List.copyOf(parts)) : new Or<>(List.copyOf(parts));
+    }
+
+    private static <T> void collectNames(Condition<T> c, Set<String> names) {
+        if (c instanceof Eq<T> x) names.add(x.field().name());
+        else if (c instanceof Prefix<T> x) names.add(x.field().name());
+        else if (c instanceof Range<T, ?> x) names.add(x.field().name());
+        else if (c instanceof In<T> x) names.add(x.field().name());
+        else if (c instanceof And<T> x) x.parts().forEach(p -> collectNames(p, names));
+        else if (c instanceof Or<T> x) x.parts().forEach(p -> collectNames(p, names));
+    }
+
+    @Override
+    public String toString() {
+        return "Query[" + where + (orderBy.isEmpty() ? "" : ", orderBy=" + orderBy) + (hasLimit() ? ", limit=" + limit : "") + "]";
+    }
+}
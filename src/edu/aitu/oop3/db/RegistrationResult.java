@@ -0,0 +1,49 @@
+package edu.aitu.oop3.db;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Outcome of a batch registration: who was registered, who failed and why, and how long it took.
+ * Registered students whose callback threw are also listed in {@link #getCallbackFailures()}; they are not failures.
+ * All collections keep the order in which the repository returned the students.
+ */
+public class RegistrationResult {
+    private final List<DemoUsersExample.Student> registered;
+    private final Map<DemoUsersExample.Student, Throwable> failures;
+    private final Map<DemoUsersExample.Student, Throwable> callbackFailures;
+    private final Duration elapsed;
+
+    public RegistrationResult(List<DemoUsersExample.Student> registered,
+                              Map<DemoUsersExample.Student, Throwable> failures,
+                              Duration elapsed) {
+        this(registered, failures, Map.of(), elapsed);
+    }
+
+    public RegistrationResult(List<DemoUsersExample.Student> registered,
+                              Map<DemoUsersExample.Student, Throwable> failures,
+                              Map<DemoUsersExample.Student, Throwable> callbackFailures,
+                              Duration elapsed) {
+        this.registered = Collections.unmodifiableList(registered);
+        this.failures = Collections.unmodifiableMap(failures);
+        this.callbackFailures = Collections.unmodifiableMap(callbackFailures);
+        this.elapsed = elapsed;
+    }
+
+    public List<DemoUsersExample.Student> getRegistered() { return registered; }
+    public Map<DemoUsersExample.Student, Throwable> getFailures() { return failures; }
+    public Map<DemoUsersExample.Student, Throwable> getCallbackFailures() { return callbackFailures; }
+    public Duration getElapsed() { return elapsed; }
+
+    public int getTotal() { return registered.size() + failures.size(); }
+    public boolean isAllSucceeded() { return failures.isEmpty(); }
+
+    @Override
+    public String toString() {
+        return registered.size() + " registered, " + failures.size() + " failed"
+                + (callbackFailures.isEmpty() ? "" : ", " + callbackFailures.size() + " callbacks failed")
+                + " in " + elapsed.toMillis() + " ms";
+    }
+}
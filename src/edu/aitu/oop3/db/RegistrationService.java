@@ -1,7 +1,29 @@
 package edu.aitu.oop3.db;
 
+/**
+ * Records registrations. Without a journal each one is printed to the console; with an {@link EnrollmentJournal}
+ * it is appended as a binary record instead, which is durable and does not serialise callers on System.out.
+ */
 public class RegistrationService {
+    private final EnrollmentJournal journal;
+
+    public RegistrationService() {
+        this(null);
+    }
+
+    public RegistrationService(EnrollmentJournal journal) {
+        this.journal = journal;
+    }
+
     public void register(DemoUsersExample.Student student, Course course) {
-        System.out.println("Student " + student + " registered for " + course.type + " course.");
+        if (journal != null) {
+            journal.append(student, course);
+            return;
+        }
+        System.out.println("Student " + student + " registered for " + course + " course.");
+    }
+
+    public EnrollmentJournal getJournal() {
+        return journal;
     }
-}//h
\ No newline at end of file
+}
@@ -0,0 +1,317 @@
+package edu.aitu.oop3.db;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32C;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compact binary dump of an {@link InMemoryRepository}, for a warm start after a restart.
+ * <p>
+ * The file is a 32-byte header (magic, version, flags, chunk count, item count, watermark) followed by chunks of up to
+ * {@value #ITEMS_PER_CHUNK} items: {@code [int items][int rawLength][int storedLength][int crc32c]} and the encoded
+ * items, deflated when compression is on. Chunks are encoded and decoded on several threads; the file is written
+ * through a FileChannel to a temporary file that replaces the old snapshot only once complete.
+ * <p>
+ * The watermark is an opaque number stored with the data, typically the highest database id it contains, so the
+ * caller knows where to catch up from (see {@link StudentWarmStart}).
+ */
+public class RepositorySnapshot<T> {
+
+    /**
+     * Binary form of one item. Write with the static putString/getString helpers or ByteBuffer methods;
+     * the buffer is little-endian.
+     */
+    public interface Codec<T> {
+        void write(T item, ByteBuffer out);
+
+        T read(ByteBuffer in);
+    }
+
+    public record Info(long items, long watermark, long bytes, int chunks, long millis) {
+    }
+
+    static final int ITEMS_PER_CHUNK = 8192;
+    private static final int MAGIC = 0x504E5352; // "RSNP" little-endian
+    private static final int VERSION = 1;
+    private static final int FLAG_DEFLATE = 1;
+    private static final int HEADER = 32;
+    private static final int CHUNK_HEADER = 16;
+
+    private final Codec<T> codec;
+    private final boolean compress;
+    private final int threads;
+
+    public RepositorySnapshot(Codec<T> codec, boolean compress) {
+        this(codec, compress, Runtime.getRuntime().availableProcessors());
+    }
+
+    public RepositorySnapshot(Codec<T> codec, boolean compress, int threads) {
+        if (threads < 1) throw new IllegalArgumentException("threads must be >= 1");
+        this.codec = codec;
+        this.compress = compress;
+        this.threads = threads;
+    }
+
+    /** {@link DemoUsersExample.Student}: the four string fields, in column order. */
+    public static final Codec<DemoUsersExample.Student> STUDENT_CODEC = new Codec<>() {
+        @Override
+        public void write(DemoUsersExample.Student s, ByteBuffer out) {
+            putString(out, s.firstName);
+            putString(out, s.lastName);
+            putString(out, s.email);
+            putString(out, s.studentNumber);
+        }
+
+        @Override
+        public DemoUsersExample.Student read(ByteBuffer in) {
+            return new DemoUsersExample.Student(getString(in), getString(in), getString(in), getString(in));
+        }
+    };
+
+    public static RepositorySnapshot<DemoUsersExample.Student> students(boolean compress) {
+        return new RepositorySnapshot<>(STUDENT_CODEC, compress);
+    }
+
+    /**
+     * Writes everything in the repository (one consistent findAll() view) to {@code file}.
+     */
+    public Info write(InMemoryRepository<T> repository, Path file, long watermark) throws IOException {
+        return write(repository.findAll(), file, watermark);
+    }
+
+    public Info write(List<T> items, Path file, long watermark) throws IOException {
+        long t = Metrics.start();
+        long started = System.nanoTime();
+        int chunks = (items.size() + ITEMS_PER_CHUNK - 1) / ITEMS_PER_CHUNK;
+        Path dir = file.toAbsolutePath().getParent();
+        if (dir != null) Files.createDirectories(dir);
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        ExecutorService pool = newPool();
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.WRITE)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC).putInt(VERSION).putInt(compress ? FLAG_DEFLATE : 0).putInt(chunks)
+                    .putLong(items.size()).putLong(watermark).flip();
+            writeFully(ch, header);
+            // encode ahead in a bounded window so memory stays at a few chunks per thread
+            List<Future<ByteBuffer>> window = new ArrayList<>();
+            int next = 0;
+            for (int written = 0; written < chunks; written++) {
+                while (next < chunks && window.size() < 2 * threads) {
+                    List<T> slice = items.subList(next * ITEMS_PER_CHUNK, Math.min(items.size(), (next + 1) * ITEMS_PER_CHUNK));
+                    window.add(pool.submit(() -> encodeChunk(slice)));
+                    next++;
+                }
+                writeFully(ch, await(window.remove(0)));
+            }
+            ch.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            Metrics.recordError("snapshot.write", t);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        Metrics.record("snapshot.write", t, items.size());
+        return new Info(items.size(), watermark, Files.size(file), chunks, (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Decodes {@code file} on several threads and saves the items into {@code repository} in their original order.
+     * Every chunk is verified before the first item is saved, so a damaged file leaves the repository untouched.
+     */
+    public Info load(Path file, InMemoryRepository<T> repository) throws IOException {
+        long t = Metrics.start();
+        long started = System.nanoTime();
+        ExecutorService pool = newPool();
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (ch.size() < HEADER) throw new IOException("Not a repository snapshot: " + file);
+            ByteBuffer header = ch.map(FileChannel.MapMode.READ_ONLY, 0, HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a repository snapshot (or unsupported version): " + file);
+            }
+            boolean deflated = (header.getInt(8) & FLAG_DEFLATE) != 0;
+            int chunks = header.getInt(12);
+            long count = header.getLong(16);
+            long watermark = header.getLong(24);
+
+            // chunk headers are read sequentially, the chunks themselves are mapped and decoded in parallel
+            List<Future<List<T>>> decoded = new ArrayList<>(chunks);
+            ByteBuffer chunkHeader = ByteBuffer.allocate(CHUNK_HEADER).order(ByteOrder.LITTLE_ENDIAN);
+            long offset = HEADER;
+            for (int i = 0; i < chunks; i++) {
+                chunkHeader.clear();
+                while (chunkHeader.hasRemaining()) {
+                    if (ch.read(chunkHeader, offset + chunkHeader.position()) < 0) throw new IOException("Snapshot " + file + " is truncated");
+                }
+                int itemCount = chunkHeader.getInt(0);
+                int rawLength = chunkHeader.getInt(4);
+                int storedLength = chunkHeader.getInt(8);
+                int crc = chunkHeader.getInt(12);
+                if (offset + CHUNK_HEADER + storedLength > ch.size()) throw new IOException("Snapshot " + file + " is truncated");
+                ByteBuffer stored = ch.map(FileChannel.MapMode.READ_ONLY, offset + CHUNK_HEADER, storedLength);
+                decoded.add(pool.submit(() -> decodeChunk(stored, deflated, itemCount, rawLength, crc)));
+                offset += CHUNK_HEADER + storedLength;
+            }
+            List<List<T>> items = new ArrayList<>(chunks);
+            for (Future<List<T>> f : decoded) items.add(await(f));
+            long loaded = 0;
+            for (List<T> chunk : items) loaded += chunk.size();
+            if (loaded != count) throw new IOException("Snapshot " + file + " holds " + loaded + " items, header says " + count);
+            for (List<T> chunk : items) repository.saveAll(chunk);
+            Metrics.record("snapshot.load", t, loaded);
+            return new Info(loaded, watermark, ch.size(), chunks, (System.nanoTime() - started) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            Metrics.recordError("snapshot.load", t);
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    public boolean isCompressed() {
+        return compress;
+    }
+
+    // ==================== CHUNKS ====================
+
+    private ByteBuffer encodeChunk(List<T> items) {
+        ByteBuffer raw = ByteBuffer.allocate(64 * items.size() + 64).order(ByteOrder.LITTLE_ENDIAN);
+        for (T item : items) {
+            int start = raw.position();
+            while (true) {
+                try {
+                    codec.write(item, raw);
+                    break;
+                } catch (BufferOverflowException e) {
+                    ByteBuffer bigger = ByteBuffer.allocate(raw.capacity() * 2).order(ByteOrder.LITTLE_ENDIAN);
+                    bigger.put(raw.array(), 0, start);
+                    raw = bigger;
+                }
+            }
+        }
+        int rawLength = raw.position();
+        byte[] stored = raw.array();
+        int storedLength = rawLength;
+        if (compress) {
+            Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+            try {
+                deflater.setInput(raw.array(), 0, rawLength);
+                deflater.finish();
+                stored = new byte[rawLength + rawLength / 100 + 64];
+                storedLength = 0;
+                while (!deflater.finished()) {
+                    if (storedLength == stored.length) stored = Arrays.copyOf(stored, stored.length * 2);
+                    storedLength += deflater.deflate(stored, storedLength, stored.length - storedLength);
+                }
+            } finally {
+                deflater.end();
+            }
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(stored, 0, storedLength);
+        ByteBuffer out = ByteBuffer.allocate(CHUNK_HEADER + storedLength).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(items.size()).putInt(rawLength).putInt(storedLength).putInt((int) crc.getValue());
+        out.put(stored, 0, storedLength).flip();
+        return out;
+    }
+
+    private List<T> decodeChunk(ByteBuffer stored, boolean deflated, int itemCount, int rawLength, int expectedCrc) {
+        CRC32C crc = new CRC32C();
+        crc.update(stored.duplicate());
+        if ((int) crc.getValue() != expectedCrc) throw new IllegalStateException("Snapshot chunk checksum mismatch");
+        ByteBuffer raw = stored;
+        if (deflated) {
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(stored);
+                byte[] out = new byte[rawLength];
+                int n = 0;
+                while (n < rawLength && !inflater.finished()) n += inflater.inflate(out, n, rawLength - n);
+                if (n != rawLength) throw new IllegalStateException("Snapshot chunk inflated to " + n + " bytes, expected " + rawLength);
+                raw = ByteBuffer.wrap(out);
+            } catch (DataFormatException e) {
+                throw new IllegalStateException("Snapshot chunk is not valid deflate data", e);
+            } finally {
+                inflater.end();
+            }
+        }
+        raw.order(ByteOrder.LITTLE_ENDIAN);
+        List<T> items = new ArrayList<>(itemCount);
+        for (int i = 0; i < itemCount; i++) items.add(codec.read(raw));
+        return items;
+    }
+
+    private ExecutorService newPool() {
+        return Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "snapshot-codec");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    private static <R> R await(Future<R> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing snapshot", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException io) throw io;
+            if (cause instanceof UncheckedIOException io) throw io.getCause();
+            if (cause instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf) throws IOException {
+        while (buf.hasRemaining()) ch.write(buf);
+    }
+
+    // ==================== FIELD HELPERS ====================
+
+    /** Writes a string as a length-prefixed UTF-8 (length -1 for null). */
+    public static void putString(ByteBuffer out, String s) {
+        if (s == null) {
+            out.putInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.putInt(bytes.length);
+        out.put(bytes);
+    }
+
+    public static String getString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) return null;
+        if (in.hasArray()) {
+            String s = new String(in.array(), in.arrayOffset() + in.position(), length, StandardCharsets.UTF_8);
+            in.position(in.position() + length);
+            return s;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
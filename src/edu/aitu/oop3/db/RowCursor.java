@@ -0,0 +1,64 @@
+package edu.aitu.oop3.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Forward-only cursor over a query result that maps one row at a time, so memory use does not grow with the result.
+ * Rows arrive from the server in chunks of the statement's fetch size. On PostgreSQL that only happens inside a
+ * transaction, so the cursor switches autocommit off while open and restores it on {@link #close()}.
+ */
+public class RowCursor<T> implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface RowHandler<T> {
+        void handle(T row) throws SQLException;
+    }
+
+    private final Connection connection;
+    private final ResultSet rs;
+    private final RowMapper<T> mapper;
+    private final boolean restoreAutoCommit;
+    private boolean closed;
+
+    RowCursor(Connection connection, ResultSet rs, RowMapper<T> mapper, boolean restoreAutoCommit) {
+        this.connection = connection;
+        this.rs = rs;
+        this.mapper = mapper;
+        this.restoreAutoCommit = restoreAutoCommit;
+    }
+
+    /**
+     * Returns the next row, or null when the result is exhausted.
+     */
+    public T next() throws SQLException {
+        if (closed || !rs.next()) return null;
+        return mapper.map(rs);
+    }
+
+    public long forEach(RowHandler<T> handler) throws SQLException {
+        long count = 0;
+        T row;
+        while ((row = next()) != null) {
+            handler.handle(row);
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (closed) return;
+        closed = true;
+        try {
+            rs.close();
+        } finally {
+            if (restoreAutoCommit) {
+                // read-only work; commit just ends the transaction opened for the cursor
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+        }
+    }
+}
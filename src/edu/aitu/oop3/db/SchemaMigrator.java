@@ -0,0 +1,218 @@
+package edu.aitu.oop3.db;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Brings the database schema (and seed data) up to date at startup.
+ * <p>
+ * Applied versions are recorded in {@value #VERSION_TABLE}. When the recorded version is current, startup costs one
+ * query. Otherwise all pending migrations and their version rows go to the server as one JDBC batch in one
+ * transaction, so a failure leaves the schema as it was. That transaction first takes a transaction-level advisory
+ * lock, so when two instances start at the same time the second waits, re-reads the version and finds nothing left
+ * to do. Every statement is idempotent (IF NOT EXISTS, ON CONFLICT DO NOTHING), which makes it safe to run the
+ * baseline on a database created by older versions of the app.
+ */
+public class SchemaMigrator {
+
+    public record Migration(int version, String description, List<String> statements) {
+        public Migration(int version, String description, String... statements) {
+            this(version, description, List.of(statements));
+        }
+    }
+
+    /** What a run did; {@code applied} is 0 when the schema was already current. */
+    public record Result(int fromVersion, int toVersion, int applied, int statements, long millis) {
+        public boolean upToDate() {
+            return applied == 0;
+        }
+    }
+
+    static final String VERSION_TABLE = "schema_version";
+    static final String CREATE_VERSION_TABLE = """
+            CREATE TABLE IF NOT EXISTS schema_version (
+                version INTEGER PRIMARY KEY,
+                description VARCHAR(200),
+                applied_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+            )""";
+    static final String SELECT_VERSION = "SELECT COALESCE(MAX(version), 0) FROM schema_version";
+    // any constant works as long as every instance of the app uses the same one; released at commit or rollback
+    static final String LOCK = "SELECT pg_advisory_xact_lock(7263948127)";
+
+    private final List<Migration> migrations;
+
+    public SchemaMigrator(List<Migration> migrations) {
+        List<Migration> sorted = new ArrayList<>(migrations);
+        sorted.sort((a, b) -> Integer.compare(a.version(), b.version()));
+        for (int i = 1; i < sorted.size(); i++) {
+            if (sorted.get(i).version() == sorted.get(i - 1).version()) {
+                throw new IllegalArgumentException("Duplicate migration version " + sorted.get(i).version());
+            }
+        }
+        this.migrations = List.copyOf(sorted);
+    }
+
+    /**
+     * The campus schema: the four tables as the DAO expects them, the demo's sample data, then course meeting times.
+     */
+    public static SchemaMigrator campus() {
+        return new SchemaMigrator(List.of(
+                // released migrations are frozen: their SQL is spelled out here rather than taken from CampusDao,
+                // whose CREATE statements follow the current schema; later columns get a migration of their own
+                new Migration(1, "students, instructors, courses, enrollments",
+                        """
+                        CREATE TABLE IF NOT EXISTS students (
+                            id SERIAL PRIMARY KEY,
+                            first_name VARCHAR(50) NOT NULL,
+                            last_name VARCHAR(50),
+                            email VARCHAR(100) UNIQUE NOT NULL,
+                            student_number VARCHAR(20) UNIQUE
+                        )""",
+                        """
+                        CREATE TABLE IF NOT EXISTS instructors (
+                            id SERIAL PRIMARY KEY,
+                            first_name VARCHAR(50),
+                            last_name VARCHAR(50),
+                            email VARCHAR(100) UNIQUE
+                        )""",
+                        """
+                        CREATE TABLE IF NOT EXISTS courses (
+                            id SERIAL PRIMARY KEY,
+                            course_code VARCHAR(20) UNIQUE NOT NULL,
+                            title VARCHAR(200) NOT NULL,
+                            credits INTEGER DEFAULT 0,
+                            capacity INTEGER
+                        )""",
+                        "ALTER TABLE courses ADD COLUMN IF NOT EXISTS capacity INTEGER",
+                        """
+                        CREATE TABLE IF NOT EXISTS enrollments (
+                            id SERIAL PRIMARY KEY,
+                            student_id INTEGER REFERENCES students(id) ON DELETE CASCADE,
+                            course VARCHAR(50),
+                            enrolled_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+                            UNIQUE(student_id, course)
+                        )""",
+                        // databases from before the course column, and its foreign key, existed
+                        "ALTER TABLE enrollments ADD COLUMN IF NOT EXISTS course VARCHAR(50)",
+                        """
+                        DO $$ BEGIN
+                            IF NOT EXISTS (SELECT 1 FROM pg_constraint WHERE conname = 'enrollments_course_fkey') THEN
+                                ALTER TABLE enrollments ADD CONSTRAINT enrollments_course_fkey
+                                    FOREIGN KEY (course) REFERENCES courses(course_code) ON DELETE CASCADE;
+                            END IF;
+                        END $$"""),
+                new Migration(2, "sample students, instructors, courses and enrollments",
+                        """
+                        INSERT INTO students (first_name, last_name, email, student_number) VALUES
+                            ('Ayan', 'Sadykov', 'ayan.sadykov@uni.kz', 'IT-2513'),
+                            ('Dana', 'Nurpeisova', 'dana.nurpeisova@uni.kz', 'SE-2302'),
+                            ('Timur', 'Bekov', 'timur.bekov@uni.kz', 'CS-2415')
+                        ON CONFLICT DO NOTHING""",
+                        """
+                        INSERT INTO instructors (first_name, last_name, email) VALUES
+                            ('Alice', 'Smith', 'alice.smith@uni.kz'),
+                            ('Bob', 'Brown', 'bob.brown@uni.kz')
+                        ON CONFLICT DO NOTHING""",
+                        """
+                        INSERT INTO courses (course_code, title, credits) VALUES
+                            ('CS101', 'Intro to Computer Science', 4),
+                            ('CS101-LAB', 'Intro to CS Lab', 1),
+                            ('IT200', 'Software Engineering', 3)
+                        ON CONFLICT DO NOTHING""",
+                        """
+                        INSERT INTO enrollments (student_id, course)
+                        SELECT s.id, c.course_code FROM students s JOIN courses c ON c.course_code IN ('CS101', 'IT200')
+                        WHERE s.email = 'ayan.sadykov@uni.kz'
+                        ON CONFLICT DO NOTHING"""),
+                new Migration(3, "course meeting times",
+                        "ALTER TABLE courses ADD COLUMN IF NOT EXISTS meeting_slots VARCHAR(200)",
+                        """
+                        UPDATE courses SET meeting_slots = v.slots
+                        FROM (VALUES ('CS101', 'MON 09:00-10:30; WED 09:00-10:30'),
+                                     ('CS101-LAB', 'THU 14:00-16:00'),
+                                     ('IT200', 'TUE 10:00-11:30')) AS v(code, slots)
+                        WHERE courses.course_code = v.code AND courses.meeting_slots IS NULL"""),
+                // text_pattern_ops lets student_number LIKE 'CS%' use the index whatever the database collation
+                new Migration(4, "student number prefix index",
+                        "CREATE INDEX IF NOT EXISTS idx_students_number_prefix ON students (student_number text_pattern_ops)")));
+    }
+
+    public int getLatestVersion() {
+        return migrations.isEmpty() ? 0 : migrations.get(migrations.size() - 1).version();
+    }
+
+    /**
+     * Applies whatever is pending. Leaves autocommit as it found it.
+     */
+    public Result migrate(Connection connection) throws SQLException {
+        long t = Metrics.start();
+        long started = System.nanoTime();
+        try {
+            int current = currentVersion(connection);
+            if (current >= getLatestVersion()) {
+                Metrics.record("schema.migrate", t, 0);
+                return new Result(current, current, 0, 0, (System.nanoTime() - started) / 1_000_000);
+            }
+
+            List<Migration> pending = new ArrayList<>();
+            int statements = 0;
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (Statement batch = connection.createStatement()) {
+                // another instance may have migrated while this one waited for the lock, so read the version again
+                batch.execute(LOCK);
+                batch.execute(CREATE_VERSION_TABLE);
+                try (ResultSet rs = batch.executeQuery(SELECT_VERSION)) {
+                    current = rs.next() ? rs.getInt(1) : 0;
+                }
+                for (Migration m : migrations) if (m.version() > current) pending.add(m);
+                for (Migration m : pending) {
+                    for (String sql : m.statements()) {
+                        batch.addBatch(sql);
+                        statements++;
+                    }
+                    batch.addBatch("INSERT INTO schema_version (version, description) VALUES (" + m.version() + ", '"
+                            + m.description().replace("'", "''") + "') ON CONFLICT DO NOTHING");
+                }
+                batch.executeBatch();
+                connection.commit();
+            } catch (SQLException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+
+            if (pending.isEmpty()) {
+                Metrics.record("schema.migrate", t, 0);
+                return new Result(current, current, 0, 0, (System.nanoTime() - started) / 1_000_000);
+            }
+            // DDL may have changed what these caches know about
+            EnrollmentSchema.invalidate();
+            CourseCatalogCache.getInstance().invalidateAll();
+            int to = pending.get(pending.size() - 1).version();
+            Metrics.record("schema.migrate", t, statements);
+            return new Result(current, to, pending.size(), statements, (System.nanoTime() - started) / 1_000_000);
+        } catch (SQLException | RuntimeException e) {
+            Metrics.recordError("schema.migrate", t);
+            throw e;
+        }
+    }
+
+    // 0 when the version table does not exist yet
+    private static int currentVersion(Connection connection) throws SQLException {
+        boolean autoCommit = connection.getAutoCommit();
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery(SELECT_VERSION)) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException e) {
+            if (!"42P01".equals(e.getSQLState())) throw e; // undefined_table
+            if (!autoCommit) connection.rollback();
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package edu.aitu.oop3.db;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process seat counting for course registration. Each course has a seat counter updated with compare-and-set
+ * and a FIFO waitlist; there is no global lock, so registrations for different courses never contend and
+ * registrations for the same course only retry a CAS.
+ * <p>
+ * When a seat is freed ({@link #release}) or the capacity grows, the seat goes straight to the head of the waitlist
+ * and the {@link PromotionListener} is told, so it can write the enrollment. Counters are seeded from the database
+ * with {@link #define}; {@link SeatedEnrollmentService} keeps the two in step.
+ */
+public class SeatReservationEngine {
+
+    public enum Reservation {
+        SEATED, WAITLISTED, ALREADY_WAITLISTED, UNKNOWN_COURSE
+    }
+
+    @FunctionalInterface
+    public interface PromotionListener {
+        /**
+         * Called once per student moved from the waitlist into a seat. The seat is already counted;
+         * call {@link #release} if the enrollment cannot be written.
+         */
+        void onPromoted(String courseCode, int studentId);
+    }
+
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    // identity matters: a student who leaves and rejoins gets a new entry at the back
+    private static final class Waiter {
+        final int studentId;
+
+        Waiter(int studentId) {
+            this.studentId = studentId;
+        }
+    }
+
+    private static final class CourseSeats {
+        final AtomicInteger taken = new AtomicInteger();
+        volatile int capacity;
+        final ConcurrentLinkedQueue<Waiter> waitlist = new ConcurrentLinkedQueue<>();
+        final Map<Integer, Waiter> waiting = new ConcurrentHashMap<>();
+
+        CourseSeats(int capacity) {
+            this.capacity = capacity;
+        }
+
+        boolean tryTake() {
+            while (true) {
+                int n = taken.get();
+                if (n >= capacity) return false;
+                if (taken.compareAndSet(n, n + 1)) return true;
+            }
+        }
+
+        void giveBack() {
+            taken.updateAndGet(n -> n > 0 ? n - 1 : 0);
+        }
+    }
+
+    private record Promotion(String courseCode, int studentId) {
+    }
+
+    private final Map<String, CourseSeats> courses = new ConcurrentHashMap<>();
+    private final ThreadLocal<ArrayDeque<Promotion>> delivering = new ThreadLocal<>();
+    private volatile PromotionListener listener;
+
+    public void setPromotionListener(PromotionListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Registers a course or resets its counters. {@code capacity} null or negative means no limit.
+     * Resetting a course that is taking registrations may briefly over- or under-count; do it while quiet.
+     */
+    public void define(String courseCode, Integer capacity, int enrolled) {
+        CourseSeats c = courses.computeIfAbsent(courseCode, k -> new CourseSeats(limitOf(capacity)));
+        c.capacity = limitOf(capacity);
+        c.taken.set(Math.max(0, enrolled));
+        promote(courseCode, c, null);
+    }
+
+    /**
+     * Changes the seat limit; when it grows, waitlisted students are promoted into the new seats.
+     */
+    public boolean setCapacity(String courseCode, Integer capacity) {
+        CourseSeats c = courses.get(courseCode);
+        if (c == null) return false;
+        c.capacity = limitOf(capacity);
+        promote(courseCode, c, null);
+        return true;
+    }
+
+    /**
+     * Forgets a course (e.g. it was deleted); its waitlist is dropped.
+     */
+    public boolean remove(String courseCode) {
+        return courses.remove(courseCode) != null;
+    }
+
+    public boolean isKnown(String courseCode) {
+        return courses.containsKey(courseCode);
+    }
+
+    /**
+     * Takes a seat for the student, or puts them at the back of the waitlist when the course is full.
+     * Newcomers never overtake students already waiting.
+     */
+    public Reservation reserve(String courseCode, int studentId) {
+        CourseSeats c = courses.get(courseCode);
+        if (c == null) return Reservation.UNKNOWN_COURSE;
+        if (c.waiting.containsKey(studentId)) return Reservation.ALREADY_WAITLISTED;
+        if (c.waitlist.isEmpty() && c.tryTake()) return Reservation.SEATED;
+
+        Waiter self = new Waiter(studentId);
+        if (c.waiting.putIfAbsent(studentId, self) != null) return Reservation.ALREADY_WAITLISTED;
+        c.waitlist.add(self);
+        // a seat may have been freed between the failed take and the enqueue
+        return promote(courseCode, c, self) ? Reservation.SEATED : Reservation.WAITLISTED;
+    }
+
+    /**
+     * Frees one seat. If anyone is waiting the seat passes to the head of the waitlist.
+     */
+    public void release(String courseCode) {
+        CourseSeats c = courses.get(courseCode);
+        if (c == null) return;
+        c.giveBack();
+        promote(courseCode, c, null);
+    }
+
+    public boolean leaveWaitlist(String courseCode, int studentId) {
+        CourseSeats c = courses.get(courseCode);
+        if (c == null) return false;
+        Waiter w = c.waiting.remove(studentId);
+        if (w == null) return false;
+        c.waitlist.remove(w);
+        return true;
+    }
+
+    public int seatsTaken(String courseCode) {
+        CourseSeats c = courses.get(courseCode);
+        return c == null ? 0 : c.taken.get();
+    }
+
+    /**
+     * Seat limit, or {@link #UNLIMITED}; -1 for an unknown course.
+     */
+    public int capacity(String courseCode) {
+        CourseSeats c = courses.get(courseCode);
+        return c == null ? -1 : c.capacity;
+    }
+
+    public int waitlistSize(String courseCode) {
+        CourseSeats c = courses.get(courseCode);
+        return c == null ? 0 : c.waiting.size();
+    }
+
+    /**
+     * 1-based place in the waitlist, or 0 when the student is not waiting. Walks the queue, so O(waitlist).
+     */
+    public int waitlistPosition(String courseCode, int studentId) {
+        CourseSeats c = courses.get(courseCode);
+        if (c == null) return 0;
+        Waiter w = c.waiting.get(studentId);
+        if (w == null) return 0;
+        int position = 0;
+        for (Waiter queued : c.waitlist) {
+            if (c.waiting.get(queued.studentId) != queued) continue;
+            position++;
+            if (queued == w) return position;
+        }
+        return 0;
+    }
+
+    public List<Integer> waitlist(String courseCode) {
+        CourseSeats c = courses.get(courseCode);
+        List<Integer> ids = new ArrayList<>();
+        if (c == null) return ids;
+        for (Waiter queued : c.waitlist) {
+            if (c.waiting.get(queued.studentId) == queued) ids.add(queued.studentId);
+        }
+        return ids;
+    }
+
+    // moves waiters into free seats in FIFO order; returns true if {@code self} was one of them
+    private boolean promote(String courseCode, CourseSeats c, Waiter self) {
+        boolean selfSeated = false;
+        while (!c.waitlist.isEmpty() && c.tryTake()) {
+            Waiter next = c.waitlist.poll();
+            // null: another thread drained the queue; failed remove: the student left the waitlist
+            if (next == null || !c.waiting.remove(next.studentId, next)) {
+                c.giveBack();
+                continue;
+            }
+            if (next == self) selfSeated = true;
+            else deliver(new Promotion(courseCode, next.studentId));
+        }
+        return selfSeated;
+    }
+
+    // listeners may call release() again (e.g. the insert failed); queue those promotions instead of recursing
+    private void deliver(Promotion promotion) {
+        ArrayDeque<Promotion> queue = delivering.get();
+        if (queue != null) {
+            queue.add(promotion);
+            return;
+        }
+        queue = new ArrayDeque<>();
+        queue.add(promotion);
+        delivering.set(queue);
+        try {
+            Promotion next;
+            while ((next = queue.poll()) != null) {
+                PromotionListener l = listener;
+                if (l == null) {
+                    System.out.println("Warning: no promotion listener, student " + next.studentId() + " holds a seat in " + next.courseCode() + " without an enrollment");
+                    continue;
+                }
+                try {
+                    l.onPromoted(next.courseCode(), next.studentId());
+                } catch (RuntimeException e) {
+                    System.out.println("Warning: promotion of student " + next.studentId() + " to " + next.courseCode() + " failed: " + e.getMessage());
+                }
+            }
+        } finally {
+            delivering.remove();
+        }
+    }
+
+    private static int limitOf(Integer capacity) {
+        return capacity == null || capacity < 0 ? UNLIMITED : capacity;
+    }
+
+    @Override
+    public String toString() {
+        return "SeatReservationEngine[courses=" + courses.size() + "]";
+    }
+}
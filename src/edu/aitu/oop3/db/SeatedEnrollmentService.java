@@ -0,0 +1,246 @@
+package edu.aitu.oop3.db;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Capacity-aware enrollment: seats are taken in {@link SeatReservationEngine} first and only then written to the
+ * database, so a popular course is capped without locking course rows. The seat is given back whenever the insert
+ * does not add a row, and promotions from the waitlist are written through the same path.
+ * <p>
+ * Before a seat is taken, the course's meeting times are booked into the student's {@link TimetableRegistry} timetable;
+ * an overlap with a course they are already enrolled in is refused as {@link Outcome#TIMETABLE_CLASH}. Waitlisted
+ * students hold no timetable slots, so a promotion is checked again and the seat passed on if it now clashes.
+ * Every enrollment written or deleted here is also applied to an {@link EnrollmentGraph} for roster and load queries.
+ * <p>
+ * The engine is the gate, so all enrollment writes for capped courses must go through this service (one per process).
+ * Call {@link #reload()} after changing enrollments some other way, e.g. deleting a student.
+ */
+public class SeatedEnrollmentService {
+
+    public enum Outcome {
+        ENROLLED, WAITLISTED, ALREADY_ENROLLED, ALREADY_WAITLISTED, COURSE_NOT_FOUND, TIMETABLE_CLASH
+    }
+
+    private final SeatReservationEngine engine;
+    private final TimetableRegistry timetables = new TimetableRegistry();
+    private final EnrollmentGraph graph = new EnrollmentGraph();
+    private final ConnectionPool.ConnectionFactory connections;
+
+    public SeatedEnrollmentService(SeatReservationEngine engine) {
+        this(engine, DatabaseConnection::getConnection);
+    }
+
+    public SeatedEnrollmentService(SeatReservationEngine engine, ConnectionPool.ConnectionFactory connections) {
+        this.engine = engine;
+        this.connections = connections;
+        engine.setPromotionListener(this::writePromotion);
+    }
+
+    public SeatReservationEngine getEngine() {
+        return engine;
+    }
+
+    public TimetableRegistry getTimetables() {
+        return timetables;
+    }
+
+    public EnrollmentGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Seeds the engine with every course's capacity and enrollment count, and rebuilds every student's timetable
+     * and the enrollment graph.
+     */
+    public void reload() throws SQLException {
+        try (Connection connection = connections.open(); CampusDao dao = new CampusDao(connection)) {
+            timetables.clear();
+            graph.clearEnrollments();
+            for (CampusDao.CourseSeatsRow row : dao.findCourseSeats()) {
+                engine.define(row.courseCode(), row.capacity(), row.enrolled());
+                timetables.defineCourse(row.courseCode(), row.meetings());
+            }
+            for (CampusDao.CourseRow row : dao.findAllCourses()) graph.defineCourse(row.id(), row.courseCode(), row.credits());
+            try (RowCursor<CampusDao.EnrollmentKeyRow> rows = dao.openEnrollmentKeyCursor()) {
+                CampusDao.EnrollmentKeyRow row;
+                while ((row = rows.next()) != null) {
+                    timetables.load(row.studentId(), row.courseCode());
+                    graph.add(row.studentId(), row.courseId());
+                }
+            }
+        }
+    }
+
+    public Outcome enroll(int studentId, String courseCode) throws SQLException {
+        TimetableRegistry.Booking booking = timetables.tryAdd(studentId, courseCode);
+        if (booking == TimetableRegistry.Booking.UNKNOWN_COURSE) {
+            // created after the last reload?
+            if (!loadCourse(courseCode)) return Outcome.COURSE_NOT_FOUND;
+            booking = timetables.tryAdd(studentId, courseCode);
+        }
+        if (booking == TimetableRegistry.Booking.CLASH) return Outcome.TIMETABLE_CLASH;
+        Outcome outcome = Outcome.COURSE_NOT_FOUND;
+        try {
+            outcome = reserve(studentId, courseCode);
+            return outcome;
+        } finally {
+            // only the booking made here is undone; ALREADY_BOOKED belongs to an existing enrollment
+            if (booking == TimetableRegistry.Booking.ADDED && outcome != Outcome.ENROLLED) timetables.remove(studentId, courseCode);
+        }
+    }
+
+    /**
+     * Students of the cohort whose timetable clashes with the course, checked in parallel; books nothing.
+     */
+    public List<Integer> findClashes(Collection<Integer> studentIds, String courseCode) throws SQLException {
+        if (!timetables.isKnown(courseCode) && !loadCourse(courseCode)) return List.of();
+        return timetables.findClashes(studentIds, courseCode);
+    }
+
+    /**
+     * The student's enrolled courses that meet at the same time as {@code courseCode}.
+     */
+    public List<String> clashesWith(int studentId, String courseCode) {
+        return timetables.clashes(studentId, courseCode);
+    }
+
+    private Outcome reserve(int studentId, String courseCode) throws SQLException {
+        SeatReservationEngine.Reservation reservation = engine.reserve(courseCode, studentId);
+        if (reservation == SeatReservationEngine.Reservation.UNKNOWN_COURSE) {
+            if (!loadCourse(courseCode)) return Outcome.COURSE_NOT_FOUND;
+            reservation = engine.reserve(courseCode, studentId);
+        }
+        switch (reservation) {
+            case SEATED:
+                return insert(studentId, courseCode);
+            case ALREADY_WAITLISTED:
+                return Outcome.ALREADY_WAITLISTED;
+            case WAITLISTED:
+                // only the slow path pays for this check: a full course is not a reason to queue someone already in it
+                try (Connection connection = connections.open(); CampusDao dao = new CampusDao(connection)) {
+                    if (dao.isEnrolled(studentId, courseCode) && engine.leaveWaitlist(courseCode, studentId)) {
+                        return Outcome.ALREADY_ENROLLED;
+                    }
+                }
+                return Outcome.WAITLISTED;
+            default:
+                return Outcome.COURSE_NOT_FOUND;
+        }
+    }
+
+    /**
+     * Deletes the enrollment and hands its seat to the next waitlisted student, if any.
+     */
+    public boolean drop(int enrollmentId) throws SQLException {
+        CampusDao.EnrollmentKeyRow dropped;
+        try (Connection connection = connections.open(); CampusDao dao = new CampusDao(connection)) {
+            dropped = dao.deleteEnrollmentReturning(enrollmentId);
+        }
+        if (dropped == null) return false;
+        graph.remove(dropped.studentId(), dropped.courseId());
+        if (dropped.courseCode() != null) { // null when the course row was already gone
+            timetables.remove(dropped.studentId(), dropped.courseCode());
+            engine.release(dropped.courseCode());
+        }
+        return true;
+    }
+
+    /**
+     * Removes the student from the course, or from its waitlist if they were not enrolled yet.
+     */
+    public boolean drop(int studentId, String courseCode) throws SQLException {
+        int rows;
+        try (Connection connection = connections.open(); CampusDao dao = new CampusDao(connection)) {
+            rows = dao.deleteEnrollment(studentId, courseCode);
+        }
+        if (rows > 0) {
+            timetables.remove(studentId, courseCode);
+            graph.remove(studentId, graph.courseId(courseCode));
+            engine.release(courseCode);
+            return true;
+        }
+        return engine.leaveWaitlist(courseCode, studentId);
+    }
+
+    public boolean leaveWaitlist(int studentId, String courseCode) {
+        return engine.leaveWaitlist(courseCode, studentId);
+    }
+
+    /**
+     * Stores the new seat limit and applies it; a larger limit promotes waitlisted students immediately.
+     */
+    public boolean setCapacity(String courseCode, Integer capacity) throws SQLException {
+        try (Connection connection = connections.open(); CampusDao dao = new CampusDao(connection)) {
+            if (dao.updateCourseCapacity(courseCode, capacity) == 0) return false;
+        }
+        if (!engine.setCapacity(courseCode, capacity)) loadCourse(courseCode);
+        return true;
+    }
+
+    /**
+     * Stores new meeting times for the course. Later enrollments are checked against them; students already
+     * enrolled keep their place even if the change makes their timetable overlap.
+     */
+    public boolean setMeetings(String courseCode, WeeklySchedule meetings) throws SQLException {
+        try (Connection connection = connections.open(); CampusDao dao = new CampusDao(connection)) {
+            if (dao.updateCourseMeetings(courseCode, meetings) == 0) return false;
+        }
+        timetables.defineCourse(courseCode, meetings);
+        return true;
+    }
+
+    private boolean loadCourse(String courseCode) throws SQLException {
+        Optional<CampusDao.CourseSeatsRow> row;
+        try (Connection connection = connections.open(); CampusDao dao = new CampusDao(connection)) {
+            row = dao.findCourseSeats(courseCode);
+            if (row.isPresent()) {
+                dao.findCourseByCode(courseCode).ifPresent(c -> graph.defineCourse(c.id(), c.courseCode(), c.credits()));
+            }
+        }
+        row.ifPresent(r -> {
+            engine.define(r.courseCode(), r.capacity(), r.enrolled());
+            timetables.defineCourse(r.courseCode(), r.meetings());
+        });
+        return row.isPresent();
+    }
+
+    // the seat is already counted: keep it only if a row was really added
+    private Outcome insert(int studentId, String courseCode) throws SQLException {
+        int rows;
+        try (Connection connection = connections.open(); CampusDao dao = new CampusDao(connection)) {
+            rows = dao.insertEnrollment(studentId, courseCode);
+        } catch (SQLException | RuntimeException e) {
+            engine.release(courseCode);
+            throw e;
+        }
+        if (rows == 1) {
+            int courseId = graph.courseId(courseCode);
+            if (courseId > 0) graph.add(studentId, courseId);
+            return Outcome.ENROLLED;
+        }
+        engine.release(courseCode);
+        return rows == CampusDao.COURSE_NOT_FOUND ? Outcome.COURSE_NOT_FOUND : Outcome.ALREADY_ENROLLED;
+    }
+
+    private void writePromotion(String courseCode, int studentId) {
+        TimetableRegistry.Booking booking = timetables.tryAdd(studentId, courseCode);
+        if (booking == TimetableRegistry.Booking.CLASH) {
+            System.out.println("Warning: promoted student " + studentId + " now has a timetable clash with " + courseCode
+                    + ", passing the seat on");
+            engine.release(courseCode);
+            return;
+        }
+        try {
+            if (insert(studentId, courseCode) != Outcome.ENROLLED && booking == TimetableRegistry.Booking.ADDED) {
+                timetables.remove(studentId, courseCode);
+            }
+        } catch (SQLException e) {
+            if (booking == TimetableRegistry.Booking.ADDED) timetables.remove(studentId, courseCode);
+            System.out.println("Warning: could not enroll promoted student " + studentId + " in " + courseCode + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package edu.aitu.oop3.db;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-connection cache of prepared statements, so identical SQL is parsed and planned once per connection.
+ * Statements handed out by {@link #prepare} belong to the cache: callers close their ResultSets but never the statement.
+ * Pooled connections keep their cache for as long as the physical connection lives.
+ */
+public class StatementCache implements AutoCloseable {
+
+    public static final int DEFAULT_CAPACITY = 64;
+
+    private static final LongAdder TOTAL_HITS = new LongAdder();
+    private static final LongAdder TOTAL_MISSES = new LongAdder();
+
+    private final Connection connection;
+    private final int capacity;
+    private final Map<String, PreparedStatement> statements;
+    private long hits;
+    private long misses;
+    private boolean closed;
+
+    public StatementCache(Connection connection) {
+        this(connection, DEFAULT_CAPACITY);
+    }
+
+    public StatementCache(Connection connection, int capacity) {
+        this.connection = connection;
+        this.capacity = capacity;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * Returns the cache attached to a pooled connection, or a new cache owned by the caller for any other connection.
+     */
+    public static StatementCache forConnection(Connection connection) {
+        if (connection instanceof ConnectionPool.PooledHandle handle) return handle.statementCache();
+        return new StatementCache(connection);
+    }
+
+    /**
+     * True when the cache's lifetime is tied to a pooled connection rather than to whoever called forConnection.
+     */
+    public static boolean isShared(Connection connection) {
+        return connection instanceof ConnectionPool.PooledHandle;
+    }
+
+    public synchronized PreparedStatement prepare(String sql) throws SQLException {
+        if (closed) throw new SQLException("Statement cache is closed");
+        PreparedStatement stmt = statements.get(sql);
+        if (stmt != null && !stmt.isClosed()) {
+            hits++;
+            TOTAL_HITS.increment();
+            stmt.clearParameters();
+            return stmt;
+        }
+        misses++;
+        TOTAL_MISSES.increment();
+        stmt = connection.prepareStatement(sql);
+        statements.put(sql, stmt);
+        evictOverflow();
+        return stmt;
+    }
+
+    public synchronized long getHits() { return hits; }
+    public synchronized long getMisses() { return misses; }
+    public synchronized int size() { return statements.size(); }
+
+    public static long getTotalHits() { return TOTAL_HITS.sum(); }
+    public static long getTotalMisses() { return TOTAL_MISSES.sum(); }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        for (PreparedStatement stmt : statements.values()) closeQuietly(stmt);
+        statements.clear();
+    }
+
+    private void evictOverflow() {
+        Iterator<PreparedStatement> it = statements.values().iterator();
+        while (statements.size() > capacity && it.hasNext()) {
+            closeQuietly(it.next());
+            it.remove();
+        }
+    }
+
+    private static void closeQuietly(PreparedStatement stmt) {
+        try {
+            stmt.close();
+        } catch (SQLException ignored) {
+            // connection is probably gone already
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "StatementCache[size=" + statements.size() + ", hits=" + hits + ", misses=" + misses + "]";
+    }
+}
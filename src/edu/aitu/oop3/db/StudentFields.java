@@ -0,0 +1,18 @@
+package edu.aitu.oop3.db;
+
+import edu.aitu.oop3.db.DemoUsersExample.Student;
+
+/**
+ * Query fields of {@link Student}, named after the students table columns.
+ */
+public final class StudentFields {
+
+    public static final Field<Student, String> FIRST_NAME = Field.of("first_name", s -> s.firstName);
+    public static final Field<Student, String> LAST_NAME = Field.of("last_name", s -> s.lastName);
+    public static final Field<Student, String> EMAIL = Field.of("email", s -> s.email);
+    public static final Field<Student, String> STUDENT_NUMBER = Field.of("student_number", s -> s.studentNumber);
+
+    private StudentFields() {
+        // constants only
+    }
+}
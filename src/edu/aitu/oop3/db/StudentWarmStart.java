@@ -0,0 +1,184 @@
+package edu.aitu.oop3.db;
+
+import edu.aitu.oop3.db.DemoUsersExample.Student;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps an in-memory student repository restartable: {@link #start()} loads the last snapshot and then reads only
+ * the students added since (id above the snapshot's watermark) from the database; {@link #scheduleDumps} catches up and
+ * rewrites the snapshot periodically when something changed.
+ * <p>
+ * The students table has no change timestamp, so catch-up sees new rows only. Students edited or deleted in the
+ * database after they were loaded keep their old state here until the snapshot file is removed.
+ */
+public class StudentWarmStart implements AutoCloseable {
+
+    public record Report(long fromSnapshot, long fromDatabase, long watermark, long snapshotMillis, long catchUpMillis) {
+        public long totalMillis() {
+            return snapshotMillis + catchUpMillis;
+        }
+    }
+
+    private static final int CATCH_UP_BATCH = 1000;
+
+    private final InMemoryRepository<Student> repository;
+    private final Path file;
+    private final RepositorySnapshot<Student> snapshots;
+    private final ConnectionPool.ConnectionFactory connections;
+    private final Object dumpLock = new Object();
+    private volatile long watermark;
+    private long dumpedVersion = -1;
+    private ScheduledExecutorService scheduler;
+
+    public StudentWarmStart(InMemoryRepository<Student> repository, Path file, ConnectionPool.ConnectionFactory connections,
+                            boolean compress) {
+        this.repository = repository;
+        this.file = file;
+        this.snapshots = RepositorySnapshot.students(compress);
+        this.connections = connections;
+    }
+
+    /**
+     * Uses SNAPSHOT_FILE and SNAPSHOT_COMPRESS, with connections from {@link DatabaseConnection}.
+     */
+    public static StudentWarmStart fromConfig(InMemoryRepository<Student> repository) {
+        AppConfig config = AppConfig.getInstance();
+        return new StudentWarmStart(repository, Path.of(config.getSnapshotFile()), DatabaseConnection::getConnection,
+                config.isSnapshotCompress());
+    }
+
+    /**
+     * Loads the snapshot (if there is a readable one) and catches up from the database.
+     * A missing or damaged snapshot means a full load from the database.
+     */
+    public Report start() throws SQLException {
+        long loaded = 0;
+        long snapshotMillis = 0;
+        if (Files.exists(file)) {
+            try {
+                RepositorySnapshot.Info info = snapshots.load(file, repository);
+                loaded = info.items();
+                watermark = info.watermark();
+                snapshotMillis = info.millis();
+                synchronized (dumpLock) {
+                    dumpedVersion = repository.getVersion();
+                }
+            } catch (IOException | RuntimeException e) {
+                System.out.println("Warning: ignoring snapshot " + file + ", loading students from the database: " + e.getMessage());
+            }
+        }
+        long t = System.nanoTime();
+        long added = catchUp();
+        return new Report(loaded, added, watermark, snapshotMillis, (System.nanoTime() - t) / 1_000_000);
+    }
+
+    /**
+     * Saves students with an id above the watermark into the repository; returns how many were read.
+     */
+    public long catchUp() throws SQLException {
+        synchronized (dumpLock) {
+            long t = Metrics.start();
+            long read = 0;
+            int skipped = 0;
+            try (Connection connection = connections.open();
+                 CampusDao dao = new CampusDao(connection);
+                 RowCursor<CampusDao.StudentRow> rows = dao.openStudentCursor((int) watermark)) {
+                List<Student> batch = new ArrayList<>(CATCH_UP_BATCH);
+                CampusDao.StudentRow row;
+                while ((row = rows.next()) != null) {
+                    batch.add(new Student(row.firstName(), row.lastName(), row.email(), row.studentNumber()));
+                    watermark = row.id();
+                    read++;
+                    if (batch.size() == CATCH_UP_BATCH) {
+                        skipped += saveBatch(batch);
+                        batch.clear();
+                    }
+                }
+                skipped += saveBatch(batch);
+            }
+            if (skipped > 0) System.out.println("Warning: " + skipped + " students conflicted with a unique index and were not loaded");
+            Metrics.record("warmStart.catchUp", t, read);
+            return read;
+        }
+    }
+
+    /**
+     * Writes a new snapshot unless nothing changed since the last one; returns null when skipped.
+     */
+    public RepositorySnapshot.Info dump() throws IOException {
+        synchronized (dumpLock) {
+            long version = repository.getVersion();
+            if (version == dumpedVersion) return null;
+            RepositorySnapshot.Info info = snapshots.write(repository, file, watermark);
+            dumpedVersion = version;
+            return info;
+        }
+    }
+
+    /**
+     * Every {@code intervalMs}: catch up, then dump if anything changed. Failures are logged and retried next time.
+     */
+    public synchronized void scheduleDumps(long intervalMs) {
+        if (scheduler != null) throw new IllegalStateException("Dumps already scheduled");
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "snapshot-dump");
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                catchUp();
+                dump();
+            } catch (SQLException | IOException | RuntimeException e) {
+                System.out.println("Warning: periodic snapshot of " + file + " failed: " + e.getMessage());
+            }
+        }, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * Stops periodic dumps and writes a final snapshot if anything changed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (scheduler != null) scheduler.shutdown();
+        }
+        dump();
+    }
+
+    // the usual case is one lock acquisition per batch; a conflicting student is skipped, not fatal
+    private int saveBatch(List<Student> batch) {
+        try {
+            repository.saveAll(batch);
+            return 0;
+        } catch (IllegalStateException e) {
+            int skipped = 0;
+            for (Student s : batch) {
+                try {
+                    repository.save(s);
+                } catch (IllegalStateException duplicate) {
+                    skipped++;
+                }
+            }
+            return skipped;
+        }
+    }
+}
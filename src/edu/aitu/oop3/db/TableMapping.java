@@ -0,0 +1,107 @@
+package edu.aitu.oop3.db;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Describes how {@link JdbcRepository} stores a type: the table, the columns written on save with their getters,
+ * the key column that identifies a row, and the mapper that reads rows back.
+ * The key column must carry a unique constraint, since saves are upserts on it.
+ */
+public class TableMapping<T> {
+    private final String table;
+    private final RowMapper<T> mapper;
+    private final List<String> columns = new ArrayList<>();
+    private final List<Function<T, ?>> getters = new ArrayList<>();
+    private String keyColumn;
+    private String orderBy;
+
+    public TableMapping(String table, RowMapper<T> mapper) {
+        this.table = table;
+        this.mapper = mapper;
+    }
+
+    public TableMapping<T> column(String name, Function<T, ?> getter) {
+        columns.add(name);
+        getters.add(getter);
+        return this;
+    }
+
+    /** Marks an already added column as the key used for upserts and deletes. */
+    public TableMapping<T> key(String name) {
+        if (!columns.contains(name)) throw new IllegalArgumentException("Unknown column: " + name);
+        this.keyColumn = name;
+        return this;
+    }
+
+    /** Column(s) for ORDER BY in reads; defaults to the key column. */
+    public TableMapping<T> orderBy(String orderBy) {
+        this.orderBy = orderBy;
+        return this;
+    }
+
+    /**
+     * The students table, keyed by email.
+     */
+    public static TableMapping<DemoUsersExample.Student> students() {
+        return new TableMapping<DemoUsersExample.Student>("students",
+                rs -> new DemoUsersExample.Student(rs.getString("first_name"), rs.getString("last_name"),
+                        rs.getString("email"), rs.getString("student_number")))
+                .column("first_name", s -> s.firstName)
+                .column("last_name", s -> s.lastName)
+                .column("email", s -> s.email)
+                .column("student_number", s -> s.studentNumber)
+                .key("email")
+                .orderBy("id");
+    }
+
+    public String getTable() { return table; }
+    public RowMapper<T> getMapper() { return mapper; }
+    public List<String> getColumns() { return List.copyOf(columns); }
+    public String getKeyColumn() { return keyColumn; }
+
+    Object keyOf(T item) {
+        return getters.get(columns.indexOf(keyColumn)).apply(item);
+    }
+
+    Object valueOf(T item, int column) {
+        return getters.get(column).apply(item);
+    }
+
+    String selectSql() {
+        return "SELECT * FROM " + table + " ORDER BY " + defaultOrder();
+    }
+
+    /** where and order are already-built clauses (without the keywords); order may be null for the default. */
+    String selectSql(String where, String order, boolean limited) {
+        return "SELECT * FROM " + table + " WHERE " + where + " ORDER BY " + (order != null ? order : defaultOrder())
+                + (limited ? " LIMIT ?" : "");
+    }
+
+    boolean hasColumn(String name) {
+        return columns.contains(name);
+    }
+
+    private String defaultOrder() {
+        return orderBy != null ? orderBy : keyColumn;
+    }
+
+    String upsertSql() {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (").append(String.join(", ", columns))
+                .append(") VALUES (").append("?, ".repeat(columns.size() - 1)).append("?) ON CONFLICT (").append(keyColumn).append(")");
+        List<String> updates = new ArrayList<>();
+        for (String c : columns) if (!c.equals(keyColumn)) updates.add(c + " = EXCLUDED." + c);
+        sql.append(updates.isEmpty() ? " DO NOTHING" : " DO UPDATE SET " + String.join(", ", updates));
+        return sql.toString();
+    }
+
+    String deleteSql() {
+        return "DELETE FROM " + table + " WHERE " + keyColumn + " = ?";
+    }
+
+    void validate() {
+        if (columns.isEmpty()) throw new IllegalStateException("Mapping for " + table + " has no columns");
+        if (keyColumn == null) throw new IllegalStateException("Mapping for " + table + " has no key column");
+    }
+}
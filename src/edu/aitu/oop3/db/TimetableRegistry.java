@@ -0,0 +1,141 @@
+package edu.aitu.oop3.db;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory weekly timetables: each course's meeting slots and, per student, the union of the courses they are
+ * enrolled in. {@link #tryAdd} checks and books a course for a student in one atomic step, so two concurrent
+ * enrollments of the same student cannot both take overlapping courses.
+ * <p>
+ * Courses without meeting slots never clash. Timetables that clashed before checks existed (or after a course's
+ * slots were changed) are kept as they are; only new enrollments are checked.
+ */
+public class TimetableRegistry {
+
+    public enum Booking { ADDED, ALREADY_BOOKED, CLASH, UNKNOWN_COURSE }
+
+    /** A student's courses and the union of their slots; immutable, replaced on every change. */
+    private record Timetable(Map<String, WeeklySchedule> courses, WeeklySchedule busy) {
+        static final Timetable EMPTY = new Timetable(Map.of(), WeeklySchedule.EMPTY);
+
+        Timetable with(String courseCode, WeeklySchedule schedule) {
+            Map<String, WeeklySchedule> copy = new java.util.HashMap<>(courses);
+            copy.put(courseCode, schedule);
+            return new Timetable(Map.copyOf(copy), busy.or(schedule));
+        }
+
+        Timetable without(String courseCode) {
+            Map<String, WeeklySchedule> copy = new java.util.HashMap<>(courses);
+            if (copy.remove(courseCode) == null) return this;
+            WeeklySchedule union = WeeklySchedule.EMPTY;
+            for (WeeklySchedule s : copy.values()) union = union.or(s);
+            return new Timetable(Map.copyOf(copy), union);
+        }
+    }
+
+    private final Map<String, WeeklySchedule> courses = new ConcurrentHashMap<>();
+    private final Map<Integer, Timetable> students = new ConcurrentHashMap<>();
+
+    /**
+     * Sets the course's meeting slots. When they change, timetables that hold the course are updated to the new slots.
+     */
+    public void defineCourse(String courseCode, WeeklySchedule schedule) {
+        WeeklySchedule slots = schedule == null ? WeeklySchedule.EMPTY : schedule;
+        WeeklySchedule previous = courses.put(courseCode, slots);
+        if (previous == null || previous.equals(slots)) return;
+        students.replaceAll((id, t) -> t.courses().containsKey(courseCode) ? t.without(courseCode).with(courseCode, slots) : t);
+    }
+
+    public boolean isKnown(String courseCode) {
+        return courses.containsKey(courseCode);
+    }
+
+    public WeeklySchedule courseSchedule(String courseCode) {
+        return courses.getOrDefault(courseCode, WeeklySchedule.EMPTY);
+    }
+
+    /**
+     * Records an existing enrollment without checking it, e.g. when loading from the database.
+     */
+    public void load(int studentId, String courseCode) {
+        WeeklySchedule schedule = courseSchedule(courseCode);
+        students.compute(studentId, (id, t) -> (t == null ? Timetable.EMPTY : t).with(courseCode, schedule));
+    }
+
+    public void clear() {
+        courses.clear();
+        students.clear();
+    }
+
+    /**
+     * Books the course into the student's timetable unless it overlaps a course they already have.
+     */
+    public Booking tryAdd(int studentId, String courseCode) {
+        WeeklySchedule schedule = courses.get(courseCode);
+        if (schedule == null) return Booking.UNKNOWN_COURSE;
+        Booking[] result = new Booking[1];
+        students.compute(studentId, (id, t) -> {
+            Timetable current = t == null ? Timetable.EMPTY : t;
+            if (current.courses().containsKey(courseCode)) {
+                result[0] = Booking.ALREADY_BOOKED;
+                return t;
+            }
+            if (current.busy().conflictsWith(schedule)) {
+                result[0] = Booking.CLASH;
+                return t;
+            }
+            result[0] = Booking.ADDED;
+            return current.with(courseCode, schedule);
+        });
+        return result[0];
+    }
+
+    public void remove(int studentId, String courseCode) {
+        students.computeIfPresent(studentId, (id, t) -> {
+            Timetable next = t.without(courseCode);
+            return next.courses().isEmpty() ? null : next;
+        });
+    }
+
+    /**
+     * The student's courses that overlap {@code courseCode}; empty if none (or the course is unknown).
+     */
+    public List<String> clashes(int studentId, String courseCode) {
+        WeeklySchedule schedule = courses.get(courseCode);
+        Timetable t = students.get(studentId);
+        List<String> result = new ArrayList<>();
+        if (schedule == null || t == null) return result;
+        for (Map.Entry<String, WeeklySchedule> e : t.courses().entrySet()) {
+            if (!e.getKey().equals(courseCode) && e.getValue().conflictsWith(schedule)) result.add(e.getKey());
+        }
+        return result;
+    }
+
+    /**
+     * Checks a whole cohort against one course in parallel and returns the students who could not take it,
+     * in the order given. A read-only check: nothing is booked.
+     */
+    public List<Integer> findClashes(Collection<Integer> studentIds, String courseCode) {
+        WeeklySchedule schedule = courseSchedule(courseCode);
+        if (schedule.isEmpty()) return List.of();
+        return studentIds.parallelStream()
+                .filter(id -> {
+                    Timetable t = students.get(id);
+                    return t != null && !t.courses().containsKey(courseCode) && t.busy().conflictsWith(schedule);
+                })
+                .toList();
+    }
+
+    public WeeklySchedule studentSchedule(int studentId) {
+        Timetable t = students.get(studentId);
+        return t == null ? WeeklySchedule.EMPTY : t.busy();
+    }
+
+    public int getStudentCount() {
+        return students.size();
+    }
+}
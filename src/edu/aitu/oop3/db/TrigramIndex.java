@@ -0,0 +1,384 @@
+package edu.aitu.oop3.db;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Fuzzy text search over records keyed by a dense int id (a SERIAL primary key). Each record's fields are lower-cased,
+ * split into words at anything that is not a letter or digit, and every word is cut into trigrams padded the way
+ * PostgreSQL's pg_trgm does it ("  a", " ay", "aya", "yan", "an " for "ayan"). A search ranks records by the share
+ * of the query's trigrams they contain, so a misspelt or partial name still finds its record: one wrong letter
+ * costs at most three trigrams.
+ * <p>
+ * Posting lists are sorted {@code int[]} arrays of ids. A record must share at least {@code minSimilarity} of the
+ * query's trigrams, and as many as the current k-th best to make the top, so candidates are collected by counting
+ * hits in the rarest lists only; the leaders are scored exactly along the way to raise that bar. The common lists (a
+ * first name shared by thousands) are then either counted too or probed per remaining candidate with a binary search
+ * in the record's own sorted trigram list, whichever reads less. Searches share a read lock; writes take the write
+ * lock and touch only the lists of the trigrams that changed.
+ */
+public class TrigramIndex {
+
+    private static final int MAX_QUERY_TRIGRAMS = 1000;
+    private static final int SCORED = 1 << 14; // added to the counter of a record already scored exactly
+    private static final int PROBE_COST = 16;  // probing a candidate for the remaining trigrams vs. reading a posting
+
+    /** A matching record and the fraction of the query's trigrams it contains (1.0 = all). */
+    public record Hit(int id, double score) {
+    }
+
+    private final double minSimilarity;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final ThreadLocal<short[]> counters = ThreadLocal.withInitial(() -> new short[0]);
+
+    // trigram code -> term id, open addressing; a code is never 0
+    private long[] codes = new long[1 << 12];
+    private int[] termIds = new int[1 << 12];
+    private int termCount;
+
+    private int[][] postings = new int[1 << 12][];
+    private int[] postingSizes = new int[1 << 12];
+
+    private int[][] docs = new int[1 << 10][]; // sorted term ids by record id; null = not indexed
+    private int size;
+
+    public TrigramIndex() {
+        this(0.3);
+    }
+
+    /**
+     * @param minSimilarity share of the query's trigrams (0..1] a record needs to be returned at all
+     */
+    public TrigramIndex(double minSimilarity) {
+        if (minSimilarity <= 0 || minSimilarity > 1) throw new IllegalArgumentException("minSimilarity must be in (0, 1]: " + minSimilarity);
+        this.minSimilarity = minSimilarity;
+    }
+
+    /**
+     * Indexes the record, replacing what was indexed under the id before. Null fields are skipped.
+     */
+    public void put(int id, String... fields) {
+        if (id <= 0) throw new IllegalArgumentException("Ids start at 1: " + id);
+        long[] trigrams = trigrams(fields);
+        lock.writeLock().lock();
+        try {
+            int[] terms = new int[trigrams.length];
+            for (int i = 0; i < trigrams.length; i++) terms[i] = intern(trigrams[i]);
+            Arrays.sort(terms);
+            int[] old = id < docs.length ? docs[id] : null;
+            if (old == null) {
+                for (int term : terms) addPosting(term, id);
+                size++;
+            } else {
+                // only the trigrams that changed, e.g. those of the old and new email
+                for (int term : old) if (Arrays.binarySearch(terms, term) < 0) removePosting(term, id);
+                for (int term : terms) if (Arrays.binarySearch(old, term) < 0) addPosting(term, id);
+            }
+            if (id >= docs.length) docs = Arrays.copyOf(docs, Math.max(id + 1, docs.length + (docs.length >> 1)));
+            docs[id] = terms;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Removes the record; false if it was not indexed. */
+    public boolean remove(int id) {
+        lock.writeLock().lock();
+        try {
+            int[] old = id > 0 && id < docs.length ? docs[id] : null;
+            if (old == null) return false;
+            for (int term : old) removePosting(term, id);
+            docs[id] = null;
+            size--;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(int id) {
+        lock.readLock().lock();
+        try {
+            return id > 0 && id < docs.length && docs[id] != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The best {@code limit} records for the text, best first; ties go to the lower id. Empty when the text has no
+     * letters or digits.
+     */
+    public List<Hit> search(String text, int limit) {
+        long[] trigrams = trigrams(text);
+        // counters are shorts, so a pasted paragraph is cut down to its first (in code order) trigrams
+        if (trigrams.length > MAX_QUERY_TRIGRAMS) trigrams = Arrays.copyOf(trigrams, MAX_QUERY_TRIGRAMS);
+        int n = trigrams.length;
+        if (n == 0 || limit <= 0) return List.of();
+        lock.readLock().lock();
+        try {
+            // the query's trigrams that some record has, rarest first; the others still count in the score's denominator
+            int[] terms = new int[n];
+            int m = 0;
+            for (long trigram : trigrams) {
+                int term = termId(trigram);
+                if (term >= 0) terms[m++] = term;
+            }
+            terms = sortByListLength(Arrays.copyOf(terms, m));
+            Top top = new Top(limit, Math.max(1, (int) Math.ceil(n * minSimilarity - 1e-9)));
+            short[] counts = counters(docs.length);
+            int[] touched = new int[64];
+            int touchedCount = 0;
+            int i = 0;
+
+            // 1. a record in none of the first m - bar + 1 lists cannot reach the bar, so count those lists. After
+            //    each, the records with the most hits so far are scored exactly, which raises the bar early.
+            while (i < m && i < m - top.bar() + 1) {
+                int term = terms[i++];
+                for (int j = 0, len = postingSizes[term]; j < len; j++) {
+                    int id = postings[term][j];
+                    if (counts[id]++ == 0) {
+                        if (touchedCount == touched.length) touched = Arrays.copyOf(touched, touchedCount * 2);
+                        touched[touchedCount++] = id;
+                    }
+                }
+                scoreLeaders(top, terms, counts, touched, touchedCount, 2 * limit);
+            }
+
+            // 2. no other record can make the top now. Keep counting lists while that reads less than probing every
+            //    candidate that still could, then probe those.
+            int[] alive = new int[touchedCount];
+            int aliveCount = touchedCount;
+            System.arraycopy(touched, 0, alive, 0, touchedCount);
+            while (true) {
+                int kept = 0;
+                for (int t = 0; t < aliveCount; t++) {
+                    int id = alive[t];
+                    if (counts[id] < SCORED && top.admits(id, counts[id] + m - i)) alive[kept++] = id;
+                }
+                aliveCount = kept;
+                if (i == m || (long) aliveCount * PROBE_COST < postingSizes[terms[i]]) break;
+                int term = terms[i++];
+                for (int j = 0, len = postingSizes[term]; j < len; j++) {
+                    int id = postings[term][j];
+                    if (counts[id] != 0) counts[id]++;
+                }
+            }
+            for (int t = 0; t < aliveCount; t++) {
+                int id = alive[t];
+                int shared = counts[id];
+                int[] doc = docs[id];
+                for (int k = i; k < m && top.admits(id, shared + m - k); k++) {
+                    if (Arrays.binarySearch(doc, terms[k]) >= 0) shared++;
+                }
+                top.offer(id, shared);
+            }
+
+            for (int t = 0; t < touchedCount; t++) counts[touched[t]] = 0;
+            return top.hits(n);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // scores up to max unscored candidates with the most hits so far against all terms, and marks them SCORED
+    private void scoreLeaders(Top top, int[] terms, short[] counts, int[] touched, int touchedCount, int max) {
+        int[] histogram = new int[terms.length + 1];
+        for (int t = 0; t < touchedCount; t++) {
+            int c = counts[touched[t]];
+            if (c < SCORED) histogram[c]++;
+        }
+        int cutoff = terms.length + 1;
+        for (int picked = 0; cutoff > 1 && picked < max; ) picked += histogram[--cutoff];
+        for (int t = 0; t < touchedCount && max > 0; t++) {
+            int id = touched[t];
+            if (counts[id] < cutoff || counts[id] >= SCORED) continue;
+            int[] doc = docs[id];
+            int shared = 0;
+            for (int term : terms) {
+                if (Arrays.binarySearch(doc, term) >= 0) shared++;
+            }
+            top.offer(id, shared);
+            counts[id] += SCORED;
+            max--;
+        }
+    }
+
+    /** The best records so far, the worst of them at the head of the heap. */
+    private static final class Top {
+        final int limit;
+        final int minShared;
+        // (shared, id): fewer shared, then higher id is worse
+        final PriorityQueue<long[]> heap = new PriorityQueue<>((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[1], a[1]));
+
+        Top(int limit, int minShared) {
+            this.limit = limit;
+            this.minShared = minShared;
+        }
+
+        // fewest shared trigrams a record needs to get in
+        int bar() {
+            return heap.size() < limit ? minShared : (int) Math.max(minShared, heap.peek()[0]);
+        }
+
+        // whether a record sharing at most `shared` trigrams could still get in
+        boolean admits(int id, int shared) {
+            if (shared < minShared) return false;
+            if (heap.size() < limit) return true;
+            long[] worst = heap.peek();
+            return shared > worst[0] || (shared == worst[0] && id < worst[1]);
+        }
+
+        void offer(int id, int shared) {
+            if (!admits(id, shared)) return;
+            heap.add(new long[]{shared, id});
+            if (heap.size() > limit) heap.poll();
+        }
+
+        List<Hit> hits(int n) {
+            Hit[] hits = new Hit[heap.size()];
+            for (int i = hits.length - 1; i >= 0; i--) {
+                long[] e = heap.poll();
+                hits[i] = new Hit((int) e[1], e[0] / (double) n);
+            }
+            return List.of(hits);
+        }
+    }
+
+    private int[] sortByListLength(int[] terms) {
+        long[] keyed = new long[terms.length];
+        for (int i = 0; i < terms.length; i++) {
+            keyed[i] = (long) postingSizes[terms[i]] << 32 | terms[i];
+        }
+        Arrays.sort(keyed);
+        int[] sorted = new int[terms.length];
+        for (int i = 0; i < keyed.length; i++) sorted[i] = (int) keyed[i];
+        return sorted;
+    }
+
+    // per-thread counters by id; all zero between searches
+    private short[] counters(int capacity) {
+        short[] counts = counters.get();
+        if (counts.length < capacity) {
+            counts = new short[capacity];
+            counters.set(counts);
+        }
+        return counts;
+    }
+
+    private void addPosting(int term, int id) {
+        int[] list = postings[term];
+        int len = postingSizes[term];
+        if (list == null) list = postings[term] = new int[4];
+        else if (len == list.length) list = postings[term] = Arrays.copyOf(list, len * 2);
+        // ids mostly arrive in ascending order, so this is usually an append
+        int at = len == 0 || list[len - 1] < id ? len : Arrays.binarySearch(list, 0, len, id);
+        if (at >= 0 && at < len) return;
+        if (at < 0) at = -at - 1;
+        System.arraycopy(list, at, list, at + 1, len - at);
+        list[at] = id;
+        postingSizes[term] = len + 1;
+    }
+
+    private void removePosting(int term, int id) {
+        int[] list = postings[term];
+        int len = postingSizes[term];
+        int at = Arrays.binarySearch(list, 0, len, id);
+        if (at < 0) return;
+        System.arraycopy(list, at + 1, list, at, len - at - 1);
+        postingSizes[term] = len - 1;
+        if (len - 1 < list.length / 4 && list.length > 16) postings[term] = Arrays.copyOf(list, list.length / 2);
+    }
+
+    private int termId(long code) {
+        int mask = codes.length - 1;
+        for (int i = hash(code) & mask; codes[i] != 0; i = (i + 1) & mask) {
+            if (codes[i] == code) return termIds[i];
+        }
+        return -1;
+    }
+
+    private int intern(long code) {
+        int mask = codes.length - 1;
+        int i = hash(code) & mask;
+        for (; codes[i] != 0; i = (i + 1) & mask) {
+            if (codes[i] == code) return termIds[i];
+        }
+        int term = termCount++;
+        codes[i] = code;
+        termIds[i] = term;
+        if (term == postings.length) {
+            postings = Arrays.copyOf(postings, term * 2);
+            postingSizes = Arrays.copyOf(postingSizes, term * 2);
+        }
+        if (termCount * 2 > codes.length) rehash();
+        return term;
+    }
+
+    private void rehash() {
+        long[] oldCodes = codes;
+        int[] oldIds = termIds;
+        codes = new long[oldCodes.length * 2];
+        termIds = new int[oldCodes.length * 2];
+        int mask = codes.length - 1;
+        for (int j = 0; j < oldCodes.length; j++) {
+            if (oldCodes[j] == 0) continue;
+            int i = hash(oldCodes[j]) & mask;
+            while (codes[i] != 0) i = (i + 1) & mask;
+            codes[i] = oldCodes[j];
+            termIds[i] = oldIds[j];
+        }
+    }
+
+    private static int hash(long code) {
+        long h = code * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * The distinct trigrams of the texts, each packed as three 16-bit chars; padding is a space.
+     */
+    static long[] trigrams(String... texts) {
+        long[] out = new long[16];
+        int n = 0;
+        StringBuilder word = new StringBuilder();
+        for (String text : texts) {
+            if (text == null) continue;
+            for (int i = 0, len = text.length(); i <= len; i++) {
+                char c = i < len ? text.charAt(i) : ' ';
+                if (Character.isLetterOrDigit(c)) {
+                    word.append(Character.toLowerCase(c));
+                    continue;
+                }
+                if (word.length() == 0) continue;
+                // "  w" ... "w " for a padded word of length len + 3
+                char a = ' ', b = ' ';
+                for (int j = 0; j <= word.length(); j++) {
+                    char d = j < word.length() ? word.charAt(j) : ' ';
+                    if (n == out.length) out = Arrays.copyOf(out, n * 2);
+                    out[n++] = (long) a << 32 | (long) b << 16 | d;
+                    a = b;
+                    b = d;
+                }
+                word.setLength(0);
+            }
+        }
+        Arrays.sort(out, 0, n);
+        int distinct = 0;
+        for (int i = 0; i < n; i++) {
+            if (distinct == 0 || out[distinct - 1] != out[i]) out[distinct++] = out[i];
+        }
+        return Arrays.copyOf(out, distinct);
+    }
+}
@@ -0,0 +1,152 @@
+package edu.aitu.oop3.db;
+
+import java.time.DayOfWeek;
+import java.time.LocalTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Weekly meeting times as a bitset of half-hour slots: 7 days x 48 slots = 336 bits in six longs.
+ * Two schedules clash when they share a slot, so a clash check is six ANDs however many meetings either side has.
+ * <p>
+ * The text form, stored in {@code courses.meeting_slots}, is a list of day and time ranges such as
+ * {@code "MON 09:00-10:30; WED 09:00-10:30"}. Times that are not on a half hour are widened to the enclosing slots.
+ * Instances are immutable.
+ */
+public final class WeeklySchedule {
+
+    public static final int SLOT_MINUTES = 30;
+    public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    public static final int SLOTS = 7 * SLOTS_PER_DAY;
+    private static final int WORDS = (SLOTS + 63) / 64;
+
+    public static final WeeklySchedule EMPTY = new WeeklySchedule(new long[WORDS]);
+
+    private final long[] words;
+
+    private WeeklySchedule(long[] words) {
+        this.words = words;
+    }
+
+    /**
+     * Schedule with one meeting. The end is exclusive; meetings cannot cross midnight (end at 23:59 for a late one).
+     */
+    public static WeeklySchedule meeting(DayOfWeek day, LocalTime start, LocalTime end) {
+        int from = start.toSecondOfDay() / 60 / SLOT_MINUTES;
+        int to = (end.toSecondOfDay() / 60 + SLOT_MINUTES - 1) / SLOT_MINUTES;
+        if (to <= from) throw new IllegalArgumentException("Meeting must end after it starts: " + start + "-" + end);
+        long[] w = new long[WORDS];
+        int base = (day.getValue() - 1) * SLOTS_PER_DAY;
+        for (int slot = base + from; slot < base + to; slot++) w[slot >>> 6] |= 1L << slot;
+        return new WeeklySchedule(w);
+    }
+
+    /**
+     * Parses the text form; null or blank means no meetings.
+     */
+    public static WeeklySchedule parse(String text) {
+        if (text == null || text.isBlank()) return EMPTY;
+        WeeklySchedule result = EMPTY;
+        for (String part : text.split("[;,]")) {
+            String p = part.trim();
+            if (p.isEmpty()) continue;
+            String[] dayAndTimes = p.split("\\s+", 2);
+            String[] times = dayAndTimes.length == 2 ? dayAndTimes[1].split("-") : new String[0];
+            if (times.length != 2) throw new IllegalArgumentException("Expected e.g. 'MON 09:00-10:30', got '" + p + "'");
+            try {
+                result = result.or(meeting(day(dayAndTimes[0]), LocalTime.parse(times[0].trim()), LocalTime.parse(times[1].trim())));
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("Bad time in '" + p + "'", e);
+            }
+        }
+        return result;
+    }
+
+    public WeeklySchedule or(WeeklySchedule other) {
+        long[] w = new long[WORDS];
+        for (int i = 0; i < WORDS; i++) w[i] = words[i] | other.words[i];
+        return new WeeklySchedule(w);
+    }
+
+    /** Slots in this schedule that are not in {@code other}. */
+    public WeeklySchedule andNot(WeeklySchedule other) {
+        long[] w = new long[WORDS];
+        for (int i = 0; i < WORDS; i++) w[i] = words[i] & ~other.words[i];
+        return new WeeklySchedule(w);
+    }
+
+    public boolean conflictsWith(WeeklySchedule other) {
+        long[] a = words;
+        long[] b = other.words;
+        for (int i = 0; i < WORDS; i++) if ((a[i] & b[i]) != 0) return true;
+        return false;
+    }
+
+    public boolean isEmpty() {
+        for (long w : words) if (w != 0) return false;
+        return true;
+    }
+
+    /** Number of occupied half-hour slots. */
+    public int slotCount() {
+        int n = 0;
+        for (long w : words) n += Long.bitCount(w);
+        return n;
+    }
+
+    public boolean isBusy(DayOfWeek day, LocalTime time) {
+        int slot = (day.getValue() - 1) * SLOTS_PER_DAY + time.toSecondOfDay() / 60 / SLOT_MINUTES;
+        return (words[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof WeeklySchedule other && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(words);
+    }
+
+    /** The text form accepted by {@link #parse}, with adjacent slots merged into one range. */
+    @Override
+    public String toString() {
+        List<String> parts = new ArrayList<>();
+        for (DayOfWeek day : DayOfWeek.values()) {
+            int base = (day.getValue() - 1) * SLOTS_PER_DAY;
+            int slot = 0;
+            while (slot < SLOTS_PER_DAY) {
+                if (!bit(base + slot)) {
+                    slot++;
+                    continue;
+                }
+                int start = slot;
+                while (slot < SLOTS_PER_DAY && bit(base + slot)) slot++;
+                parts.add(day.name().substring(0, 3) + " " + time(start) + "-" + time(slot));
+            }
+        }
+        return String.join("; ", parts);
+    }
+
+    private boolean bit(int slot) {
+        return (words[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    private static String time(int slot) {
+        if (slot == SLOTS_PER_DAY) return "23:59";
+        int minutes = slot * SLOT_MINUTES;
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+
+    private static DayOfWeek day(String text) {
+        String t = text.trim().toUpperCase(Locale.ROOT);
+        for (DayOfWeek d : DayOfWeek.values()) {
+            if (t.length() >= 3 && d.name().startsWith(t)) return d;
+        }
+        throw new IllegalArgumentException("Unknown day: " + text);
+    }
+}